@@ -4,6 +4,7 @@
 plugins {
     java
     id("com.diffplug.spotless") version "6.25.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 buildscript {
     repositories {
@@ -33,12 +34,14 @@ dependencies {
     implementation("org.eclipse.keypop:keypop-calypso-card-java-api:2.1.0")
     implementation("org.eclipse.keyple:keyple-common-java-api:2.0.1")
     implementation("org.eclipse.keyple:keyple-util-java-lib:2.4.0")
+    implementation("org.eclipse.keyple:keyple-plugin-java-api:2.3.1")
     implementation("org.eclipse.keyple:keyple-service-java-lib:3.2.3")
     implementation("org.eclipse.keyple:keyple-card-calypso-java-lib:3.1.2")
     implementation("org.eclipse.keyple:keyple-plugin-pcsc-java-lib:2.2.1")
     // End Keyple configuration
     implementation("org.slf4j:slf4j-simple:1.7.32")
     implementation("com.google.code.gson:gson:2.8.5")
+    testImplementation("junit:junit:4.13.2")
 }
 
 val javaSourceLevel: String by project
@@ -49,6 +52,17 @@ java {
     println("Compiling Java $sourceCompatibility to Java $targetCompatibility.")
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    // Adds the allocation rate and the bytes allocated per operation (gc.alloc.rate.norm)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results-${project.version}.json"))
+    if (project.hasProperty("jmhIncludes")) {
+        includes.add(project.property("jmhIncludes").toString())
+    }
+}
+
 ///////////////////////////////////////////////////////////////////////////////
 //  TASKS CONFIGURATION
 ///////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,93 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.card;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.carddata.CardStructureJson;
+import org.calypsonet.tool.calypso.check.CheckReport;
+import org.calypsonet.tool.calypso.check.ProfileIdentifier;
+import org.calypsonet.tool.calypso.check.ProfileMatcher;
+import org.calypsonet.tool.calypso.check.ProfileRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparison of card data with a card profile by the check tool, the card data being the profile
+ * itself so that all the files are compared.
+ *
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckCardFileStructureBenchmark {
+
+  @Param({
+    "card_profiles/TestKit_CalypsoPrimeRegularProfile_v3.json",
+    "card_profiles/TestKit_CalypsoLightClassicProfile_v3.json"
+  })
+  public String profileFile;
+
+  private CardStructureData profile;
+
+  private CardStructureData cardStructureData;
+
+  private ProfileMatcher profileMatcher;
+
+  private ProfileIdentifier profileIdentifier;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    profile = CardStructureJson.read(Paths.get(profileFile));
+    cardStructureData = CardStructureJson.read(Paths.get(profileFile));
+    profileMatcher = ProfileMatcher.compile(profile);
+    profileIdentifier =
+        ProfileRegistry.load(
+                Paths.get(profileFile).getParent(), ProfileRegistry.DEFAULT_FILE_NAME_PATTERN)
+            .getIdentifier();
+  }
+
+  /** The profile compiled once for all the cards. */
+  @Benchmark
+  public CheckReport checkCompiledProfile() {
+    return Tool_CheckCardFileStructure.checkCard(cardStructureData, profileMatcher);
+  }
+
+  /** The profile compiled for each card. */
+  @Benchmark
+  public CheckReport compileProfileAndCheck() {
+    return Tool_CheckCardFileStructure.checkCard(
+        cardStructureData, ProfileMatcher.compile(profile));
+  }
+
+  /** The profile identified among all the profiles of its directory. */
+  @Benchmark
+  public ProfileIdentifier.Identification identifyProfile() {
+    return profileIdentifier.identify(cardStructureData);
+  }
+}
@@ -0,0 +1,140 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.keypop.calypso.card.card.CalypsoCard;
+import org.eclipse.keypop.calypso.card.card.DirectoryHeader;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.calypso.card.card.FileHeader;
+
+/**
+ * Stubs of the Calypso card API objects read by the analyzer, answering fixed values.
+ *
+ * <p>The stubs are dynamic proxies, so that they do not depend on the methods of the API that are
+ * not used by the card data model.
+ *
+ * @since 2.1.0
+ */
+final class CalypsoCardStubs {
+
+  private static final byte[] ACCESS_CONDITIONS = {0x1F, 0x10, 0x14, 0x15};
+
+  private static final byte[] KEY_INDEXES = {0x00, 0x01, 0x02, 0x03};
+
+  private CalypsoCardStubs() {}
+
+  private static <T> T newStub(Class<T> type, Map<String, Object> values) {
+    return type.cast(
+        Proxy.newProxyInstance(
+            type.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> {
+              if (!values.containsKey(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+              }
+              return values.get(method.getName());
+            }));
+  }
+
+  /** Builds a revision 3 application having the DF "315449432E49434131". */
+  static CalypsoCard newCalypsoCard() {
+
+    Map<String, Object> directoryHeaderValues = new HashMap<>();
+    directoryHeaderValues.put("getLid", (short) 0x2000);
+    directoryHeaderValues.put("getAccessConditions", ACCESS_CONDITIONS);
+    directoryHeaderValues.put("getKeyIndexes", KEY_INDEXES);
+    directoryHeaderValues.put("getDfStatus", (byte) 0x00);
+    directoryHeaderValues.put("getKif", (byte) 0x27);
+    directoryHeaderValues.put("getKvc", (byte) 0x79);
+
+    Map<String, Object> values = new HashMap<>();
+    values.put("getApplicationSerialNumber", new byte[] {0, 0, 0, 0, 0x12, 0x34, 0x56, 0x78});
+    values.put("getProductType", CalypsoCard.ProductType.PRIME_REVISION_3);
+    values.put("getSessionModification", (byte) 0x06);
+    values.put("getPlatform", (byte) 0x2E);
+    values.put("getSoftwareIssuer", (byte) 0x00);
+    values.put("getSoftwareVersion", (byte) 0x01);
+    values.put("getSoftwareRevision", (byte) 0x02);
+    values.put(
+        "getSelectApplicationResponse",
+        new byte[] {
+          0x6F,
+          0x23,
+          (byte) 0x84,
+          0x09,
+          0x31,
+          0x54,
+          0x49,
+          0x43,
+          0x2E,
+          0x49,
+          0x43,
+          0x41,
+          0x31,
+          (byte) 0xA5,
+          0x16,
+          (byte) 0xBF,
+          0x0C,
+          0x13,
+          (byte) 0xC7,
+          0x08,
+          0,
+          0,
+          0,
+          0,
+          0x12,
+          0x34,
+          0x56,
+          0x78,
+          0x53,
+          0x07,
+          0x06,
+          0x0A,
+          0x3C,
+          0x20,
+          0x05,
+          0x14,
+          0x10,
+          (byte) 0x90,
+          0x00
+        });
+    values.put("getDfName", new byte[] {0x31, 0x54, 0x49, 0x43, 0x2E, 0x49, 0x43, 0x41, 0x31});
+    values.put("getDirectoryHeader", newStub(DirectoryHeader.class, directoryHeaderValues));
+    values.put("getApplicationType", (byte) 0x20);
+    values.put("getApplicationSubtype", (byte) 0xC1);
+
+    return newStub(CalypsoCard.class, values);
+  }
+
+  /** Builds a linear EF of the given number of records. */
+  static ElementaryFile newElementaryFile(int sfi, int nbRecords, int recordSize) {
+
+    Map<String, Object> headerValues = new HashMap<>();
+    headerValues.put("getLid", (short) (0x2000 + sfi));
+    headerValues.put("getRecordsNumber", nbRecords);
+    headerValues.put("getRecordSize", recordSize);
+    headerValues.put("getEfType", ElementaryFile.Type.LINEAR);
+    headerValues.put("getAccessConditions", ACCESS_CONDITIONS);
+    headerValues.put("getKeyIndexes", KEY_INDEXES);
+    headerValues.put("getDfStatus", (byte) 0x00);
+    headerValues.put("getSharedReference", (short) 0x0000);
+
+    Map<String, Object> values = new HashMap<>();
+    values.put("getSfi", (byte) sfi);
+    values.put("getHeader", newStub(FileHeader.class, headerValues));
+
+    return newStub(ElementaryFile.class, values);
+  }
+}
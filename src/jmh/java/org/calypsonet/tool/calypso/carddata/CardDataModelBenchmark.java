@@ -0,0 +1,147 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.eclipse.keypop.calypso.card.card.CalypsoCard;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building of the card data model from the Calypso card API objects, as done by the analyzer for
+ * each card, and its serialization with Gson.
+ *
+ * <p>The card API objects are stubs, whose calls cost the same across the releases.
+ *
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardDataModelBenchmark {
+
+  private static final int NB_FILES = 20;
+
+  private static final int NB_RECORDS = 30;
+
+  private static final int RECORD_SIZE = 29;
+
+  private final Gson gson =
+      new GsonBuilder()
+          .registerTypeHierarchyAdapter(byte[].class, new ToolUtils.HexTypeAdapter())
+          .create();
+
+  private final Writer nullWriter =
+      new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int length) {}
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+      };
+
+  private CalypsoCard calypsoCard;
+
+  private ElementaryFile[] elementaryFiles;
+
+  private byte[][] records;
+
+  private byte[] accessConditions;
+
+  private byte[] keyIndexes;
+
+  private CardStructureData cardStructureData;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    calypsoCard = CalypsoCardStubs.newCalypsoCard();
+    elementaryFiles = new ElementaryFile[NB_FILES];
+    for (int i = 0; i < NB_FILES; i++) {
+      elementaryFiles[i] = CalypsoCardStubs.newElementaryFile(i + 1, NB_RECORDS, RECORD_SIZE);
+    }
+    records = new byte[NB_RECORDS][RECORD_SIZE];
+    for (int j = 0; j < NB_RECORDS; j++) {
+      for (int k = 0; k < RECORD_SIZE; k++) {
+        records[j][k] = (byte) (j + k);
+      }
+    }
+    accessConditions = new byte[] {0x1F, 0x10, 0x14, 0x15};
+    keyIndexes = new byte[] {0x00, 0x01, 0x02, 0x03};
+    cardStructureData =
+        CardStructureJson.read(new StringReader(CardStructureJsonBenchmark.newCardJson()));
+  }
+
+  private CardFileData newFileData(ElementaryFile elementaryFile) {
+    CardFileData cardFileData = new CardFileData(elementaryFile);
+    for (int j = 0; j < NB_RECORDS; j++) {
+      cardFileData.getRecordDataList().add(new RecordData(j + 1, records[j]));
+    }
+    return cardFileData;
+  }
+
+  @Benchmark
+  public AccessConditions newAccessConditions() {
+    return new AccessConditions(accessConditions, keyIndexes);
+  }
+
+  @Benchmark
+  public CardFileData newCardFileData() {
+    return newFileData(elementaryFiles[0]);
+  }
+
+  /** Application of 20 files of 30 records. */
+  @Benchmark
+  public CardApplicationData newCardApplicationData() {
+    CardApplicationData cardApplicationData = new CardApplicationData(calypsoCard);
+    for (ElementaryFile elementaryFile : elementaryFiles) {
+      cardApplicationData.getFileList().add(newFileData(elementaryFile));
+    }
+    return cardApplicationData;
+  }
+
+  @Benchmark
+  public String gsonToJsonString() {
+    return gson.toJson(cardStructureData);
+  }
+
+  @Benchmark
+  public void gsonStreamCompact() throws IOException {
+    CardStructureJson.write(cardStructureData, nullWriter, false);
+  }
+
+  @Benchmark
+  public void gsonStreamPretty() throws IOException {
+    CardStructureJson.write(cardStructureData, nullWriter, true);
+  }
+}
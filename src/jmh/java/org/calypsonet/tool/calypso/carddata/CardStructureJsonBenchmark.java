@@ -0,0 +1,168 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing of the analyzer report of a card having 20 files of 30 records: whole document built as a
+ * string then written (former path) vs streamed to a buffered file.
+ *
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardStructureJsonBenchmark {
+
+  private static final int NB_FILES = 20;
+
+  private static final int NB_RECORDS = 30;
+
+  private static final int RECORD_SIZE = 29;
+
+  private final Gson prettyGson =
+      new GsonBuilder()
+          .registerTypeHierarchyAdapter(byte[].class, new ToolUtils.HexTypeAdapter())
+          .setPrettyPrinting()
+          .create();
+
+  private CardStructureData cardStructureData;
+
+  private Path file;
+
+  private static JsonObject newAccessCondition(String accessCondition, String keyLevel) {
+    JsonObject group = new JsonObject();
+    group.addProperty("accessCondition", accessCondition);
+    group.addProperty("keyLevel", keyLevel);
+    group.addProperty("description", "Session" + keyLevel);
+    return group;
+  }
+
+  private static JsonObject newAccessConditions() {
+    JsonObject accessConditions = new JsonObject();
+    accessConditions.add("group0", newAccessCondition("1F", null));
+    accessConditions.add("group1", newAccessCondition("10", "01"));
+    accessConditions.add("group2", newAccessCondition("14", "02"));
+    accessConditions.add("group3", newAccessCondition("15", "03"));
+    return accessConditions;
+  }
+
+  /** Builds the JSON of a card having a single application of 20 files of 30 records. */
+  static String newCardJson() {
+
+    JsonArray fileList = new JsonArray();
+    for (int i = 0; i < NB_FILES; i++) {
+      JsonArray recordDataList = new JsonArray();
+      for (int j = 1; j <= NB_RECORDS; j++) {
+        JsonObject record = new JsonObject();
+        record.addProperty("index", String.format("%02X", j));
+        StringBuilder value = new StringBuilder();
+        for (int k = 0; k < RECORD_SIZE; k++) {
+          value.append(String.format("%02X", (i + j + k) & 0xFF));
+        }
+        record.addProperty("value", value.toString());
+        recordDataList.add(record);
+      }
+      JsonObject cardFileData = new JsonObject();
+      cardFileData.addProperty("sfi", String.format("%02X", i + 1));
+      cardFileData.addProperty("lid", String.format("20%02X", i + 1));
+      cardFileData.addProperty("efType", "04");
+      cardFileData.addProperty("recSize", String.format("%02X", RECORD_SIZE));
+      cardFileData.addProperty("recSizeDec", RECORD_SIZE);
+      cardFileData.addProperty("numRec", String.format("%02X", NB_RECORDS));
+      cardFileData.addProperty("numRecDec", NB_RECORDS);
+      cardFileData.add("accessConditions", newAccessConditions());
+      cardFileData.add("recordDataList", recordDataList);
+      fileList.add(cardFileData);
+    }
+
+    JsonObject cardApplicationData = new JsonObject();
+    cardApplicationData.addProperty("aid", "315449432E49434131");
+    cardApplicationData.addProperty("csn", "0000000012345678");
+    cardApplicationData.addProperty("csnDec", 305419896L);
+    cardApplicationData.addProperty("calypsoRevision", "REV3_1");
+    cardApplicationData.addProperty("sessionModif", "06");
+    cardApplicationData.addProperty("applicationType", "20");
+    cardApplicationData.addProperty("applicationSubtype", "C1");
+    cardApplicationData.addProperty("lid", "2000");
+    cardApplicationData.add("accessConditions", newAccessConditions());
+    cardApplicationData.add("fileList", fileList);
+
+    JsonArray applicationList = new JsonArray();
+    applicationList.add(cardApplicationData);
+
+    JsonObject cardStructureData = new JsonObject();
+    cardStructureData.addProperty("id", "20240101_CardData_305419896.json");
+    cardStructureData.addProperty("date", "01/01/2024 00:00:00");
+    cardStructureData.addProperty("version", 2);
+    cardStructureData.addProperty("software", "Calypso Card Analyzer");
+    cardStructureData.addProperty("traceability", "0102030405060708");
+    cardStructureData.add("applicationList", applicationList);
+
+    return cardStructureData.toString();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    cardStructureData = CardStructureJson.read(new StringReader(newCardJson()));
+    file = Files.createTempFile("CardData_", ".json");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public void toJsonStringThenWrite() throws IOException {
+    String jsonToPrint = prettyGson.toJson(cardStructureData);
+    FileWriter fw = new FileWriter(file.toFile());
+    fw.write(jsonToPrint);
+    fw.close();
+  }
+
+  @Benchmark
+  public void streamPretty() throws IOException {
+    CardStructureJson.write(cardStructureData, file, true);
+  }
+
+  @Benchmark
+  public void streamCompact() throws IOException {
+    CardStructureJson.write(cardStructureData, file, false);
+  }
+}
@@ -0,0 +1,88 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.calypsonet.tool.calypso.check.ProfileMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Loading of all the JSON card profiles of the "card_profiles" directory (or of the directory given
+ * by the "profiles.dir" system property), read in memory beforehand to leave the disk out. The
+ * profiles that the check tool cannot compile are ignored.
+ *
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProfileLoadingBenchmark {
+
+  private final List<String> profiles = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Path directory = Paths.get(System.getProperty("profiles.dir", "card_profiles"));
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+      for (Path file : files) {
+        String profile = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        try {
+          ProfileMatcher.compile(CardStructureJson.read(new StringReader(profile)));
+          profiles.add(profile);
+        } catch (RuntimeException e) {
+          // Rejected by the check tool as well (e.g. null file left by a trailing comma)
+        }
+      }
+    }
+    if (profiles.isEmpty()) {
+      throw new IOException("No profile found in " + directory.toAbsolutePath());
+    }
+  }
+
+  @Benchmark
+  public void parseProfiles(Blackhole blackhole) {
+    for (String profile : profiles) {
+      blackhole.consume(CardStructureJson.read(new StringReader(profile)));
+    }
+  }
+
+  /** Parsing followed by the compilation done once by the check tool. */
+  @Benchmark
+  public void parseAndCompileProfiles(Blackhole blackhole) {
+    for (String profile : profiles) {
+      blackhole.consume(ProfileMatcher.compile(CardStructureJson.read(new StringReader(profile))));
+    }
+  }
+}
@@ -0,0 +1,285 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.card;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.calypsonet.tool.calypso.common.SessionExecutor;
+import org.eclipse.keypop.reader.CardReader;
+import org.eclipse.keypop.reader.CardReaderEvent;
+import org.eclipse.keypop.reader.ObservableCardReader;
+import org.eclipse.keypop.reader.spi.CardReaderObservationExceptionHandlerSpi;
+import org.eclipse.keypop.reader.spi.CardReaderObserverSpi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes the cards as they are inserted in the observed readers, until the JVM is stopped.
+ *
+ * <p>The plugin, the readers and everything loaded by the tool stay initialized between two cards.
+ * Each reader notifies its events in its own thread, so the cards of different readers are
+ * processed in parallel. When a {@link SessionExecutor} is provided, each card is processed in a
+ * session of the executor, the observation thread waiting for its end, so that the processing of a
+ * card is cancelled once the timeout of the executor is elapsed. The card processing of a reader is
+ * only finalized once the cancelled processing has actually stopped exchanging with the card.
+ *
+ * <p>Only the cards processed successfully are counted as processed, the cards whose processing
+ * failed or was cancelled being counted apart.
+ *
+ * @since 2.1.0
+ */
+public class CardInsertionDaemon
+    implements CardReaderObserverSpi, CardReaderObservationExceptionHandlerSpi {
+
+  private static final Logger logger = LoggerFactory.getLogger(CardInsertionDaemon.class);
+
+  private final Map<String, CardSession> cardSessions;
+
+  private final Consumer<CardSession> cardProcessor;
+
+  private final SessionExecutor sessionExecutor;
+
+  private final AtomicInteger nbProcessedCards;
+
+  private final AtomicInteger nbFailedCards;
+
+  /** Set by the first call to {@link #stop()}, from the shutdown hook or from the caller. */
+  private final AtomicBoolean isStopped;
+
+  private final CountDownLatch stopLatch;
+
+  private long startTime;
+
+  /**
+   * Constructor.
+   *
+   * @param cardSessions The sessions of the readers to observe.
+   * @param cardProcessor The processing to apply to each inserted card.
+   * @since 2.1.0
+   */
+  public CardInsertionDaemon(List<CardSession> cardSessions, Consumer<CardSession> cardProcessor) {
+    this(cardSessions, cardProcessor, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param cardSessions The sessions of the readers to observe.
+   * @param cardProcessor The processing to apply to each inserted card.
+   * @param sessionExecutor The executor of the processing of the cards, null to process them in the
+   *     threads observing the readers.
+   * @since 2.1.0
+   */
+  public CardInsertionDaemon(
+      List<CardSession> cardSessions,
+      Consumer<CardSession> cardProcessor,
+      SessionExecutor sessionExecutor) {
+
+    this.cardSessions = new HashMap<>();
+    for (CardSession cardSession : cardSessions) {
+      this.cardSessions.put(cardSession.getReaderName(), cardSession);
+    }
+
+    this.cardProcessor = cardProcessor;
+
+    this.sessionExecutor = sessionExecutor;
+
+    nbProcessedCards = new AtomicInteger();
+
+    nbFailedCards = new AtomicInteger();
+
+    isStopped = new AtomicBoolean();
+
+    stopLatch = new CountDownLatch(1);
+  }
+
+  private static ObservableCardReader getObservableReader(CardSession cardSession) {
+    CardReader cardReader = cardSession.getCardReader();
+    if (!(cardReader instanceof ObservableCardReader)) {
+      throw new IllegalStateException("Reader '" + cardReader.getName() + "' is not observable");
+    }
+    return (ObservableCardReader) cardReader;
+  }
+
+  /**
+   * Starts the observation of the readers and blocks until {@link #stop()} is called or the JVM is
+   * stopped.
+   *
+   * @since 2.1.0
+   */
+  public void run() {
+
+    startTime = System.nanoTime();
+
+    for (CardSession cardSession : cardSessions.values()) {
+      ObservableCardReader observableCardReader = getObservableReader(cardSession);
+      observableCardReader.setReaderObservationExceptionHandler(this);
+      observableCardReader.addObserver(this);
+      observableCardReader.startCardDetection(ObservableCardReader.DetectionMode.REPEATING);
+    }
+
+    Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+
+    logger.info("= Waiting for cards on {} reader(s)...", cardSessions.size());
+
+    try {
+      stopLatch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Stops the observation of the readers, only the first call having an effect.
+   *
+   * @since 2.1.0
+   */
+  public void stop() {
+
+    if (!isStopped.compareAndSet(false, true)) {
+      return;
+    }
+
+    for (CardSession cardSession : cardSessions.values()) {
+      ObservableCardReader observableCardReader = getObservableReader(cardSession);
+      observableCardReader.stopCardDetection();
+      observableCardReader.removeObserver(this);
+    }
+
+    logStatistics();
+
+    stopLatch.countDown();
+  }
+
+  /**
+   * @return The number of cards processed successfully.
+   * @since 2.1.0
+   */
+  public int getNbProcessedCards() {
+    return nbProcessedCards.get();
+  }
+
+  /**
+   * @return The number of cards whose processing failed or was cancelled.
+   * @since 2.1.0
+   */
+  public int getNbFailedCards() {
+    return nbFailedCards.get();
+  }
+
+  private void logStatistics() {
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    int nbCards = nbProcessedCards.get();
+    logger.info(
+        "= {} card(s) processed in {} s ({} cards/min), {} failed",
+        nbCards,
+        elapsedMillis / 1000,
+        elapsedMillis == 0 ? 0 : nbCards * 60000L / elapsedMillis,
+        nbFailedCards.get());
+  }
+
+  @Override
+  public void onReaderEvent(CardReaderEvent readerEvent) {
+
+    if (readerEvent.getType() != CardReaderEvent.Type.CARD_INSERTED) {
+      logger.info("= {}:: {}", readerEvent.getReaderName(), readerEvent.getType());
+      return;
+    }
+
+    CardSession cardSession = cardSessions.get(readerEvent.getReaderName());
+    long cardStartTime = System.nanoTime();
+
+    boolean isProcessed = false;
+    try {
+      isProcessed = processCard(cardSession);
+    } catch (RuntimeException e) {
+      logger.error(
+          "= {}:: card processing failed: {}", readerEvent.getReaderName(), e.getMessage(), e);
+    } finally {
+      getObservableReader(cardSession).finalizeCardProcessing();
+    }
+
+    if (isProcessed) {
+      logger.info(
+          "= {}:: card #{} processed in {} ms",
+          readerEvent.getReaderName(),
+          nbProcessedCards.incrementAndGet(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cardStartTime));
+    } else {
+      nbFailedCards.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return False if the processing of the card has been cancelled.
+   */
+  private boolean processCard(CardSession cardSession) {
+
+    if (sessionExecutor == null) {
+      cardProcessor.accept(cardSession);
+      return true;
+    }
+
+    SessionExecutor.Session<?> session =
+        sessionExecutor.submit(
+            cardSession.getReaderName(), () -> cardProcessor.accept(cardSession));
+    try {
+      session.get();
+      return true;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    } catch (CancellationException e) {
+      logger.error(
+          "= {}:: card processing cancelled, waiting for the end of the exchanges in progress",
+          cardSession.getReaderName());
+    } catch (InterruptedException e) {
+      session.cancel(true);
+      Thread.currentThread().interrupt();
+    }
+
+    // The reader must not be used by the next card while the cancelled processing still uses it
+    awaitEnd(session);
+    return false;
+  }
+
+  private static void awaitEnd(SessionExecutor.Session<?> session) {
+    boolean isInterrupted = Thread.interrupted();
+    while (true) {
+      try {
+        session.awaitEnd();
+        break;
+      } catch (InterruptedException e) {
+        isInterrupted = true;
+      }
+    }
+    if (isInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void onReaderObservationError(String pluginName, String readerName, Throwable e) {
+    logger.error("= {}:: observation error: {}", readerName, e.getMessage(), e);
+  }
+}
@@ -0,0 +1,55 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.card;
+
+import org.eclipse.keypop.calypso.card.transaction.FreeTransactionManager;
+import org.eclipse.keypop.reader.CardReader;
+
+/**
+ * Context of the processing of the card present in a reader.
+ *
+ * <p>Each reader has its own session, so that several cards can be processed in parallel.
+ *
+ * @since 2.1.0
+ */
+public class CardSession {
+
+  private final CardReader cardReader;
+
+  private FreeTransactionManager cardTransactionManager;
+
+  public CardSession(CardReader cardReader) {
+    this.cardReader = cardReader;
+  }
+
+  public CardReader getCardReader() {
+    return cardReader;
+  }
+
+  public String getReaderName() {
+    return cardReader.getName();
+  }
+
+  /**
+   * Returns the transaction manager of the currently selected application.
+   *
+   * @return Null if no application has been selected yet.
+   * @since 2.1.0
+   */
+  public FreeTransactionManager getCardTransactionManager() {
+    return cardTransactionManager;
+  }
+
+  void setCardTransactionManager(FreeTransactionManager cardTransactionManager) {
+    this.cardTransactionManager = cardTransactionManager;
+  }
+}
@@ -0,0 +1,102 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.card;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.calypsonet.tool.calypso.common.ToolOptions;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.calypsonet.tool.calypso.stats.FleetAggregator;
+import org.calypsonet.tool.calypso.stats.FleetStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the statistics of a fleet of cards from the card data files produced by the analyzer,
+ * e.g. the distribution of the issuers, platforms and session buffer sizes, and writes them to a
+ * compact JSON summary file.
+ *
+ * @since 2.1.0
+ */
+public class Tool_AggregateCardData {
+
+  private static final Logger logger = LoggerFactory.getLogger(Tool_AggregateCardData.class);
+
+  private static final List<String> OPTION_NAMES = Arrays.asList("output");
+
+  public static void main(String[] args) {
+
+    ToolOptions options = new ToolOptions(args);
+    List<String> arguments = options.getArguments();
+
+    List<String> unknownOptions = options.getUnknownOptions(OPTION_NAMES);
+    if (!unknownOptions.isEmpty() || arguments.isEmpty()) {
+      if (!unknownOptions.isEmpty()) {
+        logger.error("Unknown option(s) {}", unknownOptions);
+      }
+      logger.error(
+          "Usage: java -cp Tool_AnalyzeCardFileStructure.jar "
+              + Tool_AggregateCardData.class.getName()
+              + " <file-or-directory>... [--output=<summary-file>]");
+      return;
+    }
+
+    // Only the paths are listed beforehand, the files being read as they are aggregated
+    List<Path> files = new ArrayList<>();
+    for (String argument : arguments) {
+      Path path = Paths.get(argument);
+      if (Files.isDirectory(path)) {
+        try (DirectoryStream<Path> dumpFiles =
+            Files.newDirectoryStream(path, ToolUtils.CARD_DATA_FILE_NAME_PATTERN)) {
+          for (Path dumpFile : dumpFiles) {
+            files.add(dumpFile);
+          }
+        } catch (IOException e) {
+          logger.error("Exception while listing {}: {}", path, e.getMessage(), e);
+        }
+      } else {
+        files.add(path);
+      }
+    }
+
+    long startTime = System.nanoTime();
+    FleetStatistics statistics = FleetAggregator.aggregate(files);
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+    statistics.print(logger);
+    logger.info(
+        "= {} file(s) aggregated in {} ms ({} files/s)",
+        files.size(),
+        elapsedMillis,
+        elapsedMillis == 0 ? 0 : files.size() * 1000L / elapsedMillis);
+
+    String summaryFile =
+        options.getOption(
+            "output",
+            new SimpleDateFormat("yyyyMMdd").format(new Date()) + "_FleetStatistics.json");
+    try {
+      statistics.writeJson(Paths.get(summaryFile));
+      logger.info("Fleet statistics written to {}", summaryFile);
+    } catch (IOException e) {
+      logger.error("Exception while writing {}: {}", summaryFile, e.getMessage(), e);
+    }
+  }
+}
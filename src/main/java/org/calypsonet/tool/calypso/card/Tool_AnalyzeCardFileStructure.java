@@ -11,17 +11,36 @@
  ************************************************************************************** */
 package org.calypsonet.tool.calypso.card;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardDataArchive;
+import org.calypsonet.tool.calypso.carddata.CardDataCache;
 import org.calypsonet.tool.calypso.carddata.CardFileData;
+import org.calypsonet.tool.calypso.carddata.CardStructureBinary;
 import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.carddata.CardStructureJson;
+import org.calypsonet.tool.calypso.carddata.CardStructureText;
 import org.calypsonet.tool.calypso.carddata.RecordData;
+import org.calypsonet.tool.calypso.carddata.ScanLevel;
+import org.calypsonet.tool.calypso.common.IssuerRegistry;
+import org.calypsonet.tool.calypso.common.Pipeline;
+import org.calypsonet.tool.calypso.common.SessionExecutor;
+import org.calypsonet.tool.calypso.common.ToolOptions;
 import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.calypsonet.tool.calypso.metrics.LatencyMetrics;
+import org.calypsonet.tool.calypso.trace.ApduLatencyRecorder;
+import org.calypsonet.tool.calypso.trace.ApduTraceRecorder;
+import org.calypsonet.tool.calypso.trace.ReplayPluginFactory;
 import org.eclipse.keyple.card.calypso.CalypsoExtensionService;
+import org.eclipse.keyple.core.common.KeyplePluginExtensionFactory;
 import org.eclipse.keyple.core.service.Plugin;
 import org.eclipse.keyple.core.service.SmartCardService;
 import org.eclipse.keyple.core.service.SmartCardServiceProvider;
@@ -58,11 +77,259 @@ public class Tool_AnalyzeCardFileStructure {
       CalypsoExtensionService.getInstance();
   private static final String SOFTWARE_INFORMATION = "AnalyzeCardFileStructure";
   private static final String SOFTWARE_NAME = "Calypso Card Analyzer";
-  private static CardReader cardReader;
-  private static FreeTransactionManager cardTransactionManager;
-  private static byte[] lastFci;
 
-  private static void fillFilesTable(CalypsoCard selectedApp) {
+  // - GEN RT TEST (91h) - , - GEN SV TEST (92h) - , - Hoplink -, - Ndef -,  - MF -, - RT -, -
+  // SV -, - GEN AID -
+  private static final List<String> AID_PREFIX_LIST =
+      Arrays.asList(
+          "A000000291", "A000000404", "D276000085", "334D54522E", "315449432E", "304554502E");
+
+  private static final String PHASE_APPLICATION_SELECTION = "Phase Application selection";
+  private static final String PHASE_TRACEABILITY = "Phase Traceability";
+  private static final String PHASE_FILES_READING = "Phase Files reading";
+  private static final String PHASE_CARD_DATA_MODEL = "Phase Card data model";
+  private static final String PHASE_REPORT_WRITING = "Phase Report writing";
+  private static final String CARD_PREFIX = "Card ";
+
+  private static final long DEFAULT_METRICS_PERIOD_SECONDS = 60;
+
+  private static final String USAGE =
+      "Usage: java -jar Tool_AnalyzeCardFileStructure.jar [readerNameRegex]"
+          + " [--all-readers] [--daemon] [--compact-json] [--binary]"
+          + " [--archive=<archive-directory>] [--record=<trace-directory>]"
+          + " [--replay=<trace-file-or-directory>] [--replay-latency=<microseconds>|recorded]"
+          + " [--replay-repeat=<n>] [--metrics[=<period-in-seconds>]] [--issuers=<issuers-file>]"
+          + " [--scan-level=headers|first-record|full] [--delta-cache[=<cache-directory>]]"
+          + " [--quiet] [--session-timeout=<seconds>]";
+
+  private static final List<String> OPTION_NAMES =
+      Arrays.asList(
+          "all-readers",
+          "daemon",
+          "compact-json",
+          "binary",
+          "archive",
+          "record",
+          "replay",
+          "replay-latency",
+          "replay-repeat",
+          "metrics",
+          "issuers",
+          "scan-level",
+          "delta-cache",
+          "quiet",
+          "session-timeout");
+
+  private static boolean isJsonPrettyPrinting = true;
+
+  private static boolean isBinaryReport;
+
+  private static ScanLevel scanLevel = ScanLevel.FULL;
+
+  private static CardDataArchive archive;
+
+  private static CardDataCache deltaCache;
+
+  private static Pipeline pipeline;
+
+  private static Pipeline.Stage<CardStructureData> persistStage;
+
+  private static Pipeline.Stage<CardStructureData> reportStage;
+
+  private static KeyplePluginExtensionFactory pluginFactory;
+
+  private static ReplayPluginFactory replayPluginFactory;
+
+  private static Plugin plugin;
+
+  private static LatencyMetrics metrics = new LatencyMetrics(false);
+
+  private static long metricsPeriodSeconds = DEFAULT_METRICS_PERIOD_SECONDS;
+
+  private static SessionExecutor sessionExecutor;
+
+  /** First application found by the AID discovery, and the index of the prefix it matches. */
+  private static final class FirstApplication {
+
+    private final int aidPrefixIndex;
+
+    private final CalypsoCard calypsoCard;
+
+    private FirstApplication(int aidPrefixIndex, CalypsoCard calypsoCard) {
+      this.aidPrefixIndex = aidPrefixIndex;
+      this.calypsoCard = calypsoCard;
+    }
+  }
+
+  private static boolean isRecordsReadingAllowed(ElementaryFile file) {
+    return file.getHeader().getEfType() != ElementaryFile.Type.BINARY
+        && file.getHeader().getAccessConditions()[0] != 0x01
+        && file.getHeader().getAccessConditions()[0] != 0x14
+        && file.getHeader().getAccessConditions()[0] != 0x15
+        && file.getSfi() != 0
+        && file.getHeader().getRecordsNumber() > 0;
+  }
+
+  /** Number of the last record of the file to read at the given scan level. */
+  private static int getLastRecordToRead(ElementaryFile file, ScanLevel scanLevel) {
+    return scanLevel == ScanLevel.FIRST_RECORD ? 1 : file.getHeader().getRecordsNumber();
+  }
+
+  private static boolean isRecordsRead(ElementaryFile file, ScanLevel scanLevel) {
+    return file.getData().getAllRecordsContent().containsKey(getLastRecordToRead(file, scanLevel));
+  }
+
+  private static boolean prepareReadRecords(
+      CardSession cardSession, ElementaryFile file, ScanLevel scanLevel) {
+
+    if (scanLevel == ScanLevel.HEADERS || !isRecordsReadingAllowed(file)) {
+      return false;
+    }
+
+    // All the records to read are read at once, the Calypso extension splits the reading into as
+    // few APDUs as the card payload capacity allows.
+    cardSession
+        .getCardTransactionManager()
+        .prepareReadRecords(
+            file.getSfi(),
+            1,
+            getLastRecordToRead(file, scanLevel),
+            file.getHeader().getRecordSize());
+
+    return true;
+  }
+
+  private static void readRecords(
+      CardSession cardSession, Collection<ElementaryFile> files, ScanLevel scanLevel) {
+
+    FreeTransactionManager cardTransactionManager = cardSession.getCardTransactionManager();
+
+    boolean isReadingPrepared = false;
+    for (ElementaryFile file : files) {
+      isReadingPrepared |= prepareReadRecords(cardSession, file, scanLevel);
+    }
+    if (!isReadingPrepared) {
+      return;
+    }
+
+    try {
+      cardTransactionManager.processCommands(ChannelControl.KEEP_OPEN);
+    } catch (UnexpectedCommandStatusException e) {
+      // One of the files could not be read, the remaining ones are read one by one
+      for (ElementaryFile file : files) {
+        if (!isRecordsRead(file, scanLevel) && prepareReadRecords(cardSession, file, scanLevel)) {
+          try {
+            cardTransactionManager.processCommands(ChannelControl.KEEP_OPEN);
+          } catch (UnexpectedCommandStatusException ex) {
+            logger.warn(
+                "Unable to read the records of file {}: {}",
+                HexUtil.toHex(file.getHeader().getLid()),
+                ex.getMessage());
+          }
+        }
+      }
+    }
+  }
+
+  /** Same as {@link #isRecordsReadingAllowed(ElementaryFile)}, for a file known from the cache. */
+  private static boolean isRecordsReadingAllowed(CardFileData file) {
+    int readAccessCondition = file.getAccessConditions().getGroup0().getAccessConditionValue();
+    return file.getEfTypeValue() != ToolUtils.CARD_EF_TYPE_BINARY
+        && readAccessCondition != 0x01
+        && readAccessCondition != 0x14
+        && readAccessCondition != 0x15
+        && file.getSfiValue() > 0
+        && file.getNumRecDec() > 0;
+  }
+
+  private static boolean isRecordsRead(
+      CalypsoCard selectedApp, CardFileData file, ScanLevel scanLevel) {
+    ElementaryFile elementaryFile = selectedApp.getFileBySfi((byte) file.getSfiValue());
+    return elementaryFile != null
+        && elementaryFile
+            .getData()
+            .getAllRecordsContent()
+            .containsKey(scanLevel == ScanLevel.FIRST_RECORD ? 1 : file.getNumRecDec());
+  }
+
+  private static void prepareReadRecords(
+      CardSession cardSession, CardFileData file, ScanLevel scanLevel) {
+    cardSession
+        .getCardTransactionManager()
+        .prepareReadRecords(
+            (byte) file.getSfiValue(),
+            1,
+            scanLevel == ScanLevel.FIRST_RECORD ? 1 : file.getNumRecDec(),
+            file.getRecSizeDec());
+  }
+
+  /**
+   * Reads by SFI the records of files known from the cache, without selecting the files.
+   *
+   * @param files The files to read, whose records reading is allowed.
+   */
+  private static void readRecords(
+      CardSession cardSession,
+      CalypsoCard selectedApp,
+      List<CardFileData> files,
+      ScanLevel scanLevel) {
+
+    if (files.isEmpty()) {
+      return;
+    }
+
+    FreeTransactionManager cardTransactionManager = cardSession.getCardTransactionManager();
+    for (CardFileData file : files) {
+      prepareReadRecords(cardSession, file, scanLevel);
+    }
+
+    try {
+      cardTransactionManager.processCommands(ChannelControl.KEEP_OPEN);
+    } catch (UnexpectedCommandStatusException e) {
+      // One of the files could not be read, the remaining ones are read one by one
+      for (CardFileData file : files) {
+        if (!isRecordsRead(selectedApp, file, scanLevel)) {
+          prepareReadRecords(cardSession, file, scanLevel);
+          try {
+            cardTransactionManager.processCommands(ChannelControl.KEEP_OPEN);
+          } catch (UnexpectedCommandStatusException ex) {
+            logger.warn(
+                "Unable to read the records of file {}: {}", file.getLid(), ex.getMessage());
+          }
+        }
+      }
+    }
+  }
+
+  private static ElementaryFile getFileByLid(CalypsoCard selectedApp, short lid) {
+    for (ElementaryFile file : selectedApp.getFiles()) {
+      if (file.getHeader().getLid() == lid) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  private static ElementaryFile getNewFile(CalypsoCard selectedApp, Set<Short> knownLids) {
+    for (ElementaryFile file : selectedApp.getFiles()) {
+      if (knownLids.add(file.getHeader().getLid())) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Walks through the EFs of the current DF.
+   *
+   * <p>The reading of the records of an EF, according to the scan level, is sent in the same
+   * exchange as the selection of the next EF, the walk ends as soon as the number of files stops
+   * growing.
+   */
+  private static void fillFilesTable(
+      CardSession cardSession, CalypsoCard selectedApp, ScanLevel scanLevel) {
+
+    FreeTransactionManager cardTransactionManager = cardSession.getCardTransactionManager();
 
     cardTransactionManager.prepareSelectFile(SelectFileControl.FIRST_EF);
     try {
@@ -75,50 +342,90 @@ public class Tool_AnalyzeCardFileStructure {
       return;
     }
 
+    Set<Short> knownLids = new HashSet<>();
+    ElementaryFile currentFile = getNewFile(selectedApp, knownLids);
     int numberOfFiles = 1;
 
     do {
 
       numberOfFiles++;
+      boolean isReadingPrepared = prepareReadRecords(cardSession, currentFile, scanLevel);
       cardTransactionManager.prepareSelectFile(SelectFileControl.NEXT_EF);
       try {
         cardTransactionManager.processCommands(ChannelControl.KEEP_OPEN);
       } catch (UnexpectedCommandStatusException | SelectFileException e) {
-        return;
+        if (!isReadingPrepared || isRecordsRead(currentFile, scanLevel)) {
+          // End of the DF
+          return;
+        }
+        // The reading failed, so the next EF has not been selected yet
+        logger.warn(
+            "Unable to read the records of file {}: {}",
+            HexUtil.toHex(currentFile.getHeader().getLid()),
+            e.getMessage());
+        cardTransactionManager.prepareSelectFile(SelectFileControl.NEXT_EF);
+        try {
+          cardTransactionManager.processCommands(ChannelControl.KEEP_OPEN);
+        } catch (UnexpectedCommandStatusException | SelectFileException ex) {
+          return;
+        }
       }
+      currentFile = getNewFile(selectedApp, knownLids);
 
     } while (selectedApp.getFiles().size() == numberOfFiles);
   }
 
-  private static CardFileData getFileData(ElementaryFile selectedFile, CalypsoCard selectedApp) {
-
-    CardFileData fileData = new CardFileData(selectedFile);
+  /**
+   * Selects the expected EFs of the current DF directly by their LID instead of walking through the
+   * DF, then reads their records according to the scan level.
+   *
+   * <p>Expected files missing on the card are skipped, files not expected are not discovered.
+   */
+  private static void fillFilesTable(
+      CardSession cardSession,
+      CalypsoCard selectedApp,
+      List<Short> expectedLids,
+      ScanLevel scanLevel) {
+
+    FreeTransactionManager cardTransactionManager = cardSession.getCardTransactionManager();
+
+    for (short lid : expectedLids) {
+      cardTransactionManager.prepareSelectFile(lid);
+    }
+    try {
+      cardTransactionManager.processCommands(ChannelControl.KEEP_OPEN);
+    } catch (UnexpectedCommandStatusException | SelectFileException e) {
+      // At least one file is missing, the remaining ones are selected one by one
+      for (short lid : expectedLids) {
+        if (getFileByLid(selectedApp, lid) == null) {
+          try {
+            cardTransactionManager.prepareSelectFile(lid).processCommands(ChannelControl.KEEP_OPEN);
+          } catch (UnexpectedCommandStatusException | SelectFileException ex) {
+            logger.warn("File {} not found: {}", HexUtil.toHex(lid), ex.getMessage());
+          }
+        }
+      }
+    }
 
-    if (selectedFile.getHeader().getEfType() != ElementaryFile.Type.BINARY
-        && selectedFile.getHeader().getAccessConditions()[0] != 0x01
-        && selectedFile.getHeader().getAccessConditions()[0] != 0x14
-        && selectedFile.getHeader().getAccessConditions()[0] != 0x15
-        && selectedFile.getSfi() != 0) {
+    readRecords(cardSession, selectedApp.getFiles(), scanLevel);
+  }
 
-      for (int i = 0; i < selectedFile.getHeader().getRecordsNumber(); i++) {
+  private static CardFileData getFileData(ElementaryFile selectedFile) {
 
-        calypsoCardService
-            .getCalypsoCardApiFactory()
-            .createFreeTransactionManager(cardReader, selectedApp)
-            .prepareReadRecord(selectedFile.getSfi(), (byte) (i + 1))
-            .processCommands(ChannelControl.KEEP_OPEN);
+    CardFileData fileData = new CardFileData(selectedFile);
 
-        fileData
-            .getRecordDataList()
-            .add((new RecordData(i + 1, selectedFile.getData().getContent((i + 1)))));
-      }
+    for (Map.Entry<Integer, byte[]> recordContent :
+        selectedFile.getData().getAllRecordsContent().entrySet()) {
+      fileData
+          .getRecordDataList()
+          .add(new RecordData(recordContent.getKey(), recordContent.getValue()));
     }
 
     return fileData;
   }
 
   private static CalypsoCard selectApplication(
-      String aid, CommonIsoCardSelector.FileOccurrence fileOccurrence) {
+      CardSession cardSession, String aid, CommonIsoCardSelector.FileOccurrence fileOccurrence) {
     CardSelectionManager cardSelectionManager =
         smartCardService.getReaderApiFactory().createCardSelectionManager();
 
@@ -137,51 +444,35 @@ public class Tool_AnalyzeCardFileStructure {
 
     cardSelectionManager.prepareSelection(isoCardSelector, calypsoCardSelectionExtension);
 
-    CardSelectionResult selectionResult =
-        cardSelectionManager.processCardSelectionScenario(cardReader);
-
-    return (CalypsoCard) selectionResult.getActiveSmartCard();
-  }
-
-  private static CardApplicationData getApplicationData(String aid) {
-
-    CalypsoCard selectedApplication =
-        selectApplication(aid, CommonIsoCardSelector.FileOccurrence.FIRST);
-
-    cardTransactionManager =
-        calypsoCardService
-            .getCalypsoCardApiFactory()
-            .createFreeTransactionManager(cardReader, selectedApplication);
-    cardTransactionManager
-        .prepareSelectFile(SelectFileControl.CURRENT_DF)
-        .processCommands(ChannelControl.KEEP_OPEN);
-
-    // Get and fill the Application file information
-    CardApplicationData cardAppData = new CardApplicationData(selectedApplication);
-
-    fillFilesTable(selectedApplication);
-
-    for (ElementaryFile elementaryFile : selectedApplication.getFiles()) {
-
-      CardFileData cardFileData = getFileData(elementaryFile, selectedApplication);
-      cardAppData.getFileList().add(cardFileData);
+    long selectionStartTime = metrics.start();
+    try {
+      CardSelectionResult selectionResult =
+          cardSelectionManager.processCardSelectionScenario(cardSession.getCardReader());
+      return (CalypsoCard) selectionResult.getActiveSmartCard();
+    } finally {
+      metrics.recordSince(PHASE_APPLICATION_SELECTION, selectionStartTime);
     }
-
-    return cardAppData;
   }
 
-  public static byte[] getTraceabilityInfo(List<String> aidPrefixList) {
+  /**
+   * Selects in a single scenario the first application matching one of the AID prefixes, tried in
+   * the order of the list.
+   *
+   * @return Null if no application matches any prefix.
+   */
+  private static FirstApplication selectFirstApplication(
+      CardSession cardSession, List<String> aidPrefixList) {
 
     CardSelectionManager cardSelectionManager =
         smartCardService.getReaderApiFactory().createCardSelectionManager();
 
-    for (String currentAid : aidPrefixList) {
+    for (String aidPrefix : aidPrefixList) {
 
       IsoCardSelector isoCardSelector =
           SmartCardServiceProvider.getService()
               .getReaderApiFactory()
               .createIsoCardSelector()
-              .filterByDfName(currentAid);
+              .filterByDfName(aidPrefix);
 
       CalypsoCardSelectionExtension calypsoCardSelectionExtension =
           CalypsoExtensionService.getInstance()
@@ -190,133 +481,821 @@ public class Tool_AnalyzeCardFileStructure {
               .acceptInvalidatedCard();
 
       cardSelectionManager.prepareSelection(isoCardSelector, calypsoCardSelectionExtension);
+    }
 
-      CardSelectionResult selectionResult =
-          cardSelectionManager.processCardSelectionScenario(cardReader);
+    CardSelectionResult selectionResult;
+    long selectionStartTime = metrics.start();
+    try {
+      selectionResult =
+          cardSelectionManager.processCardSelectionScenario(cardSession.getCardReader());
+    } finally {
+      metrics.recordSince(PHASE_APPLICATION_SELECTION, selectionStartTime);
+    }
 
-      if (selectionResult.getActiveSmartCard() != null) {
+    if (selectionResult.getActiveSmartCard() == null) {
+      return null;
+    }
+    return new FirstApplication(
+        selectionResult.getActiveSelectionIndex(),
+        (CalypsoCard) selectionResult.getActiveSmartCard());
+  }
 
-        CalypsoCard calypsoCard = (CalypsoCard) selectionResult.getActiveSmartCard();
+  /**
+   * Gets the data of the currently selected application, without selecting it again.
+   *
+   * @param cardSession The session of the reader holding the card.
+   * @param selectedApplication The result of the selection of the application.
+   * @param expectedLids The LIDs of the EFs expected in the application, or null to walk through
+   *     all the EFs of the application.
+   * @param scanLevel The depth of the reading of the EFs.
+   */
+  private static CardApplicationData getApplicationData(
+      CardSession cardSession,
+      CalypsoCard selectedApplication,
+      List<Short> expectedLids,
+      ScanLevel scanLevel) {
+
+    FreeTransactionManager cardTransactionManager =
+        calypsoCardService
+            .getCalypsoCardApiFactory()
+            .createFreeTransactionManager(cardSession.getCardReader(), selectedApplication);
+    cardSession.setCardTransactionManager(cardTransactionManager);
 
-        cardTransactionManager =
-            calypsoCardService
-                .getCalypsoCardApiFactory()
-                .createFreeTransactionManager(cardReader, calypsoCard);
-        try {
-          cardTransactionManager
-              .prepareGetData(GetDataTag.TRACEABILITY_INFORMATION)
-              .processCommands(ChannelControl.KEEP_OPEN);
-        } catch (UnexpectedCommandStatusException e) {
-          logger.warn("Traceability information tag not available: {}", e.getMessage());
+    long readingStartTime = metrics.start();
+    try {
+      cardTransactionManager
+          .prepareSelectFile(SelectFileControl.CURRENT_DF)
+          .processCommands(ChannelControl.KEEP_OPEN);
+
+      if (expectedLids == null) {
+        fillFilesTable(cardSession, selectedApplication, scanLevel);
+      } else {
+        fillFilesTable(cardSession, selectedApplication, expectedLids, scanLevel);
+      }
+    } finally {
+      metrics.recordSince(PHASE_FILES_READING, readingStartTime);
+    }
+
+    long modelStartTime = metrics.start();
+    try {
+      // Get and fill the Application file information
+      CardApplicationData cardAppData = new CardApplicationData(selectedApplication);
+
+      for (ElementaryFile elementaryFile : selectedApplication.getFiles()) {
+
+        CardFileData cardFileData = getFileData(elementaryFile);
+        cardAppData.getFileList().add(cardFileData);
+      }
+
+      return cardAppData;
+    } finally {
+      metrics.recordSince(PHASE_CARD_DATA_MODEL, modelStartTime);
+    }
+  }
+
+  /**
+   * Gets the data of the currently selected application of a card already analyzed, without walking
+   * through its EFs again.
+   *
+   * <p>The headers of the EFs and the records of the EFs that cannot be modified are taken from the
+   * cached data, only the records of the other EFs are read again.
+   *
+   * @param cardSession The session of the reader holding the card.
+   * @param selectedApplication The result of the selection of the application.
+   * @param cachedApplication The data of the application cached at the previous analysis.
+   * @param scanLevel The depth of the reading of the EFs, the one of the cached data.
+   */
+  private static CardApplicationData getApplicationDelta(
+      CardSession cardSession,
+      CalypsoCard selectedApplication,
+      CardApplicationData cachedApplication,
+      ScanLevel scanLevel) {
+
+    FreeTransactionManager cardTransactionManager =
+        calypsoCardService
+            .getCalypsoCardApiFactory()
+            .createFreeTransactionManager(cardSession.getCardReader(), selectedApplication);
+    cardSession.setCardTransactionManager(cardTransactionManager);
+
+    List<CardFileData> modifiableFiles = new ArrayList<>();
+    if (scanLevel != ScanLevel.HEADERS) {
+      for (CardFileData cachedFile : cachedApplication.getFileList()) {
+        if (cachedFile.isModifiable() && isRecordsReadingAllowed(cachedFile)) {
+          modifiableFiles.add(cachedFile);
         }
+      }
+    }
 
-        return calypsoCard.getTraceabilityInformation();
+    long readingStartTime = metrics.start();
+    try {
+      // The header of the DF is needed by the application data
+      cardTransactionManager
+          .prepareSelectFile(SelectFileControl.CURRENT_DF)
+          .processCommands(ChannelControl.KEEP_OPEN);
+      readRecords(cardSession, selectedApplication, modifiableFiles, scanLevel);
+    } finally {
+      metrics.recordSince(PHASE_FILES_READING, readingStartTime);
+    }
+
+    long modelStartTime = metrics.start();
+    try {
+      CardApplicationData cardAppData = new CardApplicationData(selectedApplication);
+
+      for (CardFileData cachedFile : cachedApplication.getFileList()) {
+
+        CardFileData cardFileData = new CardFileData(cachedFile);
+        if (!modifiableFiles.contains(cachedFile)) {
+          if (cachedFile.getRecordDataList() != null) {
+            cardFileData.getRecordDataList().addAll(cachedFile.getRecordDataList());
+          }
+        } else {
+          ElementaryFile elementaryFile =
+              selectedApplication.getFileBySfi((byte) cachedFile.getSfiValue());
+          if (elementaryFile != null) {
+            for (Map.Entry<Integer, byte[]> recordContent :
+                elementaryFile.getData().getAllRecordsContent().entrySet()) {
+              cardFileData
+                  .getRecordDataList()
+                  .add(new RecordData(recordContent.getKey(), recordContent.getValue()));
+            }
+          }
+        }
+        cardAppData.getFileList().add(cardFileData);
       }
+
+      return cardAppData;
+    } finally {
+      metrics.recordSince(PHASE_CARD_DATA_MODEL, modelStartTime);
     }
+  }
 
-    return null; // NOSONAR
+  /**
+   * @return Null if the application is not in the cached data or if its FCI has changed.
+   */
+  private static CardApplicationData getCachedApplication(
+      CardStructureData cachedData, CalypsoCard calypsoCard) {
+    if (cachedData == null) {
+      return null;
+    }
+    for (CardApplicationData cachedApplication : cachedData.getApplicationList()) {
+      if (Arrays.equals(cachedApplication.getFci(), calypsoCard.getSelectApplicationResponse())) {
+        return cachedApplication;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return Null if the delta re-analysis is not enabled, or if the card has not been analyzed yet
+   *     at the same scan level.
+   */
+  private static CardStructureData getCachedData(
+      byte[] traceabilityInfo, CalypsoCard firstApplication, ScanLevel scanLevel) {
+    if (deltaCache == null) {
+      return null;
+    }
+    CardStructureData cachedData =
+        deltaCache.get(
+            CardDataCache.getKey(
+                traceabilityInfo,
+                firstApplication.getApplicationSerialNumber(),
+                firstApplication.getSelectApplicationResponse()));
+    return cachedData != null && cachedData.getScanLevel() == scanLevel ? cachedData : null;
   }
 
+  private static byte[] getTraceabilityInfo(CardSession cardSession, CalypsoCard calypsoCard) {
+
+    FreeTransactionManager cardTransactionManager =
+        calypsoCardService
+            .getCalypsoCardApiFactory()
+            .createFreeTransactionManager(cardSession.getCardReader(), calypsoCard);
+    cardSession.setCardTransactionManager(cardTransactionManager);
+    long traceabilityStartTime = metrics.start();
+    try {
+      cardTransactionManager
+          .prepareGetData(GetDataTag.TRACEABILITY_INFORMATION)
+          .processCommands(ChannelControl.KEEP_OPEN);
+    } catch (UnexpectedCommandStatusException e) {
+      logger.warn("Traceability information tag not available: {}", e.getMessage());
+    } finally {
+      metrics.recordSince(PHASE_TRACEABILITY, traceabilityStartTime);
+    }
+
+    return calypsoCard.getTraceabilityInformation();
+  }
+
+  public static byte[] getTraceabilityInfo(CardSession cardSession, List<String> aidPrefixList) {
+
+    FirstApplication firstApplication = selectFirstApplication(cardSession, aidPrefixList);
+
+    if (firstApplication == null) {
+      return null; // NOSONAR
+    }
+    return getTraceabilityInfo(cardSession, firstApplication.calypsoCard);
+  }
+
+  public static void getApplicationsData(
+      CardSession cardSession, String aidPrefix, List<CardApplicationData> cardAppDataList) {
+    getApplicationsData(cardSession, aidPrefix, null, cardAppDataList);
+  }
+
+  /**
+   * Gets the data of all the applications matching the provided AID prefix.
+   *
+   * @param cardSession The session of the reader holding the card.
+   * @param aidPrefix The AID prefix.
+   * @param expectedLids The LIDs of the EFs expected in the applications, or null to walk through
+   *     all the EFs of the applications.
+   * @param cardAppDataList The list to fill.
+   * @since 2.1.0
+   */
   public static void getApplicationsData(
-      String aidPrefix, List<CardApplicationData> cardAppDataList) {
-    List<String> aids = new ArrayList<>();
+      CardSession cardSession,
+      String aidPrefix,
+      List<Short> expectedLids,
+      List<CardApplicationData> cardAppDataList) {
+    getApplicationsData(
+        cardSession,
+        aidPrefix,
+        selectApplication(cardSession, aidPrefix, CommonIsoCardSelector.FileOccurrence.FIRST),
+        expectedLids,
+        ScanLevel.FULL,
+        null,
+        new HashSet<>(),
+        cardAppDataList);
+  }
 
-    CalypsoCard calypsoCard =
-        selectApplication(aidPrefix, CommonIsoCardSelector.FileOccurrence.FIRST);
+  /**
+   * Gets the data of the applications matching the AID prefix, starting with the first one already
+   * selected.
+   *
+   * <p>The data of each application is collected right after its selection, the next application
+   * being then selected relatively to the current one. The applications whose DF name is already
+   * known are skipped, the ones present in the cached data are read again partially.
+   */
+  private static void getApplicationsData(
+      CardSession cardSession,
+      String aidPrefix,
+      CalypsoCard firstApplication,
+      List<Short> expectedLids,
+      ScanLevel scanLevel,
+      CardStructureData cachedData,
+      Set<String> readDfNames,
+      List<CardApplicationData> cardAppDataList) {
+
+    CalypsoCard calypsoCard = firstApplication;
     while (calypsoCard != null) {
-      aids.add(HexUtil.toHex(calypsoCard.getDfName()));
-      calypsoCard = selectApplication(aidPrefix, CommonIsoCardSelector.FileOccurrence.NEXT);
+      if (readDfNames.add(HexUtil.toHex(calypsoCard.getDfName()))) {
+        CardApplicationData cachedApplication = getCachedApplication(cachedData, calypsoCard);
+        cardAppDataList.add(
+            cachedApplication != null
+                ? getApplicationDelta(cardSession, calypsoCard, cachedApplication, scanLevel)
+                : getApplicationData(cardSession, calypsoCard, expectedLids, scanLevel));
+      }
+      calypsoCard =
+          selectApplication(cardSession, aidPrefix, CommonIsoCardSelector.FileOccurrence.NEXT);
+    }
+  }
+
+  /**
+   * Gets the file structure of the applications matching the provided AID prefixes, without reading
+   * the records of the files.
+   *
+   * <p>The first application matching one of the prefixes is selected in a single scenario, the
+   * prefixes before the one it matches being known to match nothing. Each application is selected
+   * and its files read once, even if it matches several prefixes.
+   *
+   * @param cardSession The session of the reader holding the card.
+   * @param expectedLidsByAidPrefix The AID prefixes, in the order in which they are selected, each
+   *     with the LIDs of the EFs expected in the matching applications, or null to walk through all
+   *     the EFs of the applications.
+   * @return The data of the applications found, empty if none.
+   * @since 2.1.0
+   */
+  public static List<CardApplicationData> getApplicationsStructure(
+      CardSession cardSession, Map<String, List<Short>> expectedLidsByAidPrefix) {
+
+    List<String> aidPrefixList = new ArrayList<>(expectedLidsByAidPrefix.keySet());
+    List<CardApplicationData> cardAppDataList = new ArrayList<>();
+
+    FirstApplication firstApplication = selectFirstApplication(cardSession, aidPrefixList);
+    if (firstApplication == null) {
+      return cardAppDataList;
     }
 
-    for (String aid : aids) {
-      cardAppDataList.add(getApplicationData(aid));
+    Set<String> readDfNames = new HashSet<>();
+    for (int i = firstApplication.aidPrefixIndex; i < aidPrefixList.size(); i++) {
+      String aidPrefix = aidPrefixList.get(i);
+      CalypsoCard calypsoCard =
+          i == firstApplication.aidPrefixIndex
+              ? firstApplication.calypsoCard
+              : selectApplication(
+                  cardSession, aidPrefix, CommonIsoCardSelector.FileOccurrence.FIRST);
+      getApplicationsData(
+          cardSession,
+          aidPrefix,
+          calypsoCard,
+          expectedLidsByAidPrefix.get(aidPrefix),
+          ScanLevel.HEADERS,
+          null,
+          readDfNames,
+          cardAppDataList);
     }
+
+    return cardAppDataList;
   }
 
-  public static boolean initReaders(String readerNameRegex) {
+  /**
+   * Gets the file structure of all the applications the analyzer looks for, without reading the
+   * records of the files.
+   *
+   * @param cardSession The session of the reader holding the card.
+   * @return The data of the applications found, empty if none.
+   * @since 2.1.0
+   */
+  public static List<CardApplicationData> getApplicationsStructure(CardSession cardSession) {
+    Map<String, List<Short>> expectedLidsByAidPrefix = new LinkedHashMap<>();
+    for (String aidPrefix : AID_PREFIX_LIST) {
+      expectedLidsByAidPrefix.put(aidPrefix, null);
+    }
+    return getApplicationsStructure(cardSession, expectedLidsByAidPrefix);
+  }
 
-    Plugin plugin = smartCardService.registerPlugin(PcscPluginFactoryBuilder.builder().build());
+  /**
+   * Sets up, according to the options, the recording to trace files of the APDUs exchanged with the
+   * PC/SC readers ("--record=&lt;directory&gt;"), or the replay of trace files instead of the PC/SC
+   * readers ("--replay=&lt;file-or-directory&gt;", with the
+   * "--replay-latency=&lt;microseconds&gt;|recorded" and "--replay-repeat=&lt;n&gt;" options).
+   *
+   * <p>With the "--metrics[=&lt;period in seconds&gt;]" option, the latencies of the APDUs and of
+   * the processing phases of the cards are also measured.
+   *
+   * @param options The options of the tool.
+   * @throws IOException If the trace files cannot be created or read.
+   * @throws NumberFormatException If an option value is not a number.
+   * @since 2.1.0
+   */
+  static void configurePlugin(ToolOptions options) throws IOException {
+
+    String replayPath = options.getOption("replay", null);
+    if (replayPath != null) {
+      String latency = options.getOption("replay-latency", "0");
+      replayPluginFactory =
+          ReplayPluginFactory.load(
+              Paths.get(replayPath),
+              "recorded".equals(latency)
+                  ? ReplayPluginFactory.RECORDED_LATENCY
+                  : Long.parseLong(latency),
+              Integer.parseInt(options.getOption("replay-repeat", "1")));
+      pluginFactory = replayPluginFactory;
+    } else {
+      pluginFactory = PcscPluginFactoryBuilder.builder().build();
+      String recordDirectory = options.getOption("record", null);
+      if (recordDirectory != null) {
+        pluginFactory = ApduTraceRecorder.record(pluginFactory, Paths.get(recordDirectory));
+      }
+    }
 
-    smartCardService.checkCardExtension(calypsoCardService);
+    if (options.hasOption("metrics")) {
+      metricsPeriodSeconds =
+          Long.parseLong(
+              options.getOption("metrics", String.valueOf(DEFAULT_METRICS_PERIOD_SECONDS)));
+      metrics = new LatencyMetrics(true);
+      pluginFactory = ApduLatencyRecorder.record(pluginFactory, metrics);
+    }
+  }
 
-    String pcscContactlessCardReaderName = ToolUtils.getCardReaderName(plugin, readerNameRegex);
-    cardReader = plugin.getReader(pcscContactlessCardReaderName);
+  /**
+   * Extends the built-in issuer names with the ones of the file set with the "--issuers" option, if
+   * any.
+   *
+   * @since 2.1.0
+   */
+  static void configureIssuers(ToolOptions options) throws IOException {
+    String issuersFile = options.getOption("issuers", null);
+    if (issuersFile != null) {
+      IssuerRegistry.setCurrent(IssuerRegistry.getBuiltIn().extend(Paths.get(issuersFile)));
+    }
+  }
+
+  /**
+   * Creates the executor of the reader sessions, with the timeout set with the
+   * "--session-timeout=&lt;seconds&gt;" option, if any.
+   *
+   * @throws NumberFormatException If the timeout is not a number.
+   * @since 2.1.0
+   */
+  static void configureSessions(ToolOptions options) {
+    long timeoutSeconds = Long.parseLong(options.getOption("session-timeout", "0"));
+    sessionExecutor = SessionExecutor.create(TimeUnit.SECONDS.toMillis(timeoutSeconds));
+    if (options.hasOption("all-readers") || timeoutSeconds > 0) {
+      logger.info(
+          "Reader sessions run in {} threads",
+          sessionExecutor.isVirtual() ? "virtual" : "platform");
+    }
+  }
+
+  /**
+   * @return The executor of the reader sessions.
+   * @since 2.1.0
+   */
+  static SessionExecutor getSessionExecutor() {
+    return sessionExecutor;
+  }
 
-    plugin
-        .getReaderExtension(PcscReader.class, pcscContactlessCardReaderName)
-        .setContactless(true)
-        .setIsoProtocol(PcscReader.IsoProtocol.ANY)
-        .setSharingMode(PcscReader.SharingMode.SHARED);
+  /**
+   * Creates the daemon processing the inserted cards, in sessions cancelled after the timeout if
+   * the "--session-timeout" option is set, directly in the threads observing the readers otherwise.
+   *
+   * @since 2.1.0
+   */
+  static CardInsertionDaemon newDaemon(
+      List<CardSession> cardSessions, Consumer<CardSession> cardProcessor) {
+    return new CardInsertionDaemon(
+        cardSessions,
+        cardProcessor,
+        sessionExecutor.getTimeoutMillis() > 0 ? sessionExecutor : null);
+  }
+
+  /**
+   * Prints the summary of the latencies measured if the "--metrics" option is set.
+   *
+   * @since 2.1.0
+   */
+  static void printMetrics() {
+    metrics.print(logger);
+  }
+
+  /**
+   * Runs the daemon, which is stopped once all the cards have been replayed when replaying traces.
+   *
+   * <p>The summary of the latencies is printed periodically if the "--metrics" option is set.
+   *
+   * @since 2.1.0
+   */
+  static void runDaemon(CardInsertionDaemon daemon) {
+
+    if (replayPluginFactory != null) {
+      Thread replayWatcher =
+          new Thread(
+              () -> {
+                try {
+                  replayPluginFactory.awaitEndOfReplay();
+                  daemon.stop();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              },
+              "ReplayWatcher");
+      replayWatcher.setDaemon(true);
+      replayWatcher.start();
+    }
+    metrics.startPeriodicPrint(logger, metricsPeriodSeconds);
+    daemon.run();
+  }
+
+  private static synchronized Plugin getPlugin() {
+
+    if (plugin == null) {
+      if (pluginFactory == null) {
+        pluginFactory = PcscPluginFactoryBuilder.builder().build();
+      }
+      plugin = smartCardService.registerPlugin(pluginFactory);
+      smartCardService.checkCardExtension(calypsoCardService);
+    }
+
+    return plugin;
+  }
+
+  private static CardSession initReader(Plugin plugin, String readerName) {
+
+    CardReader cardReader = plugin.getReader(readerName);
+
+    // The replay readers have no settings
+    if (replayPluginFactory == null) {
+      plugin
+          .getReaderExtension(PcscReader.class, readerName)
+          .setContactless(true)
+          .setIsoProtocol(PcscReader.IsoProtocol.ANY)
+          .setSharingMode(PcscReader.SharingMode.SHARED);
+    }
 
     logger.info("= Card Reader  NAME = {}", cardReader.getName());
 
-    return cardReader.isCardPresent();
+    return new CardSession(cardReader);
   }
 
-  public static void main(String[] args) {
+  /**
+   * Initializes the first reader whose name matches the provided regular expression.
+   *
+   * @param readerNameRegex The regular expression.
+   * @return The session of the reader.
+   * @throws IllegalStateException If no reader matches.
+   * @since 2.1.0
+   */
+  public static CardSession initReader(String readerNameRegex) {
+    Plugin pcscPlugin = getPlugin();
+    return initReader(pcscPlugin, ToolUtils.getCardReaderName(pcscPlugin, readerNameRegex));
+  }
 
-    String readerNameRegex;
-    if (args.length == 1) {
-      readerNameRegex = args[0];
-    } else {
-      readerNameRegex = ToolUtils.DEFAULT_CARD_READER_NAME_REGEX;
+  /**
+   * Initializes all the readers whose name matches the provided regular expression.
+   *
+   * @param readerNameRegex The regular expression.
+   * @return One session per reader.
+   * @throws IllegalStateException If no reader matches.
+   * @since 2.1.0
+   */
+  public static List<CardSession> initReaders(String readerNameRegex) {
+    Plugin pcscPlugin = getPlugin();
+    List<CardSession> cardSessions = new ArrayList<>();
+    for (String readerName : ToolUtils.getCardReaderNames(pcscPlugin, readerNameRegex)) {
+      cardSessions.add(initReader(pcscPlugin, readerName));
     }
+    return cardSessions;
+  }
 
-    boolean isCardPresent = initReaders(readerNameRegex);
+  /**
+   * Analyzes the card present in the reader of the provided session, reading all the records of the
+   * files.
+   *
+   * @param cardSession The session.
+   * @return Null if no application has been found.
+   * @since 2.1.0
+   */
+  public static CardStructureData analyzeCard(CardSession cardSession) {
+    return analyzeCard(cardSession, ScanLevel.FULL);
+  }
 
-    if (isCardPresent) {
+  /**
+   * Analyzes the card present in the reader of the provided session.
+   *
+   * @param cardSession The session.
+   * @param scanLevel The depth of the reading of the files, recorded in the card data.
+   * @return Null if no application has been found.
+   * @since 2.1.0
+   */
+  public static CardStructureData analyzeCard(CardSession cardSession, ScanLevel scanLevel) {
+
+    // The prefixes before the one of the first application found are known to match nothing
+    FirstApplication firstApplication = selectFirstApplication(cardSession, AID_PREFIX_LIST);
+
+    byte[] traceabilityInfo =
+        firstApplication != null
+            ? getTraceabilityInfo(cardSession, firstApplication.calypsoCard)
+            : null;
+
+    if (traceabilityInfo == null) {
+      logger.info("No applications found.");
+      return null;
+    }
 
-      // - GEN RT TEST (91h) - , - GEN SV TEST (92h) - , - Hoplink -, - Ndef -,  - MF -, - RT -, -
-      // SV -, - GEN AID -
-      List<String> aidPrefixList =
-          Arrays.asList(
-              "A000000291", "A000000404", "D276000085", "334D54522E", "315449432E", "304554502E");
+    CardStructureData cardStructureData =
+        new CardStructureData(traceabilityInfo, SOFTWARE_INFORMATION, new Date(), 2, SOFTWARE_NAME);
+    cardStructureData.setScanLevel(scanLevel);
 
-      byte[] traceabilityInfo = getTraceabilityInfo(aidPrefixList);
+    CardStructureData cachedData =
+        getCachedData(traceabilityInfo, firstApplication.calypsoCard, scanLevel);
+    if (cachedData != null) {
+      logger.info("Card already analyzed, only its modifiable records are read again.");
+    }
 
-      if (traceabilityInfo == null) {
-        logger.info("No applications found.");
-        return;
+    Set<String> readDfNames = new HashSet<>();
+    for (int i = firstApplication.aidPrefixIndex; i < AID_PREFIX_LIST.size(); i++) {
+      String aidPrefix = AID_PREFIX_LIST.get(i);
+      CalypsoCard calypsoCard =
+          i == firstApplication.aidPrefixIndex
+              ? firstApplication.calypsoCard
+              : selectApplication(
+                  cardSession, aidPrefix, CommonIsoCardSelector.FileOccurrence.FIRST);
+      getApplicationsData(
+          cardSession,
+          aidPrefix,
+          calypsoCard,
+          null,
+          scanLevel,
+          cachedData,
+          readDfNames,
+          cardStructureData.getApplicationList());
+    }
+
+    return cardStructureData;
+  }
+
+  /** Names the report of the card data after the current date and the CSN of the card. */
+  private static void setReportName(CardStructureData cardStructureData) {
+
+    String dateString = new SimpleDateFormat("yyyyMMdd").format(new Date());
+
+    cardStructureData.setId(
+        dateString
+            + "_CardData_"
+            + cardStructureData.getApplicationList().get(0).getCsnDec()
+            + (isBinaryReport ? CardStructureBinary.FILE_EXTENSION : ".json"));
+  }
+
+  private static void writeReport(CardStructureData cardStructureData) {
+
+    long writingStartTime = metrics.start();
+    try {
+      String fileName = cardStructureData.getId();
+
+      if (archive != null) {
+        archive.append(cardStructureData);
+      } else if (isBinaryReport) {
+        CardStructureBinary.write(cardStructureData, Paths.get(fileName));
+      } else {
+        CardStructureJson.write(cardStructureData, Paths.get(fileName), isJsonPrettyPrinting);
       }
 
-      CardStructureData cardStructureData =
-          new CardStructureData(
-              traceabilityInfo, SOFTWARE_INFORMATION, new Date(), 2, SOFTWARE_NAME);
+    } catch (Exception e) {
+      logger.error("Exception while writing the report: {}", e.getMessage(), e);
+    } finally {
+      metrics.recordSince(PHASE_REPORT_WRITING, writingStartTime);
+    }
+  }
+
+  private static CardStructureData processCard(CardSession cardSession) {
+
+    if (!cardSession.getCardReader().isCardPresent()) {
+      logger.error("No card is present in the reader.");
+      return null;
+    }
 
-      for (String aidPrefix : aidPrefixList) {
-        getApplicationsData(aidPrefix, cardStructureData.getApplicationList());
+    long startTime = System.nanoTime();
+    CardStructureData cardStructureData = analyzeCard(cardSession, scanLevel);
+
+    if (cardStructureData != null) {
+      // By product type, to identify the slow card models
+      metrics.record(
+          CARD_PREFIX + cardStructureData.getApplicationList().get(0).getCalypsoRevision(),
+          TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+      setReportName(cardStructureData);
+      // Cached once complete, the cache may spill it to disk at any time
+      if (deltaCache != null) {
+        deltaCache.put(cardStructureData);
       }
+      // The next card can be read while the report is written and printed
+      persistStage.submit(cardStructureData);
+    }
+
+    return cardStructureData;
+  }
+
+  private static void processAllReaders(String readerNameRegex) {
 
+    Map<String, Future<CardStructureData>> tasks = new LinkedHashMap<>();
+
+    // One session per reader, named after the reader
+    for (CardSession cardSession : initReaders(readerNameRegex)) {
+      tasks.put(
+          cardSession.getReaderName(),
+          sessionExecutor.submit(cardSession.getReaderName(), () -> processCard(cardSession)));
+    }
+
+    int nbAnalyzedCards = 0;
+    logger.info(ToolUtils.SEPARATOR_LINE);
+    for (Map.Entry<String, Future<CardStructureData>> task : tasks.entrySet()) {
       try {
-        Gson gson =
-            new GsonBuilder()
-                .registerTypeHierarchyAdapter(byte[].class, new ToolUtils.HexTypeAdapter())
-                .setPrettyPrinting()
-                .create();
+        CardStructureData cardStructureData = task.getValue().get();
+        if (cardStructureData != null) {
+          nbAnalyzedCards++;
+          logger.info("= {}:: {}", task.getKey(), cardStructureData.getId());
+        } else {
+          logger.info("= {}:: no card analyzed", task.getKey());
+        }
+      } catch (ExecutionException e) {
+        logger.error(
+            "= {}:: analysis failed: {}", task.getKey(), e.getCause().getMessage(), e.getCause());
+      } catch (CancellationException e) {
+        logger.error("= {}:: analysis cancelled", task.getKey());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    logger.info("= {} card(s) analyzed on {} reader(s)", nbAnalyzedCards, tasks.size());
+    logger.info(ToolUtils.SEPARATOR_LINE);
+  }
 
-        String dateString = new SimpleDateFormat("yyyyMMdd").format(new Date());
+  public static void main(String[] args) {
 
-        String fileName =
-            dateString
-                + "_CardData_"
-                + cardStructureData.getApplicationList().get(0).getCsnDec()
-                + ".json";
+    ToolOptions options = new ToolOptions(args);
 
-        cardStructureData.setId(fileName);
+    List<String> unknownOptions = options.getUnknownOptions(OPTION_NAMES);
+    if (!unknownOptions.isEmpty()) {
+      logger.error("Unknown option(s) {}", unknownOptions);
+      logger.error(USAGE);
+      System.exit(1);
+    }
 
-        String jsonToPrint = gson.toJson(cardStructureData);
+    isJsonPrettyPrinting = !options.hasOption("compact-json");
+    isBinaryReport = options.hasOption("binary");
 
-        FileWriter fw = new FileWriter(fileName);
-        fw.write(jsonToPrint);
-        fw.close();
+    String scanLevelName = options.getOption("scan-level", ScanLevel.FULL.getName());
+    scanLevel = ScanLevel.fromName(scanLevelName);
+    if (scanLevel == null) {
+      logger.error(
+          "Unknown scan level '{}', expected 'headers', 'first-record' or 'full'", scanLevelName);
+      System.exit(1);
+    }
 
-      } catch (Exception e) {
-        logger.error("Exception while writing the report: {}", e.getMessage(), e);
+    try {
+      configureIssuers(options);
+    } catch (IOException e) {
+      logger.error("Exception while loading the issuers: {}", e.getMessage(), e);
+      System.exit(1);
+    }
+
+    try {
+      configurePlugin(options);
+      configureSessions(options);
+    } catch (IOException | NumberFormatException e) {
+      logger.error("Exception while configuring the readers: {}", e.getMessage(), e);
+      System.exit(1);
+    }
+
+    String archiveDirectory = options.getOption("archive", null);
+    if (archiveDirectory != null) {
+      try {
+        archive = CardDataArchive.open(Paths.get(archiveDirectory));
+      } catch (IOException e) {
+        logger.error("Exception while opening the archive: {}", e.getMessage(), e);
+        System.exit(1);
       }
+    }
 
-      cardStructureData.print(logger);
+    if (options.hasOption("delta-cache")) {
+      String cacheDirectory = options.getOption("delta-cache", null);
+      try {
+        deltaCache =
+            cacheDirectory != null
+                ? CardDataCache.open(Paths.get(cacheDirectory))
+                : CardDataCache.openTemporary();
+      } catch (IOException e) {
+        logger.error("Exception while opening the delta cache: {}", e.getMessage(), e);
+        System.exit(1);
+      }
+    }
+
+    // Card reading and data model building, then report writing, then report printing unless quiet
+    pipeline = new Pipeline();
+    persistStage =
+        pipeline.addStage(
+            "Persist",
+            cardStructureData -> {
+              writeReport(cardStructureData);
+              if (reportStage != null) {
+                reportStage.submit(cardStructureData);
+              }
+            });
+    if (!options.hasOption("quiet")) {
+      // The card data are rendered at once into a buffer reused from one card to the next
+      CardStructureText cardStructureText = new CardStructureText();
+      reportStage =
+          pipeline.addStage(
+              "Report",
+              cardStructureData -> {
+                if (logger.isInfoEnabled()) {
+                  logger.info("{}", cardStructureText.render(cardStructureData));
+                }
+              });
+    }
+
+    String readerNameRegex;
+    if (options.getArguments().size() == 1) {
+      readerNameRegex = options.getArguments().get(0);
     } else {
-      logger.error("No card is present in the reader.");
+      readerNameRegex = ToolUtils.DEFAULT_CARD_READER_NAME_REGEX;
+    }
+
+    if (options.hasOption("daemon")) {
+      List<CardSession> cardSessions =
+          options.hasOption("all-readers")
+              ? initReaders(readerNameRegex)
+              : Collections.singletonList(initReader(readerNameRegex));
+      runDaemon(newDaemon(cardSessions, Tool_AnalyzeCardFileStructure::processCard));
+    } else if (options.hasOption("all-readers")) {
+      processAllReaders(readerNameRegex);
+    } else {
+      processCard(initReader(readerNameRegex));
+    }
+    sessionExecutor.close();
+    pipeline.close();
+    printMetrics();
+    if (archive != null) {
+      try {
+        archive.close();
+      } catch (IOException e) {
+        logger.error("Exception while closing the archive: {}", e.getMessage(), e);
+      }
+    }
+    if (deltaCache != null) {
+      try {
+        deltaCache.close();
+      } catch (IOException e) {
+        logger.error("Exception while closing the delta cache: {}", e.getMessage(), e);
+      }
     }
     System.exit(0);
   }
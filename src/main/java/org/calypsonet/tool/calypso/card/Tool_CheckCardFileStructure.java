@@ -11,16 +11,44 @@
  ************************************************************************************** */
 package org.calypsonet.tool.calypso.card;
 
-import static org.calypsonet.tool.calypso.common.ToolUtils.SEPARATOR_LINE;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import org.calypsonet.tool.calypso.carddata.*;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.check.CheckReport;
+import org.calypsonet.tool.calypso.check.CheckSummary;
+import org.calypsonet.tool.calypso.check.CompiledApplication;
+import org.calypsonet.tool.calypso.check.ProfileIdentifier;
+import org.calypsonet.tool.calypso.check.ProfileMatcher;
+import org.calypsonet.tool.calypso.check.ProfileRegistry;
+import org.calypsonet.tool.calypso.common.Pipeline;
+import org.calypsonet.tool.calypso.common.SessionExecutor;
+import org.calypsonet.tool.calypso.common.ToolOptions;
 import org.calypsonet.tool.calypso.common.ToolUtils;
-import org.eclipse.keyple.core.util.HexUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,281 +61,480 @@ public class Tool_CheckCardFileStructure {
 
   private static final Logger logger = LoggerFactory.getLogger(Tool_CheckCardFileStructure.class);
 
-  private static List<FileReference> dataRefStatus;
-
-  private static void checkAccessCondition(
-      int groupNumber,
-      AccessConditions.AccessCondition dataToCheck,
-      AccessConditions.AccessCondition dataRead) {
+  private static final String REPORT_FORMAT_JSON = "json";
+
+  private static final String REPORT_FORMAT_JUNIT = "junit";
+
+  private static final String USAGE =
+      "Usage: java -jar Tool_CheckCardFileStructure.jar <path-to-json-file-or-directory>"
+          + " [readerNameRegex]"
+          + " [--known-files] [--all-readers] [--daemon] [--report-format=json|junit]"
+          + " [--offline=<card-data-directory>] [--record=<trace-directory>]"
+          + " [--replay=<trace-file-or-directory>] [--replay-latency=<microseconds>|recorded]"
+          + " [--replay-repeat=<n>] [--metrics[=<period-in-seconds>]]"
+          + " [--issuers=<issuers-file>] [--profile=<profile-name>] [--identify]"
+          + " [--session-timeout=<seconds>]";
+
+  private static final List<String> OPTION_NAMES =
+      Arrays.asList(
+          "known-files",
+          "all-readers",
+          "daemon",
+          "report-format",
+          "offline",
+          "record",
+          "replay",
+          "replay-latency",
+          "replay-repeat",
+          "metrics",
+          "issuers",
+          "profile",
+          "identify",
+          "session-timeout");
+
+  private static Pipeline.Stage<CardToCheck> checkStage;
+
+  private static Pipeline.Stage<CardToCheck> persistStage;
+
+  private static Pipeline.Stage<CardToCheck> reportStage;
+
+  /** Card read, going through the check, persist and report stages. */
+  private static final class CardToCheck {
+
+    private final List<CardApplicationData> applicationsRead;
+
+    /** Null to identify the profile of the card. */
+    private final ProfileMatcher profileMatcher;
+
+    /** Null to check the card against a given profile. */
+    private final ProfileIdentifier profileIdentifier;
+
+    private CheckReport report;
+
+    private ProfileIdentifier.Identification identification;
+
+    private CardToCheck(
+        List<CardApplicationData> applicationsRead,
+        ProfileMatcher profileMatcher,
+        ProfileIdentifier profileIdentifier) {
+      this.applicationsRead = applicationsRead;
+      this.profileMatcher = profileMatcher;
+      this.profileIdentifier = profileIdentifier;
+    }
+  }
 
-    if (dataToCheck.getAccessCondition() != null
-        && !dataToCheck.getAccessCondition().equals(dataRead.getAccessCondition())) {
-      logger.info(
-          "Group {}:: Expected Access Condition to be [{}] and found [{}].",
-          groupNumber,
-          dataToCheck.getAccessCondition(),
-          dataRead.getAccessCondition());
+  /**
+   * Reads once the structure of the applications of the card present in the reader expected by a
+   * profile, without the records of the files that are not checked.
+   */
+  private static List<CardApplicationData> readCard(
+      CardSession cardSession, ProfileMatcher profileMatcher, boolean isKnownFilesMode) {
+
+    Map<String, List<Short>> expectedLidsByAid = new LinkedHashMap<>();
+    for (CompiledApplication applicationToCheck : profileMatcher.getApplications()) {
+      expectedLidsByAid.put(
+          applicationToCheck.getAid(), isKnownFilesMode ? new ArrayList<>() : null);
     }
 
-    if (dataToCheck.getAccessCondition().equals("10")
-        || dataToCheck.getAccessCondition().equals("14")
-        || dataToCheck.getAccessCondition().equals("15")) {
-
-      if (dataToCheck.getKeyLevel() == null) {
-        logger.info(
-            "Group {}:: Structure to check error. Access Condition [{}] requires an associated Key Level.",
-            groupNumber,
-            dataToCheck.getAccessCondition());
-      } else if (!dataToCheck.getKeyLevel().equals(dataRead.getKeyLevel())) {
-        logger.info(
-            "Group {}:: Expected Key Level to be [{}] and found [{}].",
-            groupNumber,
-            dataToCheck.getKeyLevel(),
-            dataRead.getKeyLevel());
+    if (isKnownFilesMode) {
+      // An application read is checked against each expected application whose AID is a prefix of
+      // its AID, so its files are selected at once for all the expected AIDs it may match: those
+      // being a prefix of the selected one or starting with it
+      for (Map.Entry<String, List<Short>> entry : expectedLidsByAid.entrySet()) {
+        String aidPrefix = entry.getKey();
+        List<Short> expectedLids = entry.getValue();
+        for (CompiledApplication applicationToCheck : profileMatcher.getApplications()) {
+          String aid = applicationToCheck.getAid();
+          if (!aidPrefix.startsWith(aid) && !aid.startsWith(aidPrefix)) {
+            continue;
+          }
+          for (Short lid : applicationToCheck.getExpectedLids()) {
+            if (!expectedLids.contains(lid)) {
+              expectedLids.add(lid);
+            }
+          }
+        }
       }
     }
-  }
 
-  private static void checkAccessConditions(
-      AccessConditions dataToCheck, AccessConditions dataRead) {
-
-    checkAccessCondition(0, dataToCheck.getGroup0(), dataRead.getGroup0());
-    checkAccessCondition(1, dataToCheck.getGroup1(), dataRead.getGroup1());
-    checkAccessCondition(2, dataToCheck.getGroup2(), dataRead.getGroup2());
-    checkAccessCondition(3, dataToCheck.getGroup3(), dataRead.getGroup3());
+    return Tool_AnalyzeCardFileStructure.getApplicationsStructure(cardSession, expectedLidsByAid);
   }
 
-  private static void checkString(String name, String dataToCheck, String dataRead) {
-
-    if (dataToCheck != null && !dataToCheck.equals(dataRead)) {
-      logger.info("Expected {} to be [{}] and found [{}].", name, dataToCheck, dataRead);
-    }
+  /**
+   * Checks the card data loaded from a JSON file produced by the analyzer, the applications whose
+   * AID starts with the expected one being retained as the card selection would do.
+   */
+  static CheckReport checkCard(CardStructureData cardStructureData, ProfileMatcher profileMatcher) {
+    return profileMatcher.check(cardStructureData);
   }
 
-  private static void checkDataRef(FileReference refToCheck) {
+  private static void writeReport(CheckReport checkReport, String reportFormat) {
 
-    if (!dataRefStatus.isEmpty()) {
+    boolean isJUnitFormat = REPORT_FORMAT_JUNIT.equals(reportFormat);
 
-      for (FileReference fileRef : dataRefStatus) {
-
-        if (fileRef.getLinkedFileLid().equals(refToCheck.getBaseFileLid())) {
-
-          if (fileRef.getRefValueRead().equals(refToCheck.getRefValueRead())) {
-            fileRef.setReferenceFoundFlag(true);
-          } else {
-            logger.info(
-                "DataRef for file {} [{}] doesn't match the value of the linked file {} [{}].",
-                refToCheck.getBaseFileLid(),
-                refToCheck.getRefValueRead(),
-                fileRef.getBaseFileLid(),
-                fileRef.getRefValueRead());
-          }
-
-          return;
+    try {
+      String dateString = new SimpleDateFormat("yyyyMMdd").format(new Date());
+
+      String fileName =
+          dateString
+              + "_CheckReport_"
+              + checkReport.getCsnDec()
+              + (isJUnitFormat ? ".xml" : ".json");
+
+      Writer writer =
+          new BufferedWriter(
+              new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8));
+      try {
+        if (isJUnitFormat) {
+          checkReport.writeJUnitXml(writer);
+        } else {
+          checkReport.writeJson(writer);
         }
+      } finally {
+        writer.close();
       }
+
+    } catch (Exception e) {
+      logger.error("Exception while writing the report: {}", e.getMessage(), e);
     }
+  }
+
+  /**
+   * Reads the card, the next card being read while it is checked against the profile in memory,
+   * then its report written and printed.
+   */
+  private static void processCard(
+      CardSession cardSession, ProfileMatcher profileMatcher, boolean isKnownFilesMode) {
 
-    dataRefStatus.add(refToCheck);
+    checkStage.submit(
+        new CardToCheck(
+            readCard(cardSession, profileMatcher, isKnownFilesMode), profileMatcher, null));
   }
 
-  private static void checkCardFileData(CardFileData dataToCheck, List<CardFileData> fileListRead) {
+  /**
+   * Reads the structure of the applications of the card once, the next card being read while its
+   * profile is identified among the profiles of the registry, then its report written and printed.
+   */
+  private static void identifyCard(CardSession cardSession, ProfileRegistry profileRegistry) {
 
-    if (dataToCheck.getSfi() == null) {
-      logger.info("Invalid structure to check. File doesn't have an SFI defined.");
+    List<CardApplicationData> cardAppDataList =
+        Tool_AnalyzeCardFileStructure.getApplicationsStructure(cardSession);
+    if (cardAppDataList.isEmpty()) {
+      logger.info("No applications found.");
       return;
     }
 
-    for (CardFileData dataRead : fileListRead) {
-
-      if (dataToCheck.getSfi().equals(dataRead.getSfi())) {
+    checkStage.submit(new CardToCheck(cardAppDataList, null, profileRegistry.getIdentifier()));
+  }
 
-        logger.info("Checking file with SFI ({})", dataToCheck.getSfi());
+  /** Checks a card read against its profile, or identifies its profile, in memory. */
+  private static void checkCard(CardToCheck card) {
 
-        checkString("LID", dataToCheck.getLid(), dataRead.getLid());
+    if (card.profileMatcher != null) {
+      card.report = card.profileMatcher.check(card.applicationsRead);
+    } else {
+      card.identification = card.profileIdentifier.identify(card.applicationsRead);
+      if (card.identification == null) {
+        logger.error("No profile expects any application of the card");
+        return;
+      }
+      card.report = card.identification.getReport();
+    }
 
-        checkString("EF Type", dataToCheck.getEfType(), dataRead.getEfType());
+    persistStage.submit(card);
+  }
 
-        checkString("Record Size", dataToCheck.getRecSize(), dataRead.getRecSize());
+  private static void printReport(CardToCheck card) {
 
-        checkString("Number of Records", dataToCheck.getNumRec(), dataRead.getNumRec());
+    if (card.identification != null) {
+      logger.info(ToolUtils.SEPARATOR_LINE);
+      logger.info(
+          "= Identified profile:: {} ({} unexpected application(s), {} of {} profile(s) checked)",
+          card.identification.getProfileMatcher().getName(),
+          card.identification.getNbUnexpectedApplications(),
+          card.identification.getNbCheckedProfiles(),
+          card.identification.getNbProfiles());
+    }
 
-        checkAccessConditions(dataToCheck.getAccessConditions(), dataRead.getAccessConditions());
+    card.report.print(logger);
+  }
 
-        // Check simulated counter data ref?
-        if (dataToCheck.getDataRef() != null) {
+  private static void checkAllReaders(
+      List<CardSession> cardSessions, Consumer<CardSession> cardProcessor) {
+
+    SessionExecutor sessionExecutor = Tool_AnalyzeCardFileStructure.getSessionExecutor();
+    Map<String, Future<?>> sessions = new LinkedHashMap<>();
+
+    // One session per reader, named after the reader
+    for (CardSession cardSession : cardSessions) {
+      sessions.put(
+          cardSession.getReaderName(),
+          sessionExecutor.submit(
+              cardSession.getReaderName(),
+              () -> {
+                if (cardSession.getCardReader().isCardPresent()) {
+                  cardProcessor.accept(cardSession);
+                } else {
+                  logger.error("No card is present in the reader.");
+                }
+              }));
+    }
 
-          if (dataRead.getDataRef() == null) {
-            logger.info("DataRef field not present in the card!");
-          } else {
-            FileReference fileRef =
-                new FileReference(
-                    dataToCheck.getLid(), dataToCheck.getDataRef(), dataRead.getDataRef());
-            checkDataRef(fileRef);
-          }
-        }
+    for (Map.Entry<String, Future<?>> session : sessions.entrySet()) {
+      try {
+        session.getValue().get();
+      } catch (ExecutionException e) {
+        logger.error(
+            "= {}:: check failed: {}", session.getKey(), e.getCause().getMessage(), e.getCause());
+      } catch (CancellationException e) {
+        logger.error("= {}:: check cancelled", session.getKey());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
         return;
       }
     }
-
-    logger.info("No matching file found for SFI ({})", dataToCheck.getSfi());
+    logger.info("= {} reader(s) processed", sessions.size());
   }
 
-  private static void checkApplicationType(String dataToCheck, String dataRead) {
+  private static void checkDump(
+      Path dumpFile,
+      Function<CardStructureData, CheckReport> cardChecker,
+      String reportFormat,
+      CheckSummary summary) {
 
-    if (dataToCheck == null || dataRead == null) {
+    CardStructureData cardStructureData = ToolUtils.loadCardData(dumpFile);
+    if (cardStructureData == null) {
+      summary.addUnreadable();
       return;
     }
 
-    int applicationTypeToCheck = Integer.parseInt(dataToCheck, 16);
-
-    int applicationTypeRead = Integer.parseInt(dataRead, 16);
-
-    if (applicationTypeToCheck >= 0x06 && applicationTypeToCheck <= 0x1F) {
-      checkString("Application Type", dataToCheck, dataRead);
+    CheckReport checkReport = cardChecker.apply(cardStructureData);
+    if (checkReport == null) {
+      summary.addUnreadable();
       return;
     }
+    summary.add(checkReport);
 
-    if ((applicationTypeToCheck & 0x01) != (applicationTypeRead & 0x01)) {
+    if (!checkReport.isSuccessful()) {
       logger.info(
-          "Incorrect value for PIN configuration flag. Expected ({}) and got ({}).",
-          applicationTypeToCheck & 0x01,
-          applicationTypeRead & 0x01);
+          "{}:: {} {} error(s), {} warning(s)",
+          dumpFile.getFileName(),
+          checkReport.getProfileName(),
+          checkReport.getNbErrors(),
+          checkReport.getNbWarnings());
     }
 
-    if ((applicationTypeToCheck & 0x02) != (applicationTypeRead & 0x02)) {
-      logger.info(
-          "Incorrect value for SV configuration flag. Expected ({}) and got ({}).",
-          applicationTypeToCheck & 0x02,
-          applicationTypeRead & 0x02);
+    if (reportFormat != null) {
+      writeReport(checkReport, reportFormat);
     }
+  }
 
-    if ((applicationTypeToCheck & 0x08) != (applicationTypeRead & 0x08)) {
-      logger.info(
-          "Incorrect value for Rev 3.2 mode support configuration flag. Expected ({}) and got ({}).",
-          applicationTypeToCheck & 0x08,
-          applicationTypeRead & 0x08);
+  /**
+   * Checks all the card data JSON files of a directory, in parallel on all the available
+   * processors.
+   */
+  private static void checkDumps(
+      Path dumpDirectory,
+      Function<CardStructureData, CheckReport> cardChecker,
+      String reportFormat) {
+
+    int nbThreads = Runtime.getRuntime().availableProcessors();
+
+    // Bounded queue: the directory is read as the files are checked, the main thread checking a
+    // file itself when the queue is full
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            nbThreads,
+            nbThreads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(nbThreads * 4),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    CheckSummary summary = new CheckSummary();
+    long startTime = System.nanoTime();
+
+    try (DirectoryStream<Path> dumpFiles =
+        Files.newDirectoryStream(dumpDirectory, ToolUtils.CARD_DATA_FILE_NAME_PATTERN)) {
+      for (Path dumpFile : dumpFiles) {
+        executor.execute(() -> checkDump(dumpFile, cardChecker, reportFormat, summary));
+      }
+    } catch (Exception e) {
+      logger.error("Exception while listing {}: {}", dumpDirectory, e.getMessage(), e);
+    } finally {
+      executor.shutdown();
     }
 
-    if ((applicationTypeToCheck & 0x10) != (applicationTypeRead & 0x10)) {
-      logger.info(
-          "Incorrect value for Rev 3.3 PKI mode support configuration flag. Expected ({}) and got ({}).",
-          applicationTypeToCheck & 0x10,
-          applicationTypeRead & 0x10);
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      executor.shutdownNow();
+      return;
     }
-  }
-
-  private static void checkCardAppData(
-      CardApplicationData dataToCheck, CardApplicationData dataRead) {
-
-    checkString(
-        "Calypso Revision", dataToCheck.getCalypsoRevision(), dataRead.getCalypsoRevision());
-
-    checkString("Session Modifications", dataToCheck.getSessionModif(), dataRead.getSessionModif());
 
-    checkApplicationType(dataToCheck.getApplicationType(), dataRead.getApplicationType());
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
 
-    checkString(
-        "Application Subtype",
-        dataToCheck.getApplicationSubtype(),
-        dataRead.getApplicationSubtype());
-
-    checkAccessConditions(dataToCheck.getAccessConditions(), dataRead.getAccessConditions());
+    summary.print(logger);
+    logger.info(
+        "= {} file(s) processed in {} ms using {} thread(s)",
+        summary.getNbCards() + summary.getNbUnreadableCards(),
+        elapsedMillis,
+        nbThreads);
+  }
 
-    checkString("KIF1", dataToCheck.getKif1(), dataRead.getKif1());
-    checkString("KIF2", dataToCheck.getKif2(), dataRead.getKif2());
-    checkString("KIF3", dataToCheck.getKif3(), dataRead.getKif3());
-    checkString("KVC1", dataToCheck.getKvc1(), dataRead.getKvc1());
-    checkString("KVC2", dataToCheck.getKvc2(), dataRead.getKvc2());
-    checkString("KVC3", dataToCheck.getKvc3(), dataRead.getKvc3());
+  public static void main(String[] args) {
 
-    checkString("LID", dataToCheck.getLid(), dataRead.getLid());
+    ToolOptions options = new ToolOptions(args);
+    List<String> arguments = options.getArguments();
 
-    if (dataToCheck.getFileList().size() != dataRead.getFileList().size()) {
-      logger.info(
-          "Expected application to have ({}) file(s) and found ({}).",
-          dataToCheck.getFileList().size(),
-          dataRead.getFileList().size());
+    List<String> unknownOptions = options.getUnknownOptions(OPTION_NAMES);
+    if (!unknownOptions.isEmpty() || arguments.size() < 1 || arguments.size() > 2) {
+      if (!unknownOptions.isEmpty()) {
+        logger.error("Unknown option(s) {}", unknownOptions);
+      }
+      logger.error(USAGE);
+      return;
     }
 
-    for (CardFileData cardFileData : dataToCheck.getFileList()) {
-      checkCardFileData(cardFileData, dataRead.getFileList());
+    String reportFormat = options.getOption("report-format", null);
+    if (reportFormat != null
+        && !REPORT_FORMAT_JSON.equals(reportFormat)
+        && !REPORT_FORMAT_JUNIT.equals(reportFormat)) {
+      logger.error("Unknown report format '{}', expected 'json' or 'junit'", reportFormat);
+      return;
     }
-  }
-
-  public static void main(String[] args) {
 
-    if (args.length < 1 || args.length > 2) {
-      logger.error(
-          "Usage: java -jar Tool_CheckCardFileStructure.jar <path-to-json-file> [readerNameRegex]");
+    // Needed by the offline checks as well as by the card readings
+    try {
+      Tool_AnalyzeCardFileStructure.configureIssuers(options);
+    } catch (IOException e) {
+      logger.error("Exception while loading the issuers: {}", e.getMessage(), e);
       return;
     }
 
     String readerNameRegex;
-    if (args.length == 2) {
-      readerNameRegex = args[1];
+    if (arguments.size() == 2) {
+      readerNameRegex = arguments.get(1);
     } else {
       readerNameRegex = ToolUtils.DEFAULT_CARD_READER_NAME_REGEX;
     }
 
-    boolean isCardPresent = Tool_AnalyzeCardFileStructure.initReaders(readerNameRegex);
-
-    CardStructureData fileStructureToCheck;
-
-    dataRefStatus = new ArrayList<>();
-
-    Gson gson =
-        new GsonBuilder()
-            .registerTypeHierarchyAdapter(byte[].class, new ToolUtils.HexTypeAdapter())
-            .setPrettyPrinting()
-            .create();
+    // The profiles are kept in a registry, watched in daemon mode so that the changes of the
+    // profile files are taken into account for the next cards
+    Path profilePath = Paths.get(arguments.get(0));
+    boolean isIdentifyMode = options.hasOption("identify");
+    String profileName;
+    ProfileRegistry profileRegistry;
 
     try {
-      FileReader fileReader = new FileReader(args[0]);
-      fileStructureToCheck = gson.fromJson(fileReader, CardStructureData.class);
-
+      if (Files.isDirectory(profilePath)) {
+        profileName = options.getOption("profile", null);
+        if (profileName == null && !isIdentifyMode) {
+          logger.error("The --profile or --identify option is required with a profile directory");
+          return;
+        }
+        profileRegistry =
+            ProfileRegistry.load(profilePath, ProfileRegistry.DEFAULT_FILE_NAME_PATTERN);
+      } else {
+        profileName = ProfileRegistry.getProfileName(profilePath);
+        profileRegistry = ProfileRegistry.loadFile(profilePath);
+      }
     } catch (Exception e) {
       logger.error("Exception while loading file structure to check {}", e.getMessage(), e);
       return;
     }
 
-    /* Check if a card is present in the reader */
-    if (isCardPresent) {
-
-      for (CardApplicationData cardApplicationData : fileStructureToCheck.getApplicationList()) {
-
-        List<CardApplicationData> cardAppDataList = new ArrayList<>();
-
-        logger.info(SEPARATOR_LINE);
-        logger.info("Checking Application: {}", HexUtil.toHex(cardApplicationData.getAid()));
+    if (isIdentifyMode) {
+      if (profileRegistry.size() == 0) {
+        logger.error("No file structure to identify the cards");
+        return;
+      }
+    } else if (profileRegistry.get(profileName) == null) {
+      logger.error("Unable to load the file structure to check {}", profileName);
+      return;
+    }
 
-        Tool_AnalyzeCardFileStructure.getApplicationsData(
-            HexUtil.toHex(cardApplicationData.getAid()), cardAppDataList);
+    boolean isKnownFilesMode = options.hasOption("known-files");
+
+    // With the --identify option, each card is analyzed once and checked against the profiles it
+    // may match, the profile of the registry being otherwise looked up for each card
+    Consumer<CardSession> cardProcessor;
+    Function<CardStructureData, CheckReport> cardChecker;
+    if (isIdentifyMode) {
+      cardProcessor = cardSession -> identifyCard(cardSession, profileRegistry);
+      cardChecker =
+          cardStructureData -> {
+            ProfileIdentifier.Identification identification =
+                profileRegistry.getIdentifier().identify(cardStructureData);
+            return identification != null ? identification.getReport() : null;
+          };
+    } else {
+      cardProcessor =
+          cardSession -> {
+            ProfileMatcher profileMatcher = profileRegistry.get(profileName);
+            if (profileMatcher == null) {
+              logger.error("The file structure to check {} has been removed", profileName);
+              return;
+            }
+            processCard(cardSession, profileMatcher, isKnownFilesMode);
+          };
+      ProfileMatcher profileMatcher = profileRegistry.get(profileName);
+      cardChecker = cardStructureData -> checkCard(cardStructureData, profileMatcher);
+    }
 
-        if (cardAppDataList.isEmpty()) {
-          logger.info("Application not present in card!");
-        } else if (cardAppDataList.size() > 1) {
-          logger.info(
-              "Found ({}) applications for the given AID. Aborting application analysis",
-              cardAppDataList.size());
-        } else {
-          checkCardAppData(cardApplicationData, cardAppDataList.get(0));
-        }
-      }
+    String dumpDirectory = options.getOption("offline", null);
+    if (dumpDirectory != null) {
+      checkDumps(Paths.get(dumpDirectory), cardChecker, reportFormat);
+      return;
+    }
 
-      logger.info(SEPARATOR_LINE);
+    try {
+      Tool_AnalyzeCardFileStructure.configurePlugin(options);
+      Tool_AnalyzeCardFileStructure.configureSessions(options);
+    } catch (IOException | NumberFormatException e) {
+      logger.error("Exception while configuring the readers: {}", e.getMessage(), e);
+      return;
+    }
 
-      for (FileReference fileRef : dataRefStatus) {
+    // Card reading, then check, then report writing, then report printing
+    Pipeline pipeline = new Pipeline();
+    checkStage = pipeline.addStage("Check", Tool_CheckCardFileStructure::checkCard);
+    persistStage =
+        pipeline.addStage(
+            "Persist",
+            card -> {
+              if (reportFormat != null) {
+                writeReport(card.report, reportFormat);
+              }
+              reportStage.submit(card);
+            });
+    reportStage = pipeline.addStage("Report", Tool_CheckCardFileStructure::printReport);
+
+    List<CardSession> cardSessions;
+    if (options.hasOption("all-readers")) {
+      cardSessions = Tool_AnalyzeCardFileStructure.initReaders(readerNameRegex);
+    } else {
+      cardSessions =
+          Collections.singletonList(Tool_AnalyzeCardFileStructure.initReader(readerNameRegex));
+    }
 
-        if (!fileRef.getReferenceFoundFlag()) {
-          logger.info(
-              "No/Incorrect data ref found for file {}. Should be linked with file {}",
-              fileRef.getBaseFileLid(),
-              fileRef.getLinkedFileLid());
-        }
+    if (options.hasOption("daemon")) {
+      try {
+        profileRegistry.startWatching();
+      } catch (IOException e) {
+        logger.warn("Unable to watch the profile files: {}", e.getMessage());
       }
-
-      logger.info(SEPARATOR_LINE);
+      Tool_AnalyzeCardFileStructure.runDaemon(
+          Tool_AnalyzeCardFileStructure.newDaemon(cardSessions, cardProcessor));
+    } else if (options.hasOption("all-readers")) {
+      checkAllReaders(cardSessions, cardProcessor);
+    } else if (cardSessions.get(0).getCardReader().isCardPresent()) {
+      /* Check if a card is present in the reader */
+      cardProcessor.accept(cardSessions.get(0));
     }
+    Tool_AnalyzeCardFileStructure.getSessionExecutor().close();
+    pipeline.close();
+    Tool_AnalyzeCardFileStructure.printMetrics();
   }
 }
@@ -0,0 +1,128 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.card;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import org.calypsonet.tool.calypso.carddata.CardStructureBinary;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.carddata.CardStructureJson;
+import org.calypsonet.tool.calypso.common.ToolOptions;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts card data files from JSON to the compact binary format and vice versa.
+ *
+ * <p>Each file given is converted according to its extension. The files of a directory given are
+ * converted from JSON to binary, or from binary to JSON with the "--to-json" option.
+ *
+ * @since 2.1.0
+ */
+public class Tool_ConvertCardData {
+
+  private static final Logger logger = LoggerFactory.getLogger(Tool_ConvertCardData.class);
+
+  private static final List<String> OPTION_NAMES = Arrays.asList("to-json", "compact-json");
+
+  private static final String JSON_FILE_EXTENSION = ".json";
+
+  private static int nbConvertedFiles;
+
+  private static long nbBytesRead;
+
+  private static long nbBytesWritten;
+
+  static boolean isBinaryFile(Path file) {
+    return file.getFileName().toString().endsWith(CardStructureBinary.FILE_EXTENSION);
+  }
+
+  private static Path getConvertedFile(Path file) {
+    String fileName = file.getFileName().toString();
+    String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+    return file.resolveSibling(
+        baseName + (isBinaryFile(file) ? JSON_FILE_EXTENSION : CardStructureBinary.FILE_EXTENSION));
+  }
+
+  private static void convert(Path file, boolean isJsonPrettyPrinting) {
+
+    Path convertedFile = getConvertedFile(file);
+
+    try {
+      CardStructureData cardStructureData = ToolUtils.readCardData(file);
+      if (isBinaryFile(file)) {
+        CardStructureJson.write(cardStructureData, convertedFile, isJsonPrettyPrinting);
+      } else {
+        CardStructureBinary.write(cardStructureData, convertedFile);
+      }
+      nbConvertedFiles++;
+      nbBytesRead += Files.size(file);
+      nbBytesWritten += Files.size(convertedFile);
+    } catch (Exception e) {
+      logger.error("Exception while converting {}: {}", file, e.getMessage(), e);
+    }
+  }
+
+  public static void main(String[] args) {
+
+    ToolOptions options = new ToolOptions(args);
+    List<String> arguments = options.getArguments();
+
+    List<String> unknownOptions = options.getUnknownOptions(OPTION_NAMES);
+    if (!unknownOptions.isEmpty() || arguments.isEmpty()) {
+      if (!unknownOptions.isEmpty()) {
+        logger.error("Unknown option(s) {}", unknownOptions);
+      }
+      logger.error(
+          "Usage: java -cp Tool_AnalyzeCardFileStructure.jar "
+              + Tool_ConvertCardData.class.getName()
+              + " <file-or-directory>... [--to-json] [--compact-json]");
+      return;
+    }
+
+    boolean isJsonPrettyPrinting = !options.hasOption("compact-json");
+
+    // The files of a directory are converted in one direction only, the JSON ones by default
+    String directoryFileNamePattern =
+        options.hasOption("to-json")
+            ? "*" + CardStructureBinary.FILE_EXTENSION
+            : "*" + JSON_FILE_EXTENSION;
+
+    for (String argument : arguments) {
+      Path path = Paths.get(argument);
+      if (Files.isDirectory(path)) {
+        try (DirectoryStream<Path> files =
+            Files.newDirectoryStream(path, directoryFileNamePattern)) {
+          for (Path file : files) {
+            convert(file, isJsonPrettyPrinting);
+          }
+        } catch (IOException e) {
+          logger.error("Exception while listing {}: {}", path, e.getMessage(), e);
+        }
+      } else {
+        convert(path, isJsonPrettyPrinting);
+      }
+    }
+
+    logger.info(
+        "= {} file(s) converted, {} bytes read, {} bytes written",
+        nbConvertedFiles,
+        nbBytesRead,
+        nbBytesWritten);
+  }
+}
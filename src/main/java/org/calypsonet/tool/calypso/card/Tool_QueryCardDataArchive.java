@@ -0,0 +1,105 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.card;
+
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.calypsonet.tool.calypso.carddata.ArchiveEntry;
+import org.calypsonet.tool.calypso.carddata.CardDataArchive;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.carddata.CardStructureJson;
+import org.calypsonet.tool.calypso.common.ToolOptions;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists the card data stored in an archive for a CSN or a range of CSNs, optionally in a period,
+ * and exports them as JSON files.
+ *
+ * @since 2.1.0
+ */
+public class Tool_QueryCardDataArchive {
+
+  private static final Logger logger = LoggerFactory.getLogger(Tool_QueryCardDataArchive.class);
+
+  private static final List<String> OPTION_NAMES = Arrays.asList("from", "to", "export");
+
+  private static Date parseDate(String date, boolean isEndOfDay) throws ParseException {
+    Date day = new SimpleDateFormat("yyyyMMdd").parse(date);
+    return isEndOfDay ? new Date(day.getTime() + 24L * 3600 * 1000 - 1) : day;
+  }
+
+  public static void main(String[] args) {
+
+    ToolOptions options = new ToolOptions(args);
+    List<String> arguments = options.getArguments();
+
+    List<String> unknownOptions = options.getUnknownOptions(OPTION_NAMES);
+    if (!unknownOptions.isEmpty() || arguments.size() != 2) {
+      if (!unknownOptions.isEmpty()) {
+        logger.error("Unknown option(s) {}", unknownOptions);
+      }
+      logger.error(
+          "Usage: java -cp Tool_AnalyzeCardFileStructure.jar "
+              + Tool_QueryCardDataArchive.class.getName()
+              + " <archive-directory> <csnDec>[-<csnDec>] [--from=yyyyMMdd] [--to=yyyyMMdd]"
+              + " [--export]");
+      return;
+    }
+
+    String[] csnRange = arguments.get(1).split("-", 2);
+
+    try (CardDataArchive archive = CardDataArchive.openReadOnly(Paths.get(arguments.get(0)))) {
+
+      long fromCsnDec = Long.parseLong(csnRange[0]);
+      long toCsnDec = csnRange.length > 1 ? Long.parseLong(csnRange[1]) : fromCsnDec;
+      String from = options.getOption("from", null);
+      String to = options.getOption("to", null);
+
+      List<ArchiveEntry> entries =
+          archive.find(
+              fromCsnDec,
+              toCsnDec,
+              from != null ? parseDate(from, false) : new Date(Long.MIN_VALUE),
+              to != null ? parseDate(to, true) : new Date(Long.MAX_VALUE));
+
+      SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+      SimpleDateFormat fileDateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss");
+      logger.info(ToolUtils.SEPARATOR_LINE);
+      for (ArchiveEntry entry : entries) {
+        if (options.hasOption("export")) {
+          CardStructureData cardStructureData = archive.read(entry);
+          String fileName =
+              fileDateFormat.format(entry.getDate()) + "_CardData_" + entry.getCsnDec() + ".json";
+          cardStructureData.setId(fileName);
+          CardStructureJson.write(cardStructureData, Paths.get(fileName), true);
+          logger.info(
+              "= {}:: {} -> {}", entry.getCsnDec(), dateFormat.format(entry.getDate()), fileName);
+        } else {
+          logger.info("= {}:: {}", entry.getCsnDec(), dateFormat.format(entry.getDate()));
+        }
+      }
+      logger.info("= {} card data found", entries.size());
+      logger.info(ToolUtils.SEPARATOR_LINE);
+
+    } catch (NumberFormatException | ParseException e) {
+      logger.error("Invalid CSN or date: {}", e.getMessage());
+    } catch (Exception e) {
+      logger.error("Exception while querying the archive: {}", e.getMessage(), e);
+    }
+  }
+}
@@ -11,8 +11,11 @@
  ************************************************************************************** */
 package org.calypsonet.tool.calypso.carddata;
 
+import com.google.gson.annotations.JsonAdapter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import org.calypsonet.tool.calypso.common.ToolUtils;
-import org.eclipse.keyple.core.util.HexUtil;
 
 public class AccessConditions {
 
@@ -23,34 +26,78 @@ public class AccessConditions {
    */
   public class AccessCondition {
 
-    private final String accessCondition;
+    @JsonAdapter(PackedHex.GsonAdapter.class)
+    private final int accessCondition;
 
-    private final String keyLevel;
+    @JsonAdapter(PackedHex.GsonAdapter.class)
+    private final int keyLevel;
 
     private final String description;
 
     public AccessCondition(byte inAc, byte inKl) {
 
-      accessCondition = HexUtil.toHex(inAc);
+      accessCondition = PackedHex.ofByte(inAc);
 
-      keyLevel = HexUtil.toHex(inKl);
+      keyLevel = PackedHex.ofByte(inKl);
 
-      description = ToolUtils.getAcName(accessCondition, keyLevel, true);
+      description = ToolUtils.getAcName(inAc & 0xFF, inKl & 0xFF, true);
+    }
+
+    private AccessCondition(int inAc, int inKl, String inDescription) {
+
+      accessCondition = inAc;
+
+      keyLevel = inKl;
+
+      description = inDescription;
     }
 
     public String getAccessCondition() {
-      return accessCondition;
+      return PackedHex.toHex(accessCondition);
+    }
+
+    /**
+     * @return -1 if the access condition is not defined.
+     * @since 2.1.0
+     */
+    public int getAccessConditionValue() {
+      return PackedHex.getValue(accessCondition);
     }
 
     public String getKeyLevel() {
-      return keyLevel;
+      return PackedHex.toHex(keyLevel);
+    }
+
+    /**
+     * @return -1 if the key level is not defined.
+     * @since 2.1.0
+     */
+    public int getKeyLevelValue() {
+      return PackedHex.getValue(keyLevel);
     }
 
     public String getDescription() {
       return description;
     }
+
+    /** Tells if both values are bytes and the description is the one deduced from them. */
+    private boolean isPackable() {
+      return PackedHex.getNbDigits(accessCondition) == 2
+          && PackedHex.getNbDigits(keyLevel) == 2
+          && ToolUtils.getAcName(getAccessConditionValue(), getKeyLevelValue(), true)
+              .equals(description);
+    }
   }
 
+  /** Binary format: group not defined. */
+  private static final int GROUP_NULL = 0;
+
+  /** Binary format: access condition and key level as 2 bytes, description deduced from them. */
+  private static final int GROUP_PACKED = 1;
+
+  /** Binary format: any other group, as 3 strings. */
+  private static final int GROUP_STRINGS = 2;
+
   private final AccessCondition group0;
 
   private final AccessCondition group1;
@@ -70,6 +117,89 @@ public class AccessConditions {
     group3 = new AccessCondition(accessConditions[3], keyLevels[3]);
   }
 
+  /**
+   * Reads the access conditions from the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  AccessConditions(DataInput in) throws IOException {
+
+    group0 = readGroup(in);
+
+    group1 = readGroup(in);
+
+    group2 = readGroup(in);
+
+    group3 = readGroup(in);
+  }
+
+  private AccessCondition readGroup(DataInput in) throws IOException {
+
+    int tag = in.readUnsignedByte();
+
+    switch (tag) {
+      case GROUP_NULL:
+        return null;
+
+      case GROUP_PACKED:
+        {
+          return new AccessCondition(in.readByte(), in.readByte());
+        }
+
+      case GROUP_STRINGS:
+        return new AccessCondition(
+            BinaryCodec.readHexInt(in), BinaryCodec.readHexInt(in), BinaryCodec.readString(in));
+
+      default:
+        throw new IOException("Unknown access condition tag: " + tag);
+    }
+  }
+
+  private static void writeGroup(DataOutput out, AccessCondition group) throws IOException {
+
+    if (group == null) {
+      out.writeByte(GROUP_NULL);
+
+    } else if (group.isPackable()) {
+      out.writeByte(GROUP_PACKED);
+      out.writeByte(group.getAccessConditionValue());
+      out.writeByte(group.getKeyLevelValue());
+
+    } else {
+      out.writeByte(GROUP_STRINGS);
+      BinaryCodec.writeHexInt(out, group.accessCondition);
+      BinaryCodec.writeHexInt(out, group.keyLevel);
+      BinaryCodec.writeString(out, group.getDescription());
+    }
+  }
+
+  /**
+   * Writes the access conditions in the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  void writeTo(DataOutput out) throws IOException {
+
+    writeGroup(out, group0);
+
+    writeGroup(out, group1);
+
+    writeGroup(out, group2);
+
+    writeGroup(out, group3);
+  }
+
+  static AccessConditions read(DataInput in) throws IOException {
+    return in.readBoolean() ? new AccessConditions(in) : null;
+  }
+
+  static void write(DataOutput out, AccessConditions accessConditions) throws IOException {
+    out.writeBoolean(accessConditions != null);
+    if (accessConditions != null) {
+      accessConditions.writeTo(out);
+    }
+  }
+
   public AccessCondition getGroup0() {
     return group0;
   }
@@ -0,0 +1,115 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.util.Date;
+
+/**
+ * Index entry of a card data record stored in a {@link CardDataArchive}.
+ *
+ * <p>Entries are ordered by CSN, date, then position in the archive.
+ *
+ * @since 2.1.0
+ */
+public final class ArchiveEntry implements Comparable<ArchiveEntry> {
+
+  private final long csnDec;
+
+  private final long timestamp;
+
+  private final ArchiveSegment segment;
+
+  private final long offset;
+
+  ArchiveEntry(long csnDec, long timestamp, ArchiveSegment segment, long offset) {
+    this.csnDec = csnDec;
+    this.timestamp = timestamp;
+    this.segment = segment;
+    this.offset = offset;
+  }
+
+  /**
+   * @return The serial number of the card, as a decimal value.
+   * @since 2.1.0
+   */
+  public long getCsnDec() {
+    return csnDec;
+  }
+
+  /**
+   * @return The date of the analysis, or the epoch if the card data has no valid date.
+   * @since 2.1.0
+   */
+  public Date getDate() {
+    return new Date(timestamp);
+  }
+
+  long getTimestamp() {
+    return timestamp;
+  }
+
+  ArchiveSegment getSegment() {
+    return segment;
+  }
+
+  long getOffset() {
+    return offset;
+  }
+
+  @Override
+  public int compareTo(ArchiveEntry other) {
+    int result = Long.compare(csnDec, other.csnDec);
+    if (result == 0) {
+      result = Long.compare(timestamp, other.timestamp);
+    }
+    if (result == 0) {
+      result = Integer.compare(segment.getId(), other.segment.getId());
+    }
+    if (result == 0) {
+      result = Long.compare(offset, other.offset);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ArchiveEntry)) {
+      return false;
+    }
+    return compareTo((ArchiveEntry) o) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Long.hashCode(csnDec);
+    result = 31 * result + Long.hashCode(timestamp);
+    result = 31 * result + segment.getId();
+    result = 31 * result + Long.hashCode(offset);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "ArchiveEntry{csnDec="
+        + csnDec
+        + ", timestamp="
+        + timestamp
+        + ", segment="
+        + segment.getId()
+        + ", offset="
+        + offset
+        + '}';
+  }
+}
@@ -0,0 +1,414 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.zip.CRC32;
+
+/**
+ * Segment of a {@link CardDataArchive}: a data file of appended records and its index.
+ *
+ * <p>Each record is made of a header (payload length, CRC32 of the rest of the record, timestamp,
+ * number of CSNs and CSNs) followed by the card data in the binary card data format. The index of
+ * the segment being appended is kept in memory, and rebuilt by scanning the data file when the
+ * archive is opened. Once sealed, a segment gets an index file of entries sorted by CSN and date,
+ * memory-mapped and binary searched.
+ *
+ * @since 2.1.0
+ */
+final class ArchiveSegment implements Closeable {
+
+  static final String DATA_FILE_EXTENSION = ".seg";
+
+  static final String INDEX_FILE_EXTENSION = ".idx";
+
+  private static final int RECORD_HEADER_SIZE = 18;
+
+  private static final int CRC_OFFSET = 4;
+
+  private static final int CRC_START = 8;
+
+  private static final int MAX_NB_CSNS = 0xFFFF;
+
+  private static final byte[] INDEX_MAGIC = {'C', 'C', 'D', 'I'};
+
+  private static final int INDEX_FORMAT_VERSION = 1;
+
+  private static final int INDEX_HEADER_SIZE = 8;
+
+  private static final int INDEX_ENTRY_SIZE = 24;
+
+  private final int id;
+
+  private final Path dataFile;
+
+  private final Path indexFile;
+
+  private final FileChannel channel;
+
+  /** Size of the data file, modified by the archive under its lock only. */
+  private long size;
+
+  private volatile ConcurrentSkipListSet<ArchiveEntry> activeIndex;
+
+  private volatile MappedByteBuffer sealedIndex;
+
+  private ArchiveSegment(int id, Path directory, FileChannel channel) {
+    this.id = id;
+    this.dataFile = directory.resolve(getBaseName(id) + DATA_FILE_EXTENSION);
+    this.indexFile = directory.resolve(getBaseName(id) + INDEX_FILE_EXTENSION);
+    this.channel = channel;
+  }
+
+  static String getBaseName(int id) {
+    return String.format("%08d", id);
+  }
+
+  /**
+   * Creates a new empty segment, ready for appending.
+   *
+   * @throws IOException If the segment already exists or cannot be created.
+   */
+  static ArchiveSegment create(Path directory, int id) throws IOException {
+    Path dataFile = directory.resolve(getBaseName(id) + DATA_FILE_EXTENSION);
+    ArchiveSegment segment =
+        new ArchiveSegment(
+            id,
+            directory,
+            FileChannel.open(
+                dataFile,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    segment.activeIndex = new ConcurrentSkipListSet<>();
+    return segment;
+  }
+
+  /**
+   * Opens an existing segment.
+   *
+   * <p>A segment without index file is scanned to rebuild its index, the incomplete or corrupted
+   * records at its end (e.g. after a crash during an append) being truncated unless the segment is
+   * opened read-only.
+   */
+  static ArchiveSegment open(Path directory, int id, boolean isReadOnly) throws IOException {
+
+    Path dataFile = directory.resolve(getBaseName(id) + DATA_FILE_EXTENSION);
+    Path indexFile = directory.resolve(getBaseName(id) + INDEX_FILE_EXTENSION);
+
+    if (Files.exists(indexFile)) {
+      ArchiveSegment segment =
+          new ArchiveSegment(id, directory, FileChannel.open(dataFile, StandardOpenOption.READ));
+      segment.size = segment.channel.size();
+      segment.sealedIndex = mapIndex(indexFile);
+      return segment;
+    }
+
+    ArchiveSegment segment =
+        new ArchiveSegment(
+            id,
+            directory,
+            isReadOnly
+                ? FileChannel.open(dataFile, StandardOpenOption.READ)
+                : FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    segment.activeIndex = new ConcurrentSkipListSet<>();
+    segment.size = segment.scan();
+    if (!isReadOnly && segment.size < segment.channel.size()) {
+      segment.channel.truncate(segment.size);
+    }
+    return segment;
+  }
+
+  private static MappedByteBuffer mapIndex(Path indexFile) throws IOException {
+    try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      long indexSize = indexChannel.size();
+      if (indexSize < INDEX_HEADER_SIZE
+          || (indexSize - INDEX_HEADER_SIZE) % INDEX_ENTRY_SIZE != 0
+          || indexSize > Integer.MAX_VALUE) {
+        throw new IOException("Malformed archive index file: " + indexFile);
+      }
+      MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexSize);
+      for (int i = 0; i < INDEX_MAGIC.length; i++) {
+        if (index.get(i) != INDEX_MAGIC[i]) {
+          throw new IOException("Not an archive index file: " + indexFile);
+        }
+      }
+      int version = index.getInt(INDEX_MAGIC.length);
+      if (version != INDEX_FORMAT_VERSION) {
+        throw new IOException("Unsupported archive index format version: " + version);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Encodes a record, to be appended with {@link #append(ByteBuffer)}.
+   *
+   * @param timestamp The date of the card data.
+   * @param csns The CSNs under which the record is indexed.
+   * @param payload The card data in the binary card data format.
+   */
+  static ByteBuffer encodeRecord(long timestamp, long[] csns, byte[] payload) {
+
+    if (csns.length > MAX_NB_CSNS) {
+      throw new IllegalArgumentException("Too many CSNs: " + csns.length);
+    }
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 8 * csns.length + payload.length);
+    record.putInt(payload.length);
+    record.putInt(0);
+    record.putLong(timestamp);
+    record.putShort((short) csns.length);
+    for (long csn : csns) {
+      record.putLong(csn);
+    }
+    record.put(payload);
+    record.putInt(CRC_OFFSET, computeCrc(record.array(), record.capacity()));
+    record.flip();
+    return record;
+  }
+
+  private static int computeCrc(byte[] record, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(record, CRC_START, length - CRC_START);
+    return (int) crc.getValue();
+  }
+
+  int getId() {
+    return id;
+  }
+
+  long getSize() {
+    return size;
+  }
+
+  boolean isSealed() {
+    return sealedIndex != null;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int nbBytes = channel.read(buffer, position);
+      if (nbBytes < 0) {
+        throw new EOFException("Unexpected end of archive segment " + dataFile);
+      }
+      position += nbBytes;
+    }
+  }
+
+  /**
+   * Rebuilds the index of the segment from its records.
+   *
+   * @return The size of the valid records.
+   */
+  private long scan() throws IOException {
+
+    long fileSize = channel.size();
+    long offset = 0;
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+    while (offset + RECORD_HEADER_SIZE <= fileSize) {
+      header.clear();
+      readFully(header, offset);
+      int payloadLength = header.getInt(0);
+      int nbCsns = header.getShort(16) & 0xFFFF;
+      long recordSize = RECORD_HEADER_SIZE + 8L * nbCsns + payloadLength;
+      if (payloadLength < 0 || offset + recordSize > fileSize) {
+        break;
+      }
+      ByteBuffer record = ByteBuffer.allocate((int) recordSize);
+      readFully(record, offset);
+      if (record.getInt(CRC_OFFSET) != computeCrc(record.array(), record.capacity())) {
+        break;
+      }
+      long timestamp = record.getLong(CRC_START);
+      for (int i = 0; i < nbCsns; i++) {
+        activeIndex.add(
+            new ArchiveEntry(record.getLong(RECORD_HEADER_SIZE + 8 * i), timestamp, this, offset));
+      }
+      offset += recordSize;
+    }
+    return offset;
+  }
+
+  /**
+   * Appends an encoded record at the end of the segment and indexes it.
+   *
+   * <p>Not thread safe: the appends are serialized by the archive.
+   */
+  void append(ByteBuffer record) throws IOException {
+
+    long offset = size;
+    long position = offset;
+    long timestamp = record.getLong(CRC_START);
+    int nbCsns = record.getShort(16) & 0xFFFF;
+    long[] csns = new long[nbCsns];
+    for (int i = 0; i < nbCsns; i++) {
+      csns[i] = record.getLong(RECORD_HEADER_SIZE + 8 * i);
+    }
+    while (record.hasRemaining()) {
+      position += channel.write(record, position);
+    }
+    size = position;
+    // Indexed once completely written, so that the lookups never see a partial record
+    for (long csn : csns) {
+      activeIndex.add(new ArchiveEntry(csn, timestamp, this, offset));
+    }
+  }
+
+  /**
+   * Writes the sorted index file of the segment, which is then memory-mapped for the lookups.
+   *
+   * <p>Not thread safe: called by the archive under its lock.
+   */
+  void seal() throws IOException {
+
+    ConcurrentSkipListSet<ArchiveEntry> entries = activeIndex;
+    ByteBuffer index = ByteBuffer.allocate(INDEX_HEADER_SIZE + INDEX_ENTRY_SIZE * entries.size());
+    index.put(INDEX_MAGIC);
+    index.putInt(INDEX_FORMAT_VERSION);
+    for (ArchiveEntry entry : entries) {
+      index.putLong(entry.getCsnDec());
+      index.putLong(entry.getTimestamp());
+      index.putLong(entry.getOffset());
+    }
+    index.flip();
+
+    channel.force(true);
+    Path temporaryIndexFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+    try (FileChannel indexChannel =
+        FileChannel.open(
+            temporaryIndexFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      while (index.hasRemaining()) {
+        indexChannel.write(index);
+      }
+      indexChannel.force(true);
+    }
+    Files.move(temporaryIndexFile, indexFile, StandardCopyOption.ATOMIC_MOVE);
+
+    sealedIndex = mapIndex(indexFile);
+    activeIndex = null;
+  }
+
+  private static long getIndexedCsn(MappedByteBuffer index, int entryIndex) {
+    return index.getLong(INDEX_HEADER_SIZE + INDEX_ENTRY_SIZE * entryIndex);
+  }
+
+  private static long getIndexedTimestamp(MappedByteBuffer index, int entryIndex) {
+    return index.getLong(INDEX_HEADER_SIZE + INDEX_ENTRY_SIZE * entryIndex + 8);
+  }
+
+  private static long getIndexedOffset(MappedByteBuffer index, int entryIndex) {
+    return index.getLong(INDEX_HEADER_SIZE + INDEX_ENTRY_SIZE * entryIndex + 16);
+  }
+
+  /**
+   * Adds to the result the entries whose CSN and date are within the given inclusive ranges.
+   *
+   * <p>Thread safe, the index being either immutable once sealed or a concurrent set.
+   */
+  void find(
+      long fromCsnDec,
+      long toCsnDec,
+      long fromTimestamp,
+      long toTimestamp,
+      Collection<ArchiveEntry> result) {
+
+    MappedByteBuffer index = sealedIndex;
+    if (index == null) {
+      ConcurrentSkipListSet<ArchiveEntry> entries = activeIndex;
+      if (entries == null) {
+        // Sealed in the meantime
+        index = sealedIndex;
+      } else {
+        for (ArchiveEntry entry :
+            entries.subSet(
+                new ArchiveEntry(fromCsnDec, fromTimestamp, this, Long.MIN_VALUE),
+                true,
+                new ArchiveEntry(toCsnDec, toTimestamp, this, Long.MAX_VALUE),
+                true)) {
+          if (entry.getTimestamp() >= fromTimestamp && entry.getTimestamp() <= toTimestamp) {
+            result.add(entry);
+          }
+        }
+        return;
+      }
+    }
+
+    int nbEntries = (index.capacity() - INDEX_HEADER_SIZE) / INDEX_ENTRY_SIZE;
+
+    // Binary search of the first entry not lower than (fromCsnDec, fromTimestamp)
+    int low = 0;
+    int high = nbEntries;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      long csn = getIndexedCsn(index, middle);
+      if (csn < fromCsnDec
+          || (csn == fromCsnDec && getIndexedTimestamp(index, middle) < fromTimestamp)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+
+    for (int i = low; i < nbEntries; i++) {
+      long csn = getIndexedCsn(index, i);
+      if (csn > toCsnDec) {
+        break;
+      }
+      long timestamp = getIndexedTimestamp(index, i);
+      if (timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+        result.add(new ArchiveEntry(csn, timestamp, this, getIndexedOffset(index, i)));
+      }
+    }
+  }
+
+  /**
+   * Reads the payload of the record at the given offset.
+   *
+   * @throws IOException If an I/O error occurs or if the record is corrupted.
+   */
+  byte[] readPayload(long offset) throws IOException {
+
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    readFully(header, offset);
+    int payloadLength = header.getInt(0);
+    int nbCsns = header.getShort(16) & 0xFFFF;
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 8 * nbCsns + payloadLength);
+    readFully(record, offset);
+    if (record.getInt(CRC_OFFSET) != computeCrc(record.array(), record.capacity())) {
+      throw new IOException("Corrupted record at offset " + offset + " of " + dataFile);
+    }
+    byte[] payload = new byte[payloadLength];
+    record.position(RECORD_HEADER_SIZE + 8 * nbCsns);
+    record.get(payload);
+    return payload;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
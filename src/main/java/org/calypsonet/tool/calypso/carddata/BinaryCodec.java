@@ -0,0 +1,306 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primitives of the binary card data format.
+ *
+ * <ul>
+ *   <li>Unsigned ints (lengths, sizes) are written as LEB128 variable length integers, signed
+ *       values are zigzag encoded first.
+ *   <li>Byte arrays and lists are prefixed by their length + 1, 0 standing for null. The elements
+ *       of a list are preceded by the number of null elements and their indexes, as a lenient JSON
+ *       parsing turns a trailing comma into a null element.
+ *   <li>Strings are tagged: null, uppercase hexadecimal string packed as raw bytes (prefixed by its
+ *       number of digits), or any other string as UTF-8 bytes (prefixed by its length).
+ * </ul>
+ *
+ * @since 2.1.0
+ */
+final class BinaryCodec {
+
+  private static final int STRING_NULL = 0;
+
+  private static final int STRING_HEX = 1;
+
+  private static final int STRING_UTF8 = 2;
+
+  private static final String HEX_DIGITS = "0123456789ABCDEF";
+
+  private BinaryCodec() {}
+
+  /** Writes a non null element of a list. */
+  interface ElementWriter<T> {
+    void write(DataOutput out, T element) throws IOException;
+  }
+
+  /** Reads a non null element of a list. */
+  interface ElementReader<T> {
+    T read(DataInput in) throws IOException;
+  }
+
+  static void writeVarInt(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+  static void writeVarLong(DataOutput out, long value) throws IOException {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.writeByte((int) zigzag);
+  }
+
+  static long readVarLong(DataInput in) throws IOException {
+    long zigzag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      zigzag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+  static void writeSize(DataOutput out, Object value, int size) throws IOException {
+    writeVarInt(out, value == null ? 0 : size + 1);
+  }
+
+  /**
+   * @return The size written by {@link #writeSize(DataOutput, Object, int)}, -1 for null.
+   */
+  static int readSize(DataInput in) throws IOException {
+    return readVarInt(in) - 1;
+  }
+
+  static void writeBytes(DataOutput out, byte[] value) throws IOException {
+    writeSize(out, value, value == null ? 0 : value.length);
+    if (value != null) {
+      out.write(value);
+    }
+  }
+
+  static byte[] readBytes(DataInput in) throws IOException {
+    int length = readSize(in);
+    if (length < 0) {
+      return null;
+    }
+    byte[] value = new byte[length];
+    in.readFully(value);
+    return value;
+  }
+
+  static <T> void writeList(DataOutput out, List<T> list, ElementWriter<T> elementWriter)
+      throws IOException {
+
+    writeSize(out, list, list == null ? 0 : list.size());
+    if (list == null) {
+      return;
+    }
+    int nbNullElements = 0;
+    for (T element : list) {
+      if (element == null) {
+        nbNullElements++;
+      }
+    }
+    writeVarInt(out, nbNullElements);
+    for (int i = 0; nbNullElements > 0; i++) {
+      if (list.get(i) == null) {
+        writeVarInt(out, i);
+        nbNullElements--;
+      }
+    }
+    for (T element : list) {
+      if (element != null) {
+        elementWriter.write(out, element);
+      }
+    }
+  }
+
+  static <T> List<T> readList(DataInput in, ElementReader<T> elementReader) throws IOException {
+
+    int size = readSize(in);
+    if (size < 0) {
+      return null;
+    }
+    boolean[] isNullElement = new boolean[size];
+    int nbNullElements = readVarInt(in);
+    for (int i = 0; i < nbNullElements; i++) {
+      int index = readVarInt(in);
+      if (index < 0 || index >= size) {
+        throw new IOException("Malformed list: null element index " + index);
+      }
+      isNullElement[index] = true;
+    }
+    List<T> list = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(isNullElement[i] ? null : elementReader.read(in));
+    }
+    return list;
+  }
+
+  private static boolean isPackableHex(String value) {
+    if (value.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (HEX_DIGITS.indexOf(value.charAt(i)) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static void writeString(DataOutput out, String value) throws IOException {
+
+    if (value == null) {
+      out.writeByte(STRING_NULL);
+
+    } else if (isPackableHex(value)) {
+      out.writeByte(STRING_HEX);
+      writeVarInt(out, value.length());
+      // An odd number of digits is completed by a leading 0
+      int digitIndex = -(value.length() & 1);
+      while (digitIndex < value.length()) {
+        int high = digitIndex < 0 ? 0 : HEX_DIGITS.indexOf(value.charAt(digitIndex));
+        int low = HEX_DIGITS.indexOf(value.charAt(digitIndex + 1));
+        out.writeByte((high << 4) | low);
+        digitIndex += 2;
+      }
+
+    } else {
+      out.writeByte(STRING_UTF8);
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(out, bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  static String readString(DataInput in) throws IOException {
+
+    int tag = in.readUnsignedByte();
+
+    switch (tag) {
+      case STRING_NULL:
+        return null;
+
+      case STRING_HEX:
+        {
+          int nbDigits = readVarInt(in);
+          char[] digits = new char[nbDigits + (nbDigits & 1)];
+          for (int i = 0; i < digits.length; i += 2) {
+            int b = in.readUnsignedByte();
+            digits[i] = HEX_DIGITS.charAt(b >>> 4);
+            digits[i + 1] = HEX_DIGITS.charAt(b & 0x0F);
+          }
+          return new String(digits, digits.length - nbDigits, nbDigits);
+        }
+
+      case STRING_UTF8:
+        {
+          byte[] bytes = new byte[readVarInt(in)];
+          in.readFully(bytes);
+          return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+      default:
+        throw new IOException("Unknown string tag: " + tag);
+    }
+  }
+
+  /**
+   * Writes a {@link PackedHex} field as {@link #writeString(DataOutput, String)} writes its
+   * hexadecimal representation, without rendering it.
+   */
+  static void writeHexInt(DataOutput out, int packed) throws IOException {
+
+    if (packed == PackedHex.NONE) {
+      out.writeByte(STRING_NULL);
+      return;
+    }
+    int nbDigits = PackedHex.getNbDigits(packed);
+    int value = PackedHex.getValue(packed);
+    out.writeByte(STRING_HEX);
+    writeVarInt(out, nbDigits);
+    for (int shift = ((nbDigits + 1) / 2 - 1) * 8; shift >= 0; shift -= 8) {
+      out.writeByte(value >>> shift);
+    }
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(DataOutput, String)} as a {@link PackedHex}
+   * field.
+   *
+   * @throws IOException If the string is not hexadecimal or too long.
+   */
+  static int readHexInt(DataInput in) throws IOException {
+
+    int tag = in.readUnsignedByte();
+
+    switch (tag) {
+      case STRING_NULL:
+        return PackedHex.NONE;
+
+      case STRING_HEX:
+        {
+          int nbDigits = readVarInt(in);
+          if (nbDigits < 1 || nbDigits > PackedHex.MAX_DIGITS) {
+            throw new IOException("Unexpected hexadecimal value length: " + nbDigits);
+          }
+          int value = 0;
+          for (int i = (nbDigits + 1) / 2; i > 0; i--) {
+            value = (value << 8) | in.readUnsignedByte();
+          }
+          return PackedHex.of(value, nbDigits);
+        }
+
+      case STRING_UTF8:
+        {
+          byte[] bytes = new byte[readVarInt(in)];
+          in.readFully(bytes);
+          try {
+            return PackedHex.parse(new String(bytes, StandardCharsets.UTF_8));
+          } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+          }
+        }
+
+      default:
+        throw new IOException("Unknown string tag: " + tag);
+    }
+  }
+}
@@ -11,14 +11,16 @@
  ************************************************************************************** */
 package org.calypsonet.tool.calypso.carddata;
 
-import static org.calypsonet.tool.calypso.common.ToolUtils.SEPARATOR_LINE;
-
+import com.google.gson.annotations.JsonAdapter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import org.calypsonet.tool.calypso.common.IssuerRegistry;
 import org.calypsonet.tool.calypso.common.ToolUtils;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
-import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.card.WriteAccessLevel;
 import org.eclipse.keypop.calypso.card.card.CalypsoCard;
 import org.slf4j.Logger;
@@ -32,19 +34,81 @@ public class CardApplicationData {
 
   public static class Issuer {
 
-    private final String value;
+    @JsonAdapter(PackedHex.GsonAdapter.class)
+    private final int value;
 
     private final String name;
 
     public Issuer(byte inValue) {
 
-      value = HexUtil.toHex(inValue);
+      value = PackedHex.ofByte(inValue);
 
       name = ToolUtils.getIssuerName(inValue);
     }
 
+    private Issuer(int inValue, String inName) {
+
+      value = inValue;
+
+      name = inName;
+    }
+
+    /**
+     * Reads the issuer from the binary card data format: a byte if the name is the one deduced from
+     * the value by the built-in issuer registry (so that the files don't depend on the registry in
+     * use), otherwise 2 strings.
+     */
+    static Issuer read(DataInput in) throws IOException {
+
+      int tag = in.readUnsignedByte();
+
+      switch (tag) {
+        case ISSUER_NULL:
+          return null;
+
+        case ISSUER_PACKED:
+          {
+            byte value = in.readByte();
+            return new Issuer(PackedHex.ofByte(value), IssuerRegistry.getBuiltIn().getName(value));
+          }
+
+        case ISSUER_STRINGS:
+          return new Issuer(BinaryCodec.readHexInt(in), BinaryCodec.readString(in));
+
+        default:
+          throw new IOException("Unknown issuer tag: " + tag);
+      }
+    }
+
+    static void write(DataOutput out, Issuer issuer) throws IOException {
+
+      if (issuer == null) {
+        out.writeByte(ISSUER_NULL);
+
+      } else if (PackedHex.getNbDigits(issuer.value) == 2
+          && IssuerRegistry.getBuiltIn()
+              .getName((byte) issuer.getValueInt())
+              .equals(issuer.getName())) {
+        out.writeByte(ISSUER_PACKED);
+        out.writeByte(issuer.getValueInt());
+
+      } else {
+        out.writeByte(ISSUER_STRINGS);
+        BinaryCodec.writeHexInt(out, issuer.value);
+        BinaryCodec.writeString(out, issuer.getName());
+      }
+    }
+
     public String getValue() {
-      return value;
+      return PackedHex.toHex(value);
+    }
+
+    /**
+     * @return -1 if the value is not defined.
+     * @since 2.1.0
+     */
+    public int getValueInt() {
+      return PackedHex.getValue(value);
     }
 
     public String getName() {
@@ -52,6 +116,12 @@ public class CardApplicationData {
     }
   }
 
+  private static final int ISSUER_NULL = 0;
+
+  private static final int ISSUER_PACKED = 1;
+
+  private static final int ISSUER_STRINGS = 2;
+
   private final byte[] fci;
 
   private final String calypsoRevision;
@@ -62,23 +132,29 @@ public class CardApplicationData {
 
   private final long csnDec;
 
-  private final String sessionModif;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int sessionModif;
 
   private final int sessionModifDec;
 
   private final int bufferSize;
 
-  private final String platform;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int platform;
 
-  private final String applicationType;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int applicationType;
 
-  private final String applicationSubtype;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int applicationSubtype;
 
   private final Issuer issuer;
 
-  private final String version;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int version;
 
-  private final String revision;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int revision;
 
   private final String transactionCounter;
 
@@ -86,21 +162,29 @@ public class CardApplicationData {
 
   private final AccessConditions accessConditions;
 
-  private final String status;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int status;
 
-  private final String kif1;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int kif1;
 
-  private final String kif2;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int kif2;
 
-  private final String kif3;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int kif3;
 
-  private final String kvc1;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int kvc1;
 
-  private final String kvc2;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int kvc2;
 
-  private final String kvc3;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int kvc3;
 
-  private final String lid;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int lid;
 
   List<CardFileData> fileList = null;
 
@@ -152,7 +236,7 @@ public class CardApplicationData {
 
     calypsoRevision = appData.getProductType().toString();
 
-    sessionModif = ToolUtils.padLeft(HexUtil.toHex(appData.getSessionModification()), 4, '0');
+    sessionModif = PackedHex.ofInt(appData.getSessionModification() & 0xFF, 4);
 
     sessionModifDec = appData.getSessionModification();
 
@@ -162,13 +246,13 @@ public class CardApplicationData {
 
     transactionCounterDec = 0; // appData.getTransactionCounter();
 
-    platform = HexUtil.toHex(appData.getPlatform());
+    platform = PackedHex.ofByte(appData.getPlatform());
 
     issuer = new Issuer(appData.getSoftwareIssuer());
 
-    version = HexUtil.toHex(appData.getSoftwareVersion());
+    version = PackedHex.ofByte(appData.getSoftwareVersion());
 
-    revision = HexUtil.toHex(appData.getSoftwareRevision());
+    revision = PackedHex.ofByte(appData.getSoftwareRevision());
 
     fci =
         Arrays.copyOf(
@@ -176,98 +260,105 @@ public class CardApplicationData {
 
     aid = Arrays.copyOf(appData.getDfName(), appData.getDfName().length);
 
-    lid = HexUtil.toHex(appData.getDirectoryHeader().getLid());
+    lid = PackedHex.ofInt(appData.getDirectoryHeader().getLid() & 0xFFFF);
 
-    kif1 = HexUtil.toHex(appData.getDirectoryHeader().getKif(WriteAccessLevel.PERSONALIZATION));
-    kif2 = HexUtil.toHex(appData.getDirectoryHeader().getKif(WriteAccessLevel.LOAD));
-    kif3 = HexUtil.toHex(appData.getDirectoryHeader().getKif(WriteAccessLevel.DEBIT));
+    kif1 = PackedHex.ofByte(appData.getDirectoryHeader().getKif(WriteAccessLevel.PERSONALIZATION));
+    kif2 = PackedHex.ofByte(appData.getDirectoryHeader().getKif(WriteAccessLevel.LOAD));
+    kif3 = PackedHex.ofByte(appData.getDirectoryHeader().getKif(WriteAccessLevel.DEBIT));
 
-    kvc1 = HexUtil.toHex(appData.getDirectoryHeader().getKvc(WriteAccessLevel.PERSONALIZATION));
-    kvc2 = HexUtil.toHex(appData.getDirectoryHeader().getKvc(WriteAccessLevel.LOAD));
-    kvc3 = HexUtil.toHex(appData.getDirectoryHeader().getKvc(WriteAccessLevel.DEBIT));
+    kvc1 = PackedHex.ofByte(appData.getDirectoryHeader().getKvc(WriteAccessLevel.PERSONALIZATION));
+    kvc2 = PackedHex.ofByte(appData.getDirectoryHeader().getKvc(WriteAccessLevel.LOAD));
+    kvc3 = PackedHex.ofByte(appData.getDirectoryHeader().getKvc(WriteAccessLevel.DEBIT));
 
-    status = HexUtil.toHex(appData.getDirectoryHeader().getDfStatus());
+    status = PackedHex.ofByte(appData.getDirectoryHeader().getDfStatus());
 
     accessConditions =
         new AccessConditions(
             appData.getDirectoryHeader().getAccessConditions(),
             appData.getDirectoryHeader().getKeyIndexes());
 
-    applicationType = HexUtil.toHex(appData.getApplicationType());
+    applicationType = PackedHex.ofByte(appData.getApplicationType());
 
-    applicationSubtype = HexUtil.toHex(appData.getApplicationSubtype());
+    applicationSubtype = PackedHex.ofByte(appData.getApplicationSubtype());
 
     fileList = new ArrayList<>();
   }
 
-  public void print(Logger logger) {
-
-    logger.info(SEPARATOR_LINE);
-    String paddedAid = ToolUtils.padLeft(HexUtil.toHex(this.getAid()), 32, ' ');
-    String paddedLid = ToolUtils.padLeft(this.getLid(), 4, '0');
-    String group0 =
-        ToolUtils.getAcName(
-            this.getAccessConditions().getGroup0().getAccessCondition(),
-            this.getAccessConditions().getGroup0().getKeyLevel(),
-            false);
-    String group1 =
-        ToolUtils.getAcName(
-            this.getAccessConditions().getGroup1().getAccessCondition(),
-            this.getAccessConditions().getGroup1().getKeyLevel(),
-            false);
-    String group2 =
-        ToolUtils.getAcName(
-            this.getAccessConditions().getGroup2().getAccessCondition(),
-            this.getAccessConditions().getGroup2().getKeyLevel(),
-            false);
-    String group3 =
-        ToolUtils.getAcName(
-            this.getAccessConditions().getGroup3().getAccessCondition(),
-            this.getAccessConditions().getGroup3().getKeyLevel(),
-            false);
-    logger.info(
-        "| AID                             | LID  | KVC1 | KVC2 | KVC3 | KIF1 | KIF2 | KIF3 | G0 | G1 | G2 | G3 |");
-    logger.info(
-        "|{} | {} |  {}  |  {}  |  {}  |  {}  |  {}  |  {}  | {} | {} | {} | {} |",
-        paddedAid,
-        paddedLid,
-        this.getKvc1(),
-        this.getKvc2(),
-        this.getKvc3(),
-        this.getKif1(),
-        this.getKif2(),
-        this.getKif3(),
-        group0,
-        group1,
-        group2,
-        group3);
-    logger.info(SEPARATOR_LINE);
-
-    logger.info("= FCI:: {}", HexUtil.toHex(this.getFci()));
-    logger.info("= Serial Number:: {} ({})", HexUtil.toHex(this.getCsn()), this.getCsnDec());
-    logger.info("= Transaction Counter:: {}", this.getTransactionCounterDec());
-    logger.info("= Revision:: {}", this.getCalypsoRevision());
-    logger.info("= Session Buffer Size:: {} bytes", this.getBufferSize());
-    logger.info("= Platform (Chip Type):: {}", this.getPlatform());
-
-    if (this.getIssuerInfo() != null) {
-      logger.info(
-          "= Issuer:: {} ({})", this.getIssuerInfo().getName(), this.getIssuerInfo().getValue());
-    } else {
-      logger.info("= Issuer:: null");
-    }
-    logger.info("= Software Version:: {}.{}", this.getVersion(), this.getRevision());
-    logger.info("= Application Type:: {}", this.getApplicationType());
-    logger.info("= Application Subtype:: {}", this.getApplicationSubtype());
-    logger.info("= DF Status:: {}", this.getStatus());
-    logger.info(SEPARATOR_LINE);
-
-    logger.info("| LID  | Type | SID | #R | Size | G0 | G1 | G2 | G3 | DRef |");
-    logger.info("----------------------------------------------------------");
+  /**
+   * Reads the application data from the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  CardApplicationData(DataInput in) throws IOException {
+
+    fci = BinaryCodec.readBytes(in);
+    calypsoRevision = BinaryCodec.readString(in);
+    aid = BinaryCodec.readBytes(in);
+    csn = BinaryCodec.readBytes(in);
+    csnDec = BinaryCodec.readVarLong(in);
+    sessionModif = BinaryCodec.readHexInt(in);
+    sessionModifDec = (int) BinaryCodec.readVarLong(in);
+    bufferSize = (int) BinaryCodec.readVarLong(in);
+    platform = BinaryCodec.readHexInt(in);
+    applicationType = BinaryCodec.readHexInt(in);
+    applicationSubtype = BinaryCodec.readHexInt(in);
+    issuer = Issuer.read(in);
+    version = BinaryCodec.readHexInt(in);
+    revision = BinaryCodec.readHexInt(in);
+    transactionCounter = BinaryCodec.readString(in);
+    transactionCounterDec = BinaryCodec.readVarLong(in);
+    accessConditions = AccessConditions.read(in);
+    status = BinaryCodec.readHexInt(in);
+    kif1 = BinaryCodec.readHexInt(in);
+    kif2 = BinaryCodec.readHexInt(in);
+    kif3 = BinaryCodec.readHexInt(in);
+    kvc1 = BinaryCodec.readHexInt(in);
+    kvc2 = BinaryCodec.readHexInt(in);
+    kvc3 = BinaryCodec.readHexInt(in);
+    lid = BinaryCodec.readHexInt(in);
+
+    fileList = BinaryCodec.readList(in, CardFileData::new);
+  }
 
-    for (CardFileData fileData : this.getFileList()) {
+  /**
+   * Writes the application data in the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  void writeTo(DataOutput out) throws IOException {
+
+    BinaryCodec.writeBytes(out, fci);
+    BinaryCodec.writeString(out, calypsoRevision);
+    BinaryCodec.writeBytes(out, aid);
+    BinaryCodec.writeBytes(out, csn);
+    BinaryCodec.writeVarLong(out, csnDec);
+    BinaryCodec.writeHexInt(out, sessionModif);
+    BinaryCodec.writeVarLong(out, sessionModifDec);
+    BinaryCodec.writeVarLong(out, bufferSize);
+    BinaryCodec.writeHexInt(out, platform);
+    BinaryCodec.writeHexInt(out, applicationType);
+    BinaryCodec.writeHexInt(out, applicationSubtype);
+    Issuer.write(out, issuer);
+    BinaryCodec.writeHexInt(out, version);
+    BinaryCodec.writeHexInt(out, revision);
+    BinaryCodec.writeString(out, transactionCounter);
+    BinaryCodec.writeVarLong(out, transactionCounterDec);
+    AccessConditions.write(out, accessConditions);
+    BinaryCodec.writeHexInt(out, status);
+    BinaryCodec.writeHexInt(out, kif1);
+    BinaryCodec.writeHexInt(out, kif2);
+    BinaryCodec.writeHexInt(out, kif3);
+    BinaryCodec.writeHexInt(out, kvc1);
+    BinaryCodec.writeHexInt(out, kvc2);
+    BinaryCodec.writeHexInt(out, kvc3);
+    BinaryCodec.writeHexInt(out, lid);
+
+    BinaryCodec.writeList(out, fileList, (o, cardFileData) -> cardFileData.writeTo(o));
+  }
 
-      fileData.print(logger);
+  public void print(Logger logger) {
+    if (logger.isInfoEnabled()) {
+      logger.info("{}", new CardStructureText().render(this));
     }
   }
 
@@ -288,7 +379,15 @@ public class CardApplicationData {
   }
 
   public String getSessionModif() {
-    return sessionModif;
+    return PackedHex.toHex(sessionModif);
+  }
+
+  /**
+   * @return -1 if the session modification is not defined.
+   * @since 2.1.0
+   */
+  public int getSessionModifValue() {
+    return PackedHex.getValue(sessionModif);
   }
 
   public int getSessionModifDec() {
@@ -308,7 +407,15 @@ public class CardApplicationData {
   }
 
   public String getPlatform() {
-    return platform;
+    return PackedHex.toHex(platform);
+  }
+
+  /**
+   * @return -1 if the platform is not defined.
+   * @since 2.1.0
+   */
+  public int getPlatformValue() {
+    return PackedHex.getValue(platform);
   }
 
   public Issuer getIssuerInfo() {
@@ -316,11 +423,27 @@ public class CardApplicationData {
   }
 
   public String getVersion() {
-    return version;
+    return PackedHex.toHex(version);
+  }
+
+  /**
+   * @return -1 if the software version is not defined.
+   * @since 2.1.0
+   */
+  public int getVersionValue() {
+    return PackedHex.getValue(version);
   }
 
   public String getRevision() {
-    return revision;
+    return PackedHex.toHex(revision);
+  }
+
+  /**
+   * @return -1 if the software revision is not defined.
+   * @since 2.1.0
+   */
+  public int getRevisionValue() {
+    return PackedHex.getValue(revision);
   }
 
   public byte[] getAid() {
@@ -328,31 +451,87 @@ public class CardApplicationData {
   }
 
   public String getLid() {
-    return lid;
+    return PackedHex.toHex(lid);
+  }
+
+  /**
+   * @return -1 if the LID is not defined.
+   * @since 2.1.0
+   */
+  public int getLidValue() {
+    return PackedHex.getValue(lid);
   }
 
   public String getKif1() {
-    return kif1;
+    return PackedHex.toHex(kif1);
+  }
+
+  /**
+   * @return -1 if the KIF is not defined.
+   * @since 2.1.0
+   */
+  public int getKif1Value() {
+    return PackedHex.getValue(kif1);
   }
 
   public String getKif2() {
-    return kif2;
+    return PackedHex.toHex(kif2);
+  }
+
+  /**
+   * @return -1 if the KIF is not defined.
+   * @since 2.1.0
+   */
+  public int getKif2Value() {
+    return PackedHex.getValue(kif2);
   }
 
   public String getKif3() {
-    return kif3;
+    return PackedHex.toHex(kif3);
+  }
+
+  /**
+   * @return -1 if the KIF is not defined.
+   * @since 2.1.0
+   */
+  public int getKif3Value() {
+    return PackedHex.getValue(kif3);
   }
 
   public String getKvc1() {
-    return kvc1;
+    return PackedHex.toHex(kvc1);
+  }
+
+  /**
+   * @return -1 if the KVC is not defined.
+   * @since 2.1.0
+   */
+  public int getKvc1Value() {
+    return PackedHex.getValue(kvc1);
   }
 
   public String getKvc2() {
-    return kvc2;
+    return PackedHex.toHex(kvc2);
+  }
+
+  /**
+   * @return -1 if the KVC is not defined.
+   * @since 2.1.0
+   */
+  public int getKvc2Value() {
+    return PackedHex.getValue(kvc2);
   }
 
   public String getKvc3() {
-    return kvc3;
+    return PackedHex.toHex(kvc3);
+  }
+
+  /**
+   * @return -1 if the KVC is not defined.
+   * @since 2.1.0
+   */
+  public int getKvc3Value() {
+    return PackedHex.getValue(kvc3);
   }
 
   public AccessConditions getAccessConditions() {
@@ -360,15 +539,39 @@ public class CardApplicationData {
   }
 
   public String getApplicationType() {
-    return applicationType;
+    return PackedHex.toHex(applicationType);
+  }
+
+  /**
+   * @return -1 if the application type is not defined.
+   * @since 2.1.0
+   */
+  public int getApplicationTypeValue() {
+    return PackedHex.getValue(applicationType);
   }
 
   public String getApplicationSubtype() {
-    return applicationSubtype;
+    return PackedHex.toHex(applicationSubtype);
+  }
+
+  /**
+   * @return -1 if the application subtype is not defined.
+   * @since 2.1.0
+   */
+  public int getApplicationSubtypeValue() {
+    return PackedHex.getValue(applicationSubtype);
   }
 
   public String getStatus() {
-    return status;
+    return PackedHex.toHex(status);
+  }
+
+  /**
+   * @return -1 if the DF status is not defined.
+   * @since 2.1.0
+   */
+  public int getStatusValue() {
+    return PackedHex.getValue(status);
   }
 
   public List<CardFileData> getFileList() {
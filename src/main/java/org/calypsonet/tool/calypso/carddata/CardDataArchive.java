@@ -0,0 +1,357 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only archive of card data, indexed by CSN and date.
+ *
+ * <p>The card data are appended in the binary card data format to segment files of a directory, a
+ * new segment being started once the current one reaches its maximum size. Each record is indexed
+ * under the CSN of each of its applications and the date of the analysis: the index of the sealed
+ * segments is a sorted file memory-mapped for the lookups, the one of the segment being appended is
+ * kept in memory and rebuilt when the archive is opened.
+ *
+ * <p>An archive instance is thread safe: the card data are serialized concurrently, only the write
+ * of the encoded record at the end of the segment being serialized, and the lookups never block.
+ * The archive directory is locked while open, so that a single process appends to it; other
+ * processes can still open it read-only to look up the card data appended so far.
+ *
+ * @since 2.1.0
+ */
+public final class CardDataArchive implements Closeable {
+
+  /**
+   * Default maximum size of a segment file.
+   *
+   * @since 2.1.0
+   */
+  public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+  private static final String LOCK_FILE_NAME = "archive.lock";
+
+  private static final String DATE_FORMAT = "dd/MM/yyyy HH:mm:ss";
+
+  private final Path directory;
+
+  private final long maxSegmentSize;
+
+  /** Directories of the archives open for appending in this JVM. */
+  private static final Set<Path> lockedDirectories = ConcurrentHashMap.newKeySet();
+
+  /** Null if the archive is open read-only. */
+  private final FileLock lock;
+
+  private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+
+  /** Segment being appended, null until the first append if the last segment is sealed. */
+  private ArchiveSegment activeSegment;
+
+  private boolean isClosed;
+
+  private CardDataArchive(Path directory, long maxSegmentSize, FileLock lock) {
+    this.directory = directory;
+    this.maxSegmentSize = maxSegmentSize;
+    this.lock = lock;
+  }
+
+  /**
+   * Opens the archive stored in a directory, creating it if needed, with the default maximum
+   * segment size.
+   *
+   * @param directory The archive directory.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs, if the archive is malformed or if it is already
+   *     open.
+   * @since 2.1.0
+   */
+  public static CardDataArchive open(Path directory) throws IOException {
+    return open(directory, DEFAULT_MAX_SEGMENT_SIZE);
+  }
+
+  /**
+   * Opens the archive stored in a directory, creating it if needed.
+   *
+   * @param directory The archive directory.
+   * @param maxSegmentSize The size above which a new segment is started.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs, if the archive is malformed or if it is already
+   *     open.
+   * @since 2.1.0
+   */
+  public static CardDataArchive open(Path directory, long maxSegmentSize) throws IOException {
+
+    Files.createDirectories(directory);
+    Path lockedDirectory = directory.toRealPath();
+
+    // Checked first, as closing a channel may release the locks held on the file by other channels
+    if (!lockedDirectories.add(lockedDirectory)) {
+      throw new IOException("Archive already open: " + directory);
+    }
+
+    FileChannel lockChannel = null;
+    FileLock lock = null;
+    try {
+      lockChannel =
+          FileChannel.open(
+              directory.resolve(LOCK_FILE_NAME),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE);
+      lock = lockChannel.tryLock();
+      if (lock == null) {
+        throw new IOException("Archive already open by another process: " + directory);
+      }
+    } finally {
+      if (lock == null) {
+        if (lockChannel != null) {
+          lockChannel.close();
+        }
+        lockedDirectories.remove(lockedDirectory);
+      }
+    }
+
+    CardDataArchive archive = new CardDataArchive(lockedDirectory, maxSegmentSize, lock);
+    try {
+      archive.openSegments(false);
+    } catch (IOException e) {
+      archive.close();
+      throw e;
+    }
+    return archive;
+  }
+
+  /**
+   * Opens an existing archive for lookups only, possibly while another process appends to it.
+   *
+   * <p>The card data appended after the opening are not visible.
+   *
+   * @param directory The archive directory.
+   * @return A new instance, whose {@link #append(CardStructureData)} method always fails.
+   * @throws IOException If an I/O error occurs or if the archive is malformed.
+   * @since 2.1.0
+   */
+  public static CardDataArchive openReadOnly(Path directory) throws IOException {
+
+    if (!Files.isDirectory(directory)) {
+      throw new IOException("Archive not found: " + directory);
+    }
+    CardDataArchive archive = new CardDataArchive(directory, DEFAULT_MAX_SEGMENT_SIZE, null);
+    try {
+      archive.openSegments(true);
+    } catch (IOException e) {
+      archive.close();
+      throw e;
+    }
+    return archive;
+  }
+
+  private void openSegments(boolean isReadOnly) throws IOException {
+
+    TreeMap<Integer, Path> dataFiles = new TreeMap<>();
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(directory, "*" + ArchiveSegment.DATA_FILE_EXTENSION)) {
+      for (Path file : files) {
+        String fileName = file.getFileName().toString();
+        String baseName =
+            fileName.substring(0, fileName.length() - ArchiveSegment.DATA_FILE_EXTENSION.length());
+        try {
+          dataFiles.put(Integer.parseInt(baseName), file);
+        } catch (NumberFormatException e) {
+          throw new IOException("Unexpected file in the archive: " + file, e);
+        }
+      }
+    }
+
+    for (int id : dataFiles.keySet()) {
+      ArchiveSegment segment = ArchiveSegment.open(directory, id, isReadOnly);
+      segments.add(segment);
+      if (!isReadOnly && !segment.isSealed()) {
+        if (id == dataFiles.lastKey()) {
+          activeSegment = segment;
+        } else {
+          // Left unsealed by an interrupted rollover
+          segment.seal();
+        }
+      }
+    }
+  }
+
+  private static long getTimestamp(CardStructureData cardStructureData) {
+    if (cardStructureData.getDate() == null) {
+      return 0;
+    }
+    try {
+      return new SimpleDateFormat(DATE_FORMAT).parse(cardStructureData.getDate()).getTime();
+    } catch (ParseException e) {
+      return 0;
+    }
+  }
+
+  private static long[] getCsns(CardStructureData cardStructureData) {
+    List<CardApplicationData> applications = cardStructureData.getApplicationList();
+    if (applications == null) {
+      return new long[0];
+    }
+    return applications.stream()
+        .filter(application -> application != null)
+        .mapToLong(CardApplicationData::getCsnDec)
+        .distinct()
+        .toArray();
+  }
+
+  private ArchiveSegment getSegmentForAppend(long recordSize) throws IOException {
+    if (isClosed) {
+      throw new IOException("Archive closed: " + directory);
+    }
+    if (lock == null) {
+      throw new IOException("Archive open read-only: " + directory);
+    }
+    if (activeSegment != null
+        && activeSegment.getSize() > 0
+        && activeSegment.getSize() + recordSize > maxSegmentSize) {
+      activeSegment.seal();
+      activeSegment = null;
+    }
+    if (activeSegment == null) {
+      int id = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getId() + 1;
+      activeSegment = ArchiveSegment.create(directory, id);
+      segments.add(activeSegment);
+    }
+    return activeSegment;
+  }
+
+  /**
+   * Appends card data to the archive, indexed under the CSN of each of its applications and its
+   * date.
+   *
+   * @param cardStructureData The card data.
+   * @throws IOException If an I/O error occurs or if the archive is closed.
+   * @since 2.1.0
+   */
+  public void append(CardStructureData cardStructureData) throws IOException {
+
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(4096);
+    CardStructureBinary.writeRecord(cardStructureData, new DataOutputStream(payload));
+    ByteBuffer record =
+        ArchiveSegment.encodeRecord(
+            getTimestamp(cardStructureData), getCsns(cardStructureData), payload.toByteArray());
+
+    synchronized (this) {
+      getSegmentForAppend(record.remaining()).append(record);
+    }
+  }
+
+  /**
+   * Finds the card data of a card.
+   *
+   * @param csnDec The serial number of the card, as a decimal value.
+   * @return The entries of the card data, sorted by date.
+   * @since 2.1.0
+   */
+  public List<ArchiveEntry> find(long csnDec) {
+    return find(csnDec, csnDec, new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+  }
+
+  /**
+   * Finds the card data of a card analyzed in a given period.
+   *
+   * @param csnDec The serial number of the card, as a decimal value.
+   * @param from The start of the period, inclusive.
+   * @param to The end of the period, inclusive.
+   * @return The entries of the card data, sorted by date.
+   * @since 2.1.0
+   */
+  public List<ArchiveEntry> find(long csnDec, Date from, Date to) {
+    return find(csnDec, csnDec, from, to);
+  }
+
+  /**
+   * Finds the card data of a range of cards analyzed in a given period.
+   *
+   * @param fromCsnDec The lowest serial number, inclusive.
+   * @param toCsnDec The highest serial number, inclusive.
+   * @param from The start of the period, inclusive.
+   * @param to The end of the period, inclusive.
+   * @return The entries of the card data, sorted by CSN then date.
+   * @since 2.1.0
+   */
+  public List<ArchiveEntry> find(long fromCsnDec, long toCsnDec, Date from, Date to) {
+    List<ArchiveEntry> result = new ArrayList<>();
+    for (ArchiveSegment segment : segments) {
+      segment.find(fromCsnDec, toCsnDec, from.getTime(), to.getTime(), result);
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Reads the card data of an entry.
+   *
+   * @param entry An entry found in this archive.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs or if the record is corrupted.
+   * @since 2.1.0
+   */
+  public CardStructureData read(ArchiveEntry entry) throws IOException {
+    byte[] payload = entry.getSegment().readPayload(entry.getOffset());
+    return CardStructureBinary.readRecord(new DataInputStream(new ByteArrayInputStream(payload)));
+  }
+
+  /**
+   * Closes the segment files and releases the lock of the archive directory.
+   *
+   * <p>The segment being appended is not sealed, its index being rebuilt at the next opening.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    try {
+      for (ArchiveSegment segment : segments) {
+        segment.close();
+      }
+    } finally {
+      if (lock != null) {
+        lock.channel().close();
+        lockedDirectories.remove(directory);
+      }
+    }
+  }
+}
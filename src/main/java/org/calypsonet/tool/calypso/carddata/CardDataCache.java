@@ -0,0 +1,335 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of the last card data read from each card, to re-analyze a re-presented card
+ * without reading its immutable content again.
+ *
+ * <p>The card data are keyed by the traceability information of the card plus the CSN and the FCI
+ * of its first application. The most recently used card data are kept in memory, the least recently
+ * used ones being spilled to a directory in the binary card data format, so that the cards of a
+ * full shift fit without being all held in memory. Beyond the maximum number of spilled card data,
+ * the oldest ones are deleted.
+ *
+ * <p>A cache opened on a directory reuses the card data spilled to it by the previous runs, and
+ * spills all its card data to it when closed. A temporary cache deletes its directory when closed.
+ *
+ * <p>An instance is thread safe.
+ *
+ * @since 2.1.0
+ */
+public final class CardDataCache implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(CardDataCache.class);
+
+  /**
+   * Default maximum number of card data kept in memory.
+   *
+   * @since 2.1.0
+   */
+  public static final int DEFAULT_MAX_MEMORY_ENTRIES = 1024;
+
+  /**
+   * Default maximum number of card data spilled to the directory.
+   *
+   * @since 2.1.0
+   */
+  public static final int DEFAULT_MAX_DISK_ENTRIES = 65536;
+
+  private static final String KEY_SEPARATOR = ":";
+
+  private final Path directory;
+
+  private final boolean isTemporary;
+
+  private final int maxDiskEntries;
+
+  /** Card data in memory by key, from the least to the most recently used. */
+  private final LinkedHashMap<String, CardStructureData> memoryEntries;
+
+  /** Names of the spilled files, from the oldest to the most recent. */
+  private final LinkedHashSet<String> diskEntries = new LinkedHashSet<>();
+
+  private CardDataCache(
+      Path directory, boolean isTemporary, int maxMemoryEntries, int maxDiskEntries) {
+    this.directory = directory;
+    this.isTemporary = isTemporary;
+    this.maxDiskEntries = maxDiskEntries;
+    memoryEntries = new MemoryEntries(this, maxMemoryEntries);
+  }
+
+  /** Card data in memory, in access order, the least recently used ones being spilled. */
+  private static final class MemoryEntries extends LinkedHashMap<String, CardStructureData> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient CardDataCache cache;
+
+    private final int maxMemoryEntries;
+
+    private MemoryEntries(CardDataCache cache, int maxMemoryEntries) {
+      super(16, 0.75f, true);
+      this.cache = cache;
+      this.maxMemoryEntries = maxMemoryEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CardStructureData> eldest) {
+      if (size() <= maxMemoryEntries) {
+        return false;
+      }
+      cache.spill(eldest.getKey(), eldest.getValue());
+      return true;
+    }
+  }
+
+  /**
+   * Opens a cache spilling to a directory, creating it if needed, with the default maximum numbers
+   * of entries.
+   *
+   * @param directory The spill directory.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static CardDataCache open(Path directory) throws IOException {
+    return open(directory, DEFAULT_MAX_MEMORY_ENTRIES, DEFAULT_MAX_DISK_ENTRIES);
+  }
+
+  /**
+   * Opens a cache spilling to a directory, creating it if needed.
+   *
+   * @param directory The spill directory.
+   * @param maxMemoryEntries The maximum number of card data kept in memory.
+   * @param maxDiskEntries The maximum number of card data spilled to the directory.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static CardDataCache open(Path directory, int maxMemoryEntries, int maxDiskEntries)
+      throws IOException {
+
+    Files.createDirectories(directory);
+    CardDataCache cache = new CardDataCache(directory, false, maxMemoryEntries, maxDiskEntries);
+
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> directoryStream =
+        Files.newDirectoryStream(directory, "*" + CardStructureBinary.FILE_EXTENSION)) {
+      for (Path file : directoryStream) {
+        files.add(file);
+      }
+    }
+    files.sort(Comparator.comparing(CardDataCache::getLastModifiedTime));
+    for (Path file : files) {
+      cache.diskEntries.add(file.getFileName().toString());
+    }
+    cache.trimDiskEntries();
+
+    return cache;
+  }
+
+  /**
+   * Opens a cache spilling to a new temporary directory, deleted when the cache is closed, with the
+   * default maximum numbers of entries.
+   *
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static CardDataCache openTemporary() throws IOException {
+    return new CardDataCache(
+        Files.createTempDirectory("card-data-cache"),
+        true,
+        DEFAULT_MAX_MEMORY_ENTRIES,
+        DEFAULT_MAX_DISK_ENTRIES);
+  }
+
+  private static long getLastModifiedTime(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Builds the key of a card.
+   *
+   * @param traceability The traceability information of the card.
+   * @param csn The CSN of the first application of the card.
+   * @param fci The FCI of the first application of the card.
+   * @return The key.
+   * @since 2.1.0
+   */
+  public static String getKey(byte[] traceability, byte[] csn, byte[] fci) {
+    return HexUtil.toHex(traceability)
+        + KEY_SEPARATOR
+        + HexUtil.toHex(csn)
+        + KEY_SEPARATOR
+        + HexUtil.toHex(fci);
+  }
+
+  /**
+   * Builds the key of card data.
+   *
+   * @param cardStructureData Card data with at least one application.
+   * @return The key.
+   * @since 2.1.0
+   */
+  public static String getKey(CardStructureData cardStructureData) {
+    CardApplicationData firstApplication = cardStructureData.getApplicationList().get(0);
+    return getKey(
+        cardStructureData.getTraceability(), firstApplication.getCsn(), firstApplication.getFci());
+  }
+
+  /** Name of the spill file of a key, the key itself being too long for a file name. */
+  private static String getFileName(String key) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.US_ASCII));
+      return HexUtil.toHex(digest) + CardStructureBinary.FILE_EXTENSION;
+    } catch (NoSuchAlgorithmException e) {
+      // Supported by all the Java platforms
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Gets the card data cached under a key, loading them from the directory if they have been
+   * spilled.
+   *
+   * @param key The key of the card.
+   * @return Null if not cached.
+   * @since 2.1.0
+   */
+  public synchronized CardStructureData get(String key) {
+
+    CardStructureData cardStructureData = memoryEntries.get(key);
+    if (cardStructureData != null) {
+      return cardStructureData;
+    }
+
+    String fileName = getFileName(key);
+    if (!diskEntries.remove(fileName)) {
+      return null;
+    }
+    Path file = directory.resolve(fileName);
+    try {
+      cardStructureData = CardStructureBinary.read(file);
+      Files.delete(file);
+    } catch (IOException e) {
+      logger.warn("Unable to load the cached card data {}: {}", file, e.getMessage());
+      return null;
+    }
+    memoryEntries.put(key, cardStructureData);
+    return cardStructureData;
+  }
+
+  /**
+   * Caches card data, replacing the ones previously cached for the same card.
+   *
+   * @param cardStructureData Card data with at least one application.
+   * @since 2.1.0
+   */
+  public synchronized void put(CardStructureData cardStructureData) {
+
+    String key = getKey(cardStructureData);
+    String fileName = getFileName(key);
+    if (diskEntries.remove(fileName)) {
+      try {
+        Files.deleteIfExists(directory.resolve(fileName));
+      } catch (IOException e) {
+        logger.warn("Unable to delete the cached card data {}: {}", fileName, e.getMessage());
+      }
+    }
+    memoryEntries.put(key, cardStructureData);
+  }
+
+  /**
+   * @return The number of card data cached, in memory or spilled.
+   * @since 2.1.0
+   */
+  public synchronized int size() {
+    return memoryEntries.size() + diskEntries.size();
+  }
+
+  private void spill(String key, CardStructureData cardStructureData) {
+    String fileName = getFileName(key);
+    try {
+      CardStructureBinary.write(cardStructureData, directory.resolve(fileName));
+      diskEntries.add(fileName);
+      trimDiskEntries();
+    } catch (IOException e) {
+      logger.warn("Unable to spill the cached card data {}: {}", fileName, e.getMessage());
+    }
+  }
+
+  /** Deletes the oldest spilled card data beyond the maximum number. */
+  private void trimDiskEntries() {
+    Iterator<String> iterator = diskEntries.iterator();
+    while (diskEntries.size() > maxDiskEntries && iterator.hasNext()) {
+      String fileName = iterator.next();
+      iterator.remove();
+      try {
+        Files.deleteIfExists(directory.resolve(fileName));
+      } catch (IOException e) {
+        logger.warn("Unable to delete the cached card data {}: {}", fileName, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Spills all the card data in memory to the directory, or deletes the directory if the cache is
+   * temporary.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  @Override
+  public synchronized void close() throws IOException {
+
+    if (!isTemporary) {
+      for (Map.Entry<String, CardStructureData> entry : memoryEntries.entrySet()) {
+        spill(entry.getKey(), entry.getValue());
+      }
+      memoryEntries.clear();
+      return;
+    }
+
+    memoryEntries.clear();
+    for (String fileName : diskEntries) {
+      Files.deleteIfExists(directory.resolve(fileName));
+    }
+    diskEntries.clear();
+    Files.deleteIfExists(directory);
+  }
+}
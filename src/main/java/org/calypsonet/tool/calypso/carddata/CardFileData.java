@@ -11,10 +11,13 @@
  ************************************************************************************** */
 package org.calypsonet.tool.calypso.carddata;
 
+import com.google.gson.annotations.JsonAdapter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.calypsonet.tool.calypso.common.ToolUtils;
-import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.card.card.ElementaryFile;
 import org.slf4j.Logger;
 
@@ -25,19 +28,27 @@ import org.slf4j.Logger;
  */
 public class CardFileData {
 
-  private final String sfi;
+  private static final int NEVER_ACCESS_CONDITION = 0x00;
 
-  private final String lid;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int sfi;
 
-  private final String efType;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int lid;
 
-  private final String ref;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int efType;
 
-  private final String recSize;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int ref;
+
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int recSize;
 
   private final int recSizeDec;
 
-  private final String numRec;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int numRec;
 
   private final int numRecDec;
 
@@ -49,17 +60,17 @@ public class CardFileData {
 
     int efTypeValue = ToolUtils.getEfTypeIntValue(fileInfo.getHeader().getEfType());
 
-    lid = ToolUtils.padLeft(HexUtil.toHex(fileInfo.getHeader().getLid()), 4, '0');
+    lid = PackedHex.ofShort(fileInfo.getHeader().getLid());
 
-    sfi = HexUtil.toHex(fileInfo.getSfi());
+    sfi = PackedHex.ofByte(fileInfo.getSfi());
 
-    efType = HexUtil.toHex(efTypeValue);
+    efType = PackedHex.ofInt(efTypeValue);
 
-    numRec = HexUtil.toHex(fileInfo.getHeader().getRecordsNumber());
+    numRec = PackedHex.ofInt(fileInfo.getHeader().getRecordsNumber());
 
     numRecDec = fileInfo.getHeader().getRecordsNumber();
 
-    recSize = ToolUtils.padLeft(HexUtil.toHex(fileInfo.getHeader().getRecordSize()), 4, '0');
+    recSize = PackedHex.ofInt(fileInfo.getHeader().getRecordSize(), 4);
 
     recSizeDec = fileInfo.getHeader().getRecordSize();
 
@@ -69,23 +80,140 @@ public class CardFileData {
 
     recordDataList = new ArrayList<>();
 
-    ref = ToolUtils.padLeft(HexUtil.toHex(fileInfo.getHeader().getSharedReference()), 4, '0');
+    ref = PackedHex.ofShort(fileInfo.getHeader().getSharedReference());
+  }
+
+  /**
+   * Creates the data of a file with the header of another one, without its records.
+   *
+   * @param header The data of the file whose header is copied.
+   * @since 2.1.0
+   */
+  public CardFileData(CardFileData header) {
+
+    sfi = header.sfi;
+
+    lid = header.lid;
+
+    efType = header.efType;
+
+    ref = header.ref;
+
+    recSize = header.recSize;
+
+    recSizeDec = header.recSizeDec;
+
+    numRec = header.numRec;
+
+    numRecDec = header.numRecDec;
+
+    accessConditions = header.accessConditions;
+
+    recordDataList = new ArrayList<>();
+  }
+
+  /**
+   * Reads the file data from the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  CardFileData(DataInput in) throws IOException {
+
+    sfi = BinaryCodec.readHexInt(in);
+
+    lid = BinaryCodec.readHexInt(in);
+
+    efType = BinaryCodec.readHexInt(in);
+
+    ref = BinaryCodec.readHexInt(in);
+
+    recSize = BinaryCodec.readHexInt(in);
+
+    recSizeDec = (int) BinaryCodec.readVarLong(in);
+
+    numRec = BinaryCodec.readHexInt(in);
+
+    numRecDec = (int) BinaryCodec.readVarLong(in);
+
+    accessConditions = AccessConditions.read(in);
+
+    recordDataList = BinaryCodec.readList(in, RecordData::new);
+  }
+
+  /**
+   * Writes the file data in the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  void writeTo(DataOutput out) throws IOException {
+
+    BinaryCodec.writeHexInt(out, sfi);
+
+    BinaryCodec.writeHexInt(out, lid);
+
+    BinaryCodec.writeHexInt(out, efType);
+
+    BinaryCodec.writeHexInt(out, ref);
+
+    BinaryCodec.writeHexInt(out, recSize);
+
+    BinaryCodec.writeVarLong(out, recSizeDec);
+
+    BinaryCodec.writeHexInt(out, numRec);
+
+    BinaryCodec.writeVarLong(out, numRecDec);
+
+    AccessConditions.write(out, accessConditions);
+
+    BinaryCodec.writeList(out, recordDataList, (o, recordData) -> recordData.writeTo(o));
   }
 
   public String getLid() {
-    return lid;
+    return PackedHex.toHex(lid);
+  }
+
+  /**
+   * @return -1 if the LID is not defined.
+   * @since 2.1.0
+   */
+  public int getLidValue() {
+    return PackedHex.getValue(lid);
   }
 
   public String getSfi() {
-    return sfi;
+    return PackedHex.toHex(sfi);
+  }
+
+  /**
+   * @return -1 if the SFI is not defined.
+   * @since 2.1.0
+   */
+  public int getSfiValue() {
+    return PackedHex.getValue(sfi);
   }
 
   public String getEfType() {
-    return efType;
+    return PackedHex.toHex(efType);
+  }
+
+  /**
+   * @return -1 if the EF type is not defined.
+   * @since 2.1.0
+   */
+  public int getEfTypeValue() {
+    return PackedHex.getValue(efType);
   }
 
   public String getNumRec() {
-    return numRec;
+    return PackedHex.toHex(numRec);
+  }
+
+  /**
+   * @return -1 if the number of records is not defined.
+   * @since 2.1.0
+   */
+  public int getNumRecValue() {
+    return PackedHex.getValue(numRec);
   }
 
   public int getNumRecDec() {
@@ -93,7 +221,15 @@ public class CardFileData {
   }
 
   public String getRecSize() {
-    return recSize;
+    return PackedHex.toHex(recSize);
+  }
+
+  /**
+   * @return -1 if the record size is not defined.
+   * @since 2.1.0
+   */
+  public int getRecSizeValue() {
+    return PackedHex.getValue(recSize);
   }
 
   public int getRecSizeDec() {
@@ -105,7 +241,31 @@ public class CardFileData {
   }
 
   public String getDataRef() {
-    return ref;
+    return PackedHex.toHex(ref);
+  }
+
+  /**
+   * @return -1 if the data reference is not defined.
+   * @since 2.1.0
+   */
+  public int getDataRefValue() {
+    return PackedHex.getValue(ref);
+  }
+
+  /**
+   * @return True if the records of the file may be modified, i.e. if the access condition of one of
+   *     the groups other than the reading one is not "Never".
+   * @since 2.1.0
+   */
+  public boolean isModifiable() {
+    return accessConditions == null
+        || !isNever(accessConditions.getGroup1())
+        || !isNever(accessConditions.getGroup2())
+        || !isNever(accessConditions.getGroup3());
+  }
+
+  private static boolean isNever(AccessConditions.AccessCondition group) {
+    return group != null && group.getAccessConditionValue() == NEVER_ACCESS_CONDITION;
   }
 
   public List<RecordData> getRecordDataList() {
@@ -113,45 +273,8 @@ public class CardFileData {
   }
 
   public void print(Logger logger) {
-
-    String group0 =
-        ToolUtils.getAcName(
-            this.getAccessConditions().getGroup0().getAccessCondition(),
-            this.getAccessConditions().getGroup0().getKeyLevel(),
-            false);
-    String group1 =
-        ToolUtils.getAcName(
-            this.getAccessConditions().getGroup1().getAccessCondition(),
-            this.getAccessConditions().getGroup1().getKeyLevel(),
-            false);
-    String group2 =
-        ToolUtils.getAcName(
-            this.getAccessConditions().getGroup2().getAccessCondition(),
-            this.getAccessConditions().getGroup2().getKeyLevel(),
-            false);
-    String group3 =
-        ToolUtils.getAcName(
-            this.getAccessConditions().getGroup3().getAccessCondition(),
-            this.getAccessConditions().getGroup3().getKeyLevel(),
-            false);
-
-    logger.info(
-        "| {} | {} | {}  | {} | {} | {} | {} | {} | {}| {} |",
-        this.getLid(),
-        ToolUtils.getEfTypeName(this.getEfType(), false),
-        this.getSfi(),
-        ToolUtils.padLeft(String.valueOf(this.getNumRecDec()), 2, '0'),
-        ToolUtils.padLeft(String.valueOf(this.getRecSizeDec()), 4, '0'),
-        group0,
-        group1,
-        group2,
-        group3,
-        this.getDataRef());
-
-    if (getRecordDataList() != null) {
-      for (RecordData recordData : getRecordDataList()) {
-        logger.info("+ #{}:{}", recordData.getIndex(), HexUtil.toHex(recordData.getValue()));
-      }
+    if (logger.isInfoEnabled()) {
+      logger.info("{}", new CardStructureText().render(this));
     }
   }
 }
@@ -0,0 +1,150 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compact binary (de)serialization of {@link CardStructureData}.
+ *
+ * <p>A binary card data file starts with the "CCD" magic number followed by the version of the
+ * format. The byte arrays (FCI, CSN, record contents...) are stored as raw bytes, the hexadecimal
+ * fields as packed bytes and the access conditions as 2 bytes per group, the other values being
+ * length-prefixed. The conversion from/to JSON is lossless.
+ *
+ * @since 2.1.0
+ */
+public final class CardStructureBinary {
+
+  /**
+   * Extension of the binary card data files.
+   *
+   * @since 2.1.0
+   */
+  public static final String FILE_EXTENSION = ".ccd";
+
+  private static final byte[] MAGIC = {'C', 'C', 'D'};
+
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private CardStructureBinary() {}
+
+  /**
+   * Writes the card data without the file header, e.g. as a record of a larger file.
+   *
+   * @param cardStructureData The card data.
+   * @param out The destination.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static void writeRecord(CardStructureData cardStructureData, DataOutput out)
+      throws IOException {
+    cardStructureData.writeTo(out);
+  }
+
+  /**
+   * Reads card data written by {@link #writeRecord(CardStructureData, DataOutput)}.
+   *
+   * @param in The source.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs or if the data is malformed.
+   * @since 2.1.0
+   */
+  public static CardStructureData readRecord(DataInput in) throws IOException {
+    return new CardStructureData(in);
+  }
+
+  /**
+   * Writes the card data in the binary format.
+   *
+   * @param cardStructureData The card data.
+   * @param out The destination, flushed but not closed by this method.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static void write(CardStructureData cardStructureData, OutputStream out)
+      throws IOException {
+
+    DataOutputStream dataOut = new DataOutputStream(out);
+    dataOut.write(MAGIC);
+    dataOut.writeByte(FORMAT_VERSION);
+    writeRecord(cardStructureData, dataOut);
+    dataOut.flush();
+  }
+
+  /**
+   * Writes the card data in the binary format to a file, replacing any existing one.
+   *
+   * @param cardStructureData The card data.
+   * @param file The path of the file.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static void write(CardStructureData cardStructureData, Path file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+      write(cardStructureData, out);
+    }
+  }
+
+  /**
+   * Reads card data in the binary format.
+   *
+   * @param in The source, not closed by this method.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs, if the data is not in the binary card data format
+   *     or if its version is not supported.
+   * @since 2.1.0
+   */
+  public static CardStructureData read(InputStream in) throws IOException {
+
+    DataInputStream dataIn = new DataInputStream(in);
+    byte[] magic = new byte[MAGIC.length];
+    dataIn.readFully(magic);
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (magic[i] != MAGIC[i]) {
+        throw new IOException("Not a binary card data file");
+      }
+    }
+    int version = dataIn.readUnsignedByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported binary card data format version: " + version);
+    }
+    return readRecord(dataIn);
+  }
+
+  /**
+   * Reads card data from a file in the binary format.
+   *
+   * @param file The path of the file.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs, if the data is not in the binary card data format
+   *     or if its version is not supported.
+   * @since 2.1.0
+   */
+  public static CardStructureData read(Path file) throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+      return read(in);
+    }
+  }
+}
@@ -11,10 +11,11 @@
  ************************************************************************************** */
 package org.calypsonet.tool.calypso.carddata;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import org.calypsonet.tool.calypso.common.ToolUtils;
-import org.eclipse.keyple.core.util.HexUtil;
 import org.slf4j.Logger;
 
 /**
@@ -34,6 +35,9 @@ public class CardStructureData {
 
   private final String software;
 
+  /** Null for the data read before the scan levels were introduced, i.e. with all the records. */
+  private ScanLevel scanLevel;
+
   private final byte[] traceability;
 
   private final List<CardApplicationData> applicationList;
@@ -58,24 +62,63 @@ public class CardStructureData {
     applicationList = new ArrayList<>();
   }
 
+  /**
+   * Reads the card data from the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  CardStructureData(DataInput in) throws IOException {
+
+    id = BinaryCodec.readString(in);
+
+    infos = BinaryCodec.readString(in);
+
+    date = BinaryCodec.readString(in);
+
+    version = (int) BinaryCodec.readVarLong(in);
+
+    software = BinaryCodec.readString(in);
+
+    scanLevel = ScanLevel.fromName(BinaryCodec.readString(in));
+
+    traceability = BinaryCodec.readBytes(in);
+
+    applicationList = BinaryCodec.readList(in, CardApplicationData::new);
+  }
+
+  /**
+   * Writes the card data in the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  void writeTo(DataOutput out) throws IOException {
+
+    BinaryCodec.writeString(out, id);
+
+    BinaryCodec.writeString(out, infos);
+
+    BinaryCodec.writeString(out, date);
+
+    BinaryCodec.writeVarLong(out, version);
+
+    BinaryCodec.writeString(out, software);
+
+    BinaryCodec.writeString(out, scanLevel != null ? scanLevel.getName() : null);
+
+    BinaryCodec.writeBytes(out, traceability);
+
+    BinaryCodec.writeList(
+        out, applicationList, (o, cardApplicationData) -> cardApplicationData.writeTo(o));
+  }
+
   public List<CardApplicationData> getApplicationList() {
     return applicationList;
   }
 
   public void print(Logger logger) {
-
-    logger.info(ToolUtils.SEPARATOR_LINE);
-    logger.info("= Id:: {}", this.getId());
-    logger.info("= Date:: {}", this.getDate());
-    logger.info("= Version:: {}", ToolUtils.padLeft(String.valueOf(this.getVersion()), 3, '0'));
-    logger.info("= Software:: {}", this.getSoftware());
-    logger.info("= Traceability:: {}", HexUtil.toHex(this.getTraceability()));
-
-    for (CardApplicationData applicationData : this.getApplicationList()) {
-      applicationData.print(logger);
+    if (logger.isInfoEnabled()) {
+      logger.info("{}", new CardStructureText().render(this));
     }
-
-    logger.info(ToolUtils.SEPARATOR_LINE);
   }
 
   public byte[] getTraceability() {
@@ -98,6 +141,22 @@ public class CardStructureData {
     return software;
   }
 
+  /**
+   * @return The depth of the reading of the files, {@link ScanLevel#FULL} if not recorded.
+   * @since 2.1.0
+   */
+  public ScanLevel getScanLevel() {
+    return scanLevel != null ? scanLevel : ScanLevel.FULL;
+  }
+
+  /**
+   * @param scanLevel The depth of the reading of the files.
+   * @since 2.1.0
+   */
+  public void setScanLevel(ScanLevel scanLevel) {
+    this.scanLevel = scanLevel;
+  }
+
   public String getInfos() {
     return infos;
   }
@@ -0,0 +1,115 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+
+/**
+ * JSON (de)serialization of {@link CardStructureData}, the byte arrays being represented as
+ * hexadecimal strings.
+ *
+ * <p>The data is streamed to/from the JSON text, without building the whole document in memory.
+ *
+ * @since 2.1.0
+ */
+public final class CardStructureJson {
+
+  private static final String INDENT = "  ";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Gson gson =
+      new GsonBuilder()
+          .registerTypeHierarchyAdapter(byte[].class, new ToolUtils.HexTypeAdapter())
+          .create();
+
+  private CardStructureJson() {}
+
+  /**
+   * Writes the card data as JSON.
+   *
+   * @param cardStructureData The card data.
+   * @param writer The destination, flushed but not closed by this method.
+   * @param isPrettyPrinting True to indent the JSON text, false to write it on a single line.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static void write(
+      CardStructureData cardStructureData, Writer writer, boolean isPrettyPrinting)
+      throws IOException {
+
+    JsonWriter jsonWriter = gson.newJsonWriter(writer);
+    if (isPrettyPrinting) {
+      jsonWriter.setIndent(INDENT);
+    }
+    gson.toJson(cardStructureData, CardStructureData.class, jsonWriter);
+    jsonWriter.flush();
+  }
+
+  /**
+   * Writes the card data as JSON to a UTF-8 file, replacing any existing one.
+   *
+   * @param cardStructureData The card data.
+   * @param file The path of the file.
+   * @param isPrettyPrinting True to indent the JSON text, false to write it on a single line.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static void write(CardStructureData cardStructureData, Path file, boolean isPrettyPrinting)
+      throws IOException {
+
+    try (Writer writer =
+        new BufferedWriter(
+            new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8),
+            BUFFER_SIZE)) {
+      write(cardStructureData, writer, isPrettyPrinting);
+    }
+  }
+
+  /**
+   * Reads card data from JSON.
+   *
+   * @param reader The source, not closed by this method.
+   * @return Null if the source is empty.
+   * @throws com.google.gson.JsonParseException If the JSON text is not valid.
+   * @since 2.1.0
+   */
+  public static CardStructureData read(Reader reader) {
+    return gson.fromJson(reader, CardStructureData.class);
+  }
+
+  /**
+   * Reads card data from a UTF-8 JSON file.
+   *
+   * @param file The path of the file.
+   * @return Null if the file is empty.
+   * @throws IOException If an I/O error occurs.
+   * @throws com.google.gson.JsonParseException If the JSON text is not valid.
+   * @since 2.1.0
+   */
+  public static CardStructureData read(Path file) throws IOException {
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return read(reader);
+    }
+  }
+}
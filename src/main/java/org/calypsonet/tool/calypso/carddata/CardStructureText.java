@@ -0,0 +1,226 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import java.util.List;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+
+/**
+ * Text rendering of the card data, as the tables printed by the analyzer.
+ *
+ * <p>The card data is rendered as a whole into a buffer reused from one rendering to the next, the
+ * hexadecimal values being appended digit by digit without intermediate strings, so that a card can
+ * be printed with a single logging call instead of one per line. The rendered text starts with a
+ * line separator, so that the table is aligned whatever the prefix of the log line.
+ *
+ * <p>An instance is not thread safe, each thread rendering card data having to use its own one.
+ *
+ * @since 2.1.0
+ */
+public final class CardStructureText {
+
+  private static final int INITIAL_CAPACITY = 16384;
+
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private static final String APPLICATION_HEADER =
+      "| AID                             | LID  | KVC1 | KVC2 | KVC3 | KIF1 | KIF2 | KIF3 | G0 | G1 | G2 | G3 |";
+
+  private static final String FILE_HEADER =
+      "| LID  | Type | SID | #R | Size | G0 | G1 | G2 | G3 | DRef |";
+
+  private static final String FILE_HEADER_LINE =
+      "----------------------------------------------------------";
+
+  private final StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+
+  /**
+   * Renders the data of a card.
+   *
+   * @param cardStructureData The card data.
+   * @return The rendered text.
+   * @since 2.1.0
+   */
+  public String render(CardStructureData cardStructureData) {
+    buffer.setLength(0);
+    appendCard(cardStructureData);
+    return buffer.toString();
+  }
+
+  /**
+   * Renders the data of an application.
+   *
+   * @param cardApplicationData The application data.
+   * @return The rendered text.
+   * @since 2.1.0
+   */
+  public String render(CardApplicationData cardApplicationData) {
+    buffer.setLength(0);
+    appendApplication(cardApplicationData);
+    return buffer.toString();
+  }
+
+  /**
+   * Renders the data of a file.
+   *
+   * @param cardFileData The file data.
+   * @return The rendered text.
+   * @since 2.1.0
+   */
+  public String render(CardFileData cardFileData) {
+    buffer.setLength(0);
+    appendFile(cardFileData);
+    return buffer.toString();
+  }
+
+  private void appendCard(CardStructureData cardStructureData) {
+
+    newLine().append(ToolUtils.SEPARATOR_LINE);
+    newLine().append("= Id:: ").append(cardStructureData.getId());
+    newLine().append("= Date:: ").append(cardStructureData.getDate());
+    newLine().append("= Version:: ");
+    appendPadded(String.valueOf(cardStructureData.getVersion()), 3, '0');
+    newLine().append("= Software:: ").append(cardStructureData.getSoftware());
+    newLine().append("= Scan level:: ").append(cardStructureData.getScanLevel().getName());
+    newLine().append("= Traceability:: ");
+    appendHex(cardStructureData.getTraceability());
+
+    for (CardApplicationData cardApplicationData : cardStructureData.getApplicationList()) {
+      appendApplication(cardApplicationData);
+    }
+
+    newLine().append(ToolUtils.SEPARATOR_LINE);
+  }
+
+  private void appendApplication(CardApplicationData cardApplicationData) {
+
+    AccessConditions accessConditions = cardApplicationData.getAccessConditions();
+
+    newLine().append(ToolUtils.SEPARATOR_LINE);
+    newLine().append(APPLICATION_HEADER);
+    newLine().append('|');
+    byte[] aid = cardApplicationData.getAid();
+    for (int i = aid != null ? aid.length * 2 : 0; i < 32; i++) {
+      buffer.append(' ');
+    }
+    appendHex(aid);
+    buffer.append(" | ");
+    appendPadded(cardApplicationData.getLid(), 4, '0');
+    buffer.append(" |  ").append(cardApplicationData.getKvc1());
+    buffer.append("  |  ").append(cardApplicationData.getKvc2());
+    buffer.append("  |  ").append(cardApplicationData.getKvc3());
+    buffer.append("  |  ").append(cardApplicationData.getKif1());
+    buffer.append("  |  ").append(cardApplicationData.getKif2());
+    buffer.append("  |  ").append(cardApplicationData.getKif3());
+    buffer.append("  | ").append(getAcName(accessConditions.getGroup0()));
+    buffer.append(" | ").append(getAcName(accessConditions.getGroup1()));
+    buffer.append(" | ").append(getAcName(accessConditions.getGroup2()));
+    buffer.append(" | ").append(getAcName(accessConditions.getGroup3()));
+    buffer.append(" |");
+    newLine().append(ToolUtils.SEPARATOR_LINE);
+
+    newLine().append("= FCI:: ");
+    appendHex(cardApplicationData.getFci());
+    newLine().append("= Serial Number:: ");
+    appendHex(cardApplicationData.getCsn());
+    buffer.append(" (").append(cardApplicationData.getCsnDec()).append(')');
+    newLine()
+        .append("= Transaction Counter:: ")
+        .append(cardApplicationData.getTransactionCounterDec());
+    newLine().append("= Revision:: ").append(cardApplicationData.getCalypsoRevision());
+    newLine()
+        .append("= Session Buffer Size:: ")
+        .append(cardApplicationData.getBufferSize())
+        .append(" bytes");
+    newLine().append("= Platform (Chip Type):: ").append(cardApplicationData.getPlatform());
+    CardApplicationData.Issuer issuer = cardApplicationData.getIssuerInfo();
+    newLine().append("= Issuer:: ");
+    if (issuer != null) {
+      buffer.append(issuer.getName()).append(" (").append(issuer.getValue()).append(')');
+    } else {
+      buffer.append("null");
+    }
+    newLine()
+        .append("= Software Version:: ")
+        .append(cardApplicationData.getVersion())
+        .append('.')
+        .append(cardApplicationData.getRevision());
+    newLine().append("= Application Type:: ").append(cardApplicationData.getApplicationType());
+    newLine()
+        .append("= Application Subtype:: ")
+        .append(cardApplicationData.getApplicationSubtype());
+    newLine().append("= DF Status:: ").append(cardApplicationData.getStatus());
+    newLine().append(ToolUtils.SEPARATOR_LINE);
+
+    newLine().append(FILE_HEADER);
+    newLine().append(FILE_HEADER_LINE);
+
+    for (CardFileData cardFileData : cardApplicationData.getFileList()) {
+      appendFile(cardFileData);
+    }
+  }
+
+  private void appendFile(CardFileData cardFileData) {
+
+    AccessConditions accessConditions = cardFileData.getAccessConditions();
+
+    newLine().append("| ").append(cardFileData.getLid());
+    buffer.append(" | ").append(ToolUtils.getEfTypeName(cardFileData.getEfTypeValue(), false));
+    buffer.append(" | ").append(cardFileData.getSfi());
+    buffer.append("  | ");
+    appendPadded(String.valueOf(cardFileData.getNumRecDec()), 2, '0');
+    buffer.append(" | ");
+    appendPadded(String.valueOf(cardFileData.getRecSizeDec()), 4, '0');
+    buffer.append(" | ").append(getAcName(accessConditions.getGroup0()));
+    buffer.append(" | ").append(getAcName(accessConditions.getGroup1()));
+    buffer.append(" | ").append(getAcName(accessConditions.getGroup2()));
+    buffer.append(" | ").append(getAcName(accessConditions.getGroup3()));
+    buffer.append("| ").append(cardFileData.getDataRef());
+    buffer.append(" |");
+
+    List<RecordData> recordDataList = cardFileData.getRecordDataList();
+    if (recordDataList != null) {
+      for (RecordData recordData : recordDataList) {
+        newLine().append("+ #").append(recordData.getIndex()).append(':');
+        appendHex(recordData.getValue());
+      }
+    }
+  }
+
+  private static String getAcName(AccessConditions.AccessCondition accessCondition) {
+    return ToolUtils.getAcName(
+        accessCondition.getAccessConditionValue(), accessCondition.getKeyLevelValue(), false);
+  }
+
+  private StringBuilder newLine() {
+    return buffer.append(LINE_SEPARATOR);
+  }
+
+  private void appendPadded(String value, int length, char padChar) {
+    for (int i = value.length(); i < length; i++) {
+      buffer.append(padChar);
+    }
+    buffer.append(value);
+  }
+
+  /** Appends the hexadecimal representation of the bytes, nothing if null. */
+  private void appendHex(byte[] bytes) {
+    if (bytes == null) {
+      return;
+    }
+    for (byte b : bytes) {
+      buffer.append(HEX_DIGITS[(b >>> 4) & 0x0F]).append(HEX_DIGITS[b & 0x0F]);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+
+/**
+ * Hexadecimal field of the card data model packed into an int: the value in the 24 low bits and the
+ * number of digits of its hexadecimal representation in the high bits, so that the value is
+ * rendered as it was read (e.g. "1D" or "001D"). 0 stands for an undefined field.
+ *
+ * <p>The hexadecimal string is only rendered when needed, the values of 2 digits being taken from a
+ * precomputed table.
+ *
+ * @since 2.1.0
+ */
+final class PackedHex {
+
+  /** Undefined field. */
+  static final int NONE = 0;
+
+  private static final int VALUE_MASK = 0xFFFFFF;
+
+  private static final int NB_DIGITS_SHIFT = 24;
+
+  /** Values up to 0xFFFFFF. */
+  static final int MAX_DIGITS = 6;
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private static final String[] BYTE_HEX_STRINGS = new String[256];
+
+  static {
+    for (int i = 0; i < BYTE_HEX_STRINGS.length; i++) {
+      BYTE_HEX_STRINGS[i] = new String(new char[] {HEX_DIGITS[i >>> 4], HEX_DIGITS[i & 0x0F]});
+    }
+  }
+
+  private PackedHex() {}
+
+  /**
+   * Packs a value with the number of digits of its representation.
+   *
+   * @param value The value, from 0 to 0xFFFFFF.
+   * @param nbDigits The number of digits, from 1 to {@link #MAX_DIGITS}, larger values being padded
+   *     with leading zeros.
+   */
+  static int of(int value, int nbDigits) {
+    return (nbDigits << NB_DIGITS_SHIFT) | (value & VALUE_MASK);
+  }
+
+  /** Packs a byte, represented by 2 digits. */
+  static int ofByte(byte value) {
+    return of(value & 0xFF, 2);
+  }
+
+  /** Packs a short, represented by 4 digits. */
+  static int ofShort(short value) {
+    return of(value & 0xFFFF, 4);
+  }
+
+  /**
+   * Packs an int represented by an even number of digits, as done by {@code HexUtil.toHex(int)}.
+   */
+  static int ofInt(int value) {
+    return ofInt(value, 2);
+  }
+
+  /**
+   * Packs an int represented by an even number of digits, padded with leading zeros to a minimum
+   * number of digits.
+   */
+  static int ofInt(int value, int minNbDigits) {
+    int nbDigits = 2;
+    while (nbDigits < MAX_DIGITS && (value >>> (nbDigits * 4)) != 0) {
+      nbDigits += 2;
+    }
+    return of(value, Math.max(nbDigits, minNbDigits));
+  }
+
+  /**
+   * @return -1 if the field is undefined.
+   */
+  static int getValue(int packed) {
+    return packed == NONE ? -1 : packed & VALUE_MASK;
+  }
+
+  static int getNbDigits(int packed) {
+    return packed >>> NB_DIGITS_SHIFT;
+  }
+
+  /**
+   * @return Null if the field is undefined.
+   */
+  static String toHex(int packed) {
+    if (packed == NONE) {
+      return null;
+    }
+    int value = packed & VALUE_MASK;
+    int nbDigits = getNbDigits(packed);
+    if (nbDigits == 2) {
+      return BYTE_HEX_STRINGS[value];
+    }
+    char[] digits = new char[nbDigits];
+    for (int i = nbDigits - 1; i >= 0; i--) {
+      digits[i] = HEX_DIGITS[value & 0x0F];
+      value >>>= 4;
+    }
+    return new String(digits);
+  }
+
+  /**
+   * Parses a hexadecimal string.
+   *
+   * @param hex The string, may be null.
+   * @return {@link #NONE} if the string is null.
+   * @throws IllegalArgumentException If the string is empty, longer than {@link #MAX_DIGITS} or not
+   *     hexadecimal.
+   */
+  static int parse(String hex) {
+    if (hex == null) {
+      return NONE;
+    }
+    if (hex.isEmpty() || hex.length() > MAX_DIGITS) {
+      throw new IllegalArgumentException("Invalid hexadecimal value: '" + hex + "'");
+    }
+    int value = 0;
+    for (int i = 0; i < hex.length(); i++) {
+      int digit = Character.digit(hex.charAt(i), 16);
+      if (digit < 0) {
+        throw new IllegalArgumentException("Invalid hexadecimal value: '" + hex + "'");
+      }
+      value = (value << 4) | digit;
+    }
+    return of(value, hex.length());
+  }
+
+  /**
+   * Gson adapter (de)serializing a packed field as a hexadecimal string, an undefined field being
+   * written as null (i.e. omitted).
+   *
+   * @since 2.1.0
+   */
+  static final class GsonAdapter extends TypeAdapter<Integer> {
+
+    @Override
+    public void write(JsonWriter out, Integer packed) throws IOException {
+      if (packed == null || packed == NONE) {
+        out.nullValue();
+      } else {
+        out.value(toHex(packed));
+      }
+    }
+
+    @Override
+    public Integer read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return NONE;
+      }
+      String hex = in.nextString();
+      try {
+        return parse(hex);
+      } catch (IllegalArgumentException e) {
+        throw new JsonSyntaxException(e.getMessage() + " at " + in.getPath(), e);
+      }
+    }
+  }
+}
@@ -11,8 +11,11 @@
  ************************************************************************************** */
 package org.calypsonet.tool.calypso.carddata;
 
+import com.google.gson.annotations.JsonAdapter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
-import org.eclipse.keyple.core.util.HexUtil;
 
 /**
  * Represents a record data including index and value.
@@ -21,19 +24,52 @@ import org.eclipse.keyple.core.util.HexUtil;
  */
 public class RecordData {
 
-  private final String index;
+  @JsonAdapter(PackedHex.GsonAdapter.class)
+  private final int index;
 
   private final byte[] value;
 
   public RecordData(int recordIndex, byte[] recordData) {
 
-    index = HexUtil.toHex(recordIndex);
+    index = PackedHex.ofInt(recordIndex);
 
     value = Arrays.copyOf(recordData, recordData.length);
   }
 
+  /**
+   * Reads the record data from the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  RecordData(DataInput in) throws IOException {
+
+    index = BinaryCodec.readHexInt(in);
+
+    value = BinaryCodec.readBytes(in);
+  }
+
+  /**
+   * Writes the record data in the binary card data format.
+   *
+   * @since 2.1.0
+   */
+  void writeTo(DataOutput out) throws IOException {
+
+    BinaryCodec.writeHexInt(out, index);
+
+    BinaryCodec.writeBytes(out, value);
+  }
+
   public String getIndex() {
-    return index;
+    return PackedHex.toHex(index);
+  }
+
+  /**
+   * @return -1 if the index is not defined.
+   * @since 2.1.0
+   */
+  public int getIndexValue() {
+    return PackedHex.getValue(index);
   }
 
   public byte[] getValue() {
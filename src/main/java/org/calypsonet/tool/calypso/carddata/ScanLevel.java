@@ -0,0 +1,63 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.carddata;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Depth of the reading of the files of a card, recorded with the card data so that the records
+ * intentionally omitted are not mistaken for missing ones.
+ *
+ * @since 2.1.0
+ */
+public enum ScanLevel {
+
+  /** Only the headers of the files are read: LID, SFI, type, access conditions and DataRef. */
+  @SerializedName("headers")
+  HEADERS("headers"),
+
+  /** The headers and the first record of the files are read. */
+  @SerializedName("first-record")
+  FIRST_RECORD("first-record"),
+
+  /** The headers and all the records of the files are read. */
+  @SerializedName("full")
+  FULL("full");
+
+  private final String name;
+
+  ScanLevel(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @return The name of the level, as written in the JSON card data.
+   * @since 2.1.0
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @param name The name of a level, as written in the JSON card data.
+   * @return Null if unknown.
+   * @since 2.1.0
+   */
+  public static ScanLevel fromName(String name) {
+    for (ScanLevel scanLevel : values()) {
+      if (scanLevel.name.equals(name)) {
+        return scanLevel;
+      }
+    }
+    return null;
+  }
+}
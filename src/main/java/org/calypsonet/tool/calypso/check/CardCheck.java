@@ -0,0 +1,420 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import org.calypsonet.tool.calypso.carddata.AccessConditions;
+import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardFileData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Check of a card against a {@link ProfileMatcher}.
+ *
+ * <p>Holds the DataRef values read on the card until all the applications have been checked, and
+ * accumulates the findings in a {@link CheckReport}.
+ *
+ * @since 2.1.0
+ */
+public final class CardCheck {
+
+  private static final Logger logger = LoggerFactory.getLogger(CardCheck.class);
+
+  private final ProfileMatcher profileMatcher;
+
+  /** DataRef read for each file of the profile waiting for its linked file. */
+  private final int[] readDataRefs;
+
+  /** File read for each file of the profile waiting for its linked file. */
+  private final CardFileData[] readDataRefFiles;
+
+  private final String[] readDataRefAids;
+
+  private final boolean[] isWaitingForLinkedFile;
+
+  private final boolean[] isReferenceFound;
+
+  private final CheckReport report = new CheckReport();
+
+  /** AID of the application being checked. */
+  private String currentAid;
+
+  /** SFI of the file being checked, null when checking the application itself. */
+  private String currentSfi;
+
+  CardCheck(ProfileMatcher profileMatcher) {
+    this.profileMatcher = profileMatcher;
+    readDataRefs = new int[profileMatcher.getNbFiles()];
+    readDataRefFiles = new CardFileData[profileMatcher.getNbFiles()];
+    readDataRefAids = new String[profileMatcher.getNbFiles()];
+    isWaitingForLinkedFile = new boolean[profileMatcher.getNbFiles()];
+    isReferenceFound = new boolean[profileMatcher.getNbFiles()];
+    report.setProfileName(profileMatcher.getName());
+  }
+
+  private void addFinding(
+      CheckFinding.Kind kind, int group, String field, String expected, String actual) {
+    report.add(
+        new CheckFinding(kind, currentAid, currentSfi, null, group, field, expected, actual, null));
+  }
+
+  /**
+   * Tells if a value read differs from the expected one, if any. The hexadecimal representations of
+   * the values are only rendered for the findings.
+   */
+  private static boolean isMismatch(int dataToCheck, int dataRead) {
+    return dataToCheck >= 0 && dataToCheck != dataRead;
+  }
+
+  private void addValueMismatch(String name, String valueToCheck, String valueRead) {
+    addFinding(CheckFinding.Kind.VALUE_MISMATCH, -1, name, valueToCheck, valueRead);
+  }
+
+  private void checkAccessConditions(
+      CompiledAccessConditions dataToCheck, CompiledAccessConditions dataRead) {
+
+    if (dataToCheck.matches(dataRead)) {
+      return;
+    }
+
+    for (int groupNumber = 0; groupNumber < CompiledAccessConditions.NB_GROUPS; groupNumber++) {
+
+      AccessConditions.AccessCondition groupToCheck = dataToCheck.getGroup(groupNumber);
+      AccessConditions.AccessCondition groupRead = dataRead.getGroup(groupNumber);
+
+      if (dataToCheck.isAccessConditionMismatch(groupNumber, dataRead)) {
+        addFinding(
+            CheckFinding.Kind.ACCESS_CONDITION_MISMATCH,
+            groupNumber,
+            "Access Condition",
+            groupToCheck.getAccessCondition(),
+            groupRead.getAccessCondition());
+      }
+
+      if (dataToCheck.isKeyLevelMissing(groupNumber)) {
+        addFinding(
+            CheckFinding.Kind.KEY_LEVEL_UNDEFINED,
+            groupNumber,
+            "Key Level",
+            groupToCheck.getAccessCondition(),
+            null);
+      } else if (dataToCheck.isKeyLevelMismatch(groupNumber, dataRead)) {
+        addFinding(
+            CheckFinding.Kind.KEY_LEVEL_MISMATCH,
+            groupNumber,
+            "Key Level",
+            groupToCheck.getKeyLevel(),
+            groupRead.getKeyLevel());
+      }
+    }
+  }
+
+  private void checkDataRef(CompiledFile fileToCheck, CompiledFile fileRead) {
+
+    int dataRefRead = fileRead.getDataRef();
+
+    for (int linkedFileOrdinal : fileToCheck.getLinkedFileOrdinals()) {
+
+      if (isWaitingForLinkedFile[linkedFileOrdinal]) {
+
+        if (readDataRefs[linkedFileOrdinal] == dataRefRead) {
+          isReferenceFound[linkedFileOrdinal] = true;
+        } else {
+          report.add(
+              new CheckFinding(
+                  CheckFinding.Kind.DATA_REF_MISMATCH,
+                  currentAid,
+                  null,
+                  fileToCheck.getSource().getLid(),
+                  -1,
+                  "DataRef",
+                  readDataRefFiles[linkedFileOrdinal].getDataRef(),
+                  fileRead.getSource().getDataRef(),
+                  profileMatcher.getFile(linkedFileOrdinal).getSource().getLid()));
+        }
+
+        return;
+      }
+    }
+
+    readDataRefAids[fileToCheck.getOrdinal()] = currentAid;
+    readDataRefs[fileToCheck.getOrdinal()] = dataRefRead;
+    readDataRefFiles[fileToCheck.getOrdinal()] = fileRead.getSource();
+    isWaitingForLinkedFile[fileToCheck.getOrdinal()] = true;
+  }
+
+  private void checkCardFileData(CompiledFile fileToCheck, CompiledApplication applicationRead) {
+
+    CardFileData dataToCheck = fileToCheck.getSource();
+
+    if (fileToCheck.getSfi() < 0) {
+      addFinding(CheckFinding.Kind.SFI_UNDEFINED, -1, "SFI", null, null);
+      return;
+    }
+
+    currentSfi = dataToCheck.getSfi();
+
+    CompiledFile fileRead = applicationRead.getFileBySfi(fileToCheck.getSfi());
+
+    if (fileRead == null) {
+      addFinding(CheckFinding.Kind.FILE_NOT_FOUND, -1, null, null, null);
+      return;
+    }
+
+    CardFileData dataRead = fileRead.getSource();
+
+    logger.debug("Checking file with SFI ({})", dataToCheck.getSfi());
+
+    if (isMismatch(fileToCheck.getLid(), fileRead.getLid())) {
+      addValueMismatch("LID", dataToCheck.getLid(), dataRead.getLid());
+    }
+
+    if (isMismatch(fileToCheck.getEfType(), fileRead.getEfType())) {
+      addValueMismatch("EF Type", dataToCheck.getEfType(), dataRead.getEfType());
+    }
+
+    if (isMismatch(fileToCheck.getRecSize(), fileRead.getRecSize())) {
+      addValueMismatch("Record Size", dataToCheck.getRecSize(), dataRead.getRecSize());
+    }
+
+    if (isMismatch(fileToCheck.getNumRec(), fileRead.getNumRec())) {
+      addValueMismatch("Number of Records", dataToCheck.getNumRec(), dataRead.getNumRec());
+    }
+
+    checkAccessConditions(fileToCheck.getAccessConditions(), fileRead.getAccessConditions());
+
+    // Check simulated counter data ref?
+    if (fileToCheck.getDataRef() >= 0) {
+
+      if (fileRead.getDataRef() < 0) {
+        addFinding(CheckFinding.Kind.DATA_REF_NOT_PRESENT, -1, "DataRef", null, null);
+      } else {
+        checkDataRef(fileToCheck, fileRead);
+      }
+    }
+  }
+
+  private void addFlagFinding(String name, int flagToCheck, int flagRead) {
+    addFinding(
+        CheckFinding.Kind.FLAG_MISMATCH,
+        -1,
+        name,
+        String.valueOf(flagToCheck),
+        String.valueOf(flagRead));
+  }
+
+  private void checkApplicationType(
+      int applicationTypeToCheck,
+      int applicationTypeRead,
+      CardApplicationData dataToCheck,
+      CardApplicationData dataRead) {
+
+    if (applicationTypeToCheck < 0 || applicationTypeRead < 0) {
+      return;
+    }
+
+    if (applicationTypeToCheck >= 0x06 && applicationTypeToCheck <= 0x1F) {
+      if (isMismatch(applicationTypeToCheck, applicationTypeRead)) {
+        addValueMismatch(
+            "Application Type", dataToCheck.getApplicationType(), dataRead.getApplicationType());
+      }
+      return;
+    }
+
+    if ((applicationTypeToCheck & 0x01) != (applicationTypeRead & 0x01)) {
+      addFlagFinding(
+          "PIN configuration flag", applicationTypeToCheck & 0x01, applicationTypeRead & 0x01);
+    }
+
+    if ((applicationTypeToCheck & 0x02) != (applicationTypeRead & 0x02)) {
+      addFlagFinding(
+          "SV configuration flag", applicationTypeToCheck & 0x02, applicationTypeRead & 0x02);
+    }
+
+    if ((applicationTypeToCheck & 0x08) != (applicationTypeRead & 0x08)) {
+      addFlagFinding(
+          "Rev 3.2 mode support configuration flag",
+          applicationTypeToCheck & 0x08,
+          applicationTypeRead & 0x08);
+    }
+
+    if ((applicationTypeToCheck & 0x10) != (applicationTypeRead & 0x10)) {
+      addFlagFinding(
+          "Rev 3.3 PKI mode support configuration flag",
+          applicationTypeToCheck & 0x10,
+          applicationTypeRead & 0x10);
+    }
+  }
+
+  /**
+   * Checks the data of an application read on the card against the expected application.
+   *
+   * @param applicationToCheck The expected application, from the profile of the matcher.
+   * @param dataRead The application data read.
+   * @since 2.1.0
+   */
+  public void checkApplication(
+      CompiledApplication applicationToCheck, CardApplicationData dataRead) {
+    checkApplication(applicationToCheck, CompiledApplication.compile(dataRead));
+  }
+
+  /** Checks an application read on the card, already compiled to be checked against any profile. */
+  void checkApplication(
+      CompiledApplication applicationToCheck, CompiledApplication applicationRead) {
+
+    CardApplicationData dataToCheck = applicationToCheck.getSource();
+    CardApplicationData dataRead = applicationRead.getSource();
+
+    startApplication(applicationToCheck);
+    report.setCsnDec(dataRead.getCsnDec());
+
+    if (dataToCheck.getCalypsoRevision() != null
+        && !dataToCheck.getCalypsoRevision().equals(dataRead.getCalypsoRevision())) {
+      addFinding(
+          CheckFinding.Kind.VALUE_MISMATCH,
+          -1,
+          "Calypso Revision",
+          dataToCheck.getCalypsoRevision(),
+          dataRead.getCalypsoRevision());
+    }
+
+    if (isMismatch(applicationToCheck.getSessionModif(), applicationRead.getSessionModif())) {
+      addValueMismatch(
+          "Session Modifications", dataToCheck.getSessionModif(), dataRead.getSessionModif());
+    }
+
+    checkApplicationType(
+        applicationToCheck.getApplicationType(),
+        applicationRead.getApplicationType(),
+        dataToCheck,
+        dataRead);
+
+    if (isMismatch(
+        applicationToCheck.getApplicationSubtype(), applicationRead.getApplicationSubtype())) {
+      addValueMismatch(
+          "Application Subtype",
+          dataToCheck.getApplicationSubtype(),
+          dataRead.getApplicationSubtype());
+    }
+
+    checkAccessConditions(
+        applicationToCheck.getAccessConditions(), applicationRead.getAccessConditions());
+
+    if (isMismatch(applicationToCheck.getKif1(), applicationRead.getKif1())) {
+      addValueMismatch("KIF1", dataToCheck.getKif1(), dataRead.getKif1());
+    }
+    if (isMismatch(applicationToCheck.getKif2(), applicationRead.getKif2())) {
+      addValueMismatch("KIF2", dataToCheck.getKif2(), dataRead.getKif2());
+    }
+    if (isMismatch(applicationToCheck.getKif3(), applicationRead.getKif3())) {
+      addValueMismatch("KIF3", dataToCheck.getKif3(), dataRead.getKif3());
+    }
+    if (isMismatch(applicationToCheck.getKvc1(), applicationRead.getKvc1())) {
+      addValueMismatch("KVC1", dataToCheck.getKvc1(), dataRead.getKvc1());
+    }
+    if (isMismatch(applicationToCheck.getKvc2(), applicationRead.getKvc2())) {
+      addValueMismatch("KVC2", dataToCheck.getKvc2(), dataRead.getKvc2());
+    }
+    if (isMismatch(applicationToCheck.getKvc3(), applicationRead.getKvc3())) {
+      addValueMismatch("KVC3", dataToCheck.getKvc3(), dataRead.getKvc3());
+    }
+
+    if (isMismatch(applicationToCheck.getLid(), applicationRead.getLid())) {
+      addValueMismatch("LID", dataToCheck.getLid(), dataRead.getLid());
+    }
+
+    if (applicationToCheck.getFiles().size() != applicationRead.getFiles().size()) {
+      addFinding(
+          CheckFinding.Kind.FILE_COUNT_MISMATCH,
+          -1,
+          "Number of Files",
+          String.valueOf(applicationToCheck.getFiles().size()),
+          String.valueOf(applicationRead.getFiles().size()));
+    }
+
+    for (CompiledFile fileToCheck : applicationToCheck.getFiles()) {
+      currentSfi = null;
+      checkCardFileData(fileToCheck, applicationRead);
+    }
+    currentSfi = null;
+  }
+
+  private void startApplication(CompiledApplication applicationToCheck) {
+    currentAid = applicationToCheck.getAid();
+    currentSfi = null;
+    report.addCheckedAid(currentAid);
+  }
+
+  /**
+   * Reports that the expected application has not been found on the card.
+   *
+   * @param applicationToCheck The expected application, from the profile of the matcher.
+   * @since 2.1.0
+   */
+  public void applicationNotFound(CompiledApplication applicationToCheck) {
+    startApplication(applicationToCheck);
+    addFinding(CheckFinding.Kind.APPLICATION_NOT_FOUND, -1, null, null, null);
+  }
+
+  /**
+   * Reports that several applications have been found on the card for the expected AID, the
+   * application then not being checked.
+   *
+   * @param applicationToCheck The expected application, from the profile of the matcher.
+   * @param nbApplications The number of applications found.
+   * @since 2.1.0
+   */
+  public void multipleApplicationsFound(
+      CompiledApplication applicationToCheck, int nbApplications) {
+    startApplication(applicationToCheck);
+    addFinding(
+        CheckFinding.Kind.MULTIPLE_APPLICATIONS, -1, null, "1", String.valueOf(nbApplications));
+  }
+
+  /**
+   * Adds to the report the files whose DataRef has not been matched by the one of their linked
+   * file.
+   *
+   * <p>To be called once all the applications of the card have been checked.
+   *
+   * @since 2.1.0
+   */
+  public void checkDataRefs() {
+
+    for (int ordinal = 0; ordinal < profileMatcher.getNbFiles(); ordinal++) {
+
+      if (isWaitingForLinkedFile[ordinal] && !isReferenceFound[ordinal]) {
+        CardFileData cardFileData = profileMatcher.getFile(ordinal).getSource();
+        report.add(
+            new CheckFinding(
+                CheckFinding.Kind.DATA_REF_NOT_FOUND,
+                readDataRefAids[ordinal],
+                null,
+                cardFileData.getLid(),
+                -1,
+                "DataRef",
+                cardFileData.getDataRef(),
+                readDataRefFiles[ordinal].getDataRef(),
+                cardFileData.getDataRef()));
+      }
+    }
+  }
+
+  /**
+   * @return The report of the check, to be rendered once all the applications have been checked and
+   *     {@link #checkDataRefs()} called.
+   * @since 2.1.0
+   */
+  public CheckReport getReport() {
+    return report;
+  }
+}
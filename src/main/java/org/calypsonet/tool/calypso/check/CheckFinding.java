@@ -0,0 +1,260 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Difference found between the expected card structure and the one read on the card.
+ *
+ * <p>The message is only formatted when requested.
+ *
+ * @since 2.1.0
+ */
+public final class CheckFinding {
+
+  /**
+   * Severity of a finding.
+   *
+   * @since 2.1.0
+   */
+  public enum Severity {
+    /** The card doesn't match the expected structure. */
+    ERROR,
+    /** The expected structure itself is invalid, the corresponding check is not done. */
+    WARNING
+  }
+
+  /**
+   * Kind of finding, with its message pattern.
+   *
+   * @since 2.1.0
+   */
+  public enum Kind {
+    APPLICATION_NOT_FOUND(Severity.ERROR, "Application not present in card!"),
+    MULTIPLE_APPLICATIONS(
+        Severity.ERROR, "Found ({}) applications for the given AID. Aborting application analysis"),
+    VALUE_MISMATCH(Severity.ERROR, "Expected {} to be [{}] and found [{}]."),
+    FLAG_MISMATCH(Severity.ERROR, "Incorrect value for {}. Expected ({}) and got ({})."),
+    ACCESS_CONDITION_MISMATCH(
+        Severity.ERROR, "Group {}:: Expected Access Condition to be [{}] and found [{}]."),
+    KEY_LEVEL_UNDEFINED(
+        Severity.WARNING,
+        "Group {}:: Structure to check error. Access Condition [{}] requires an associated Key Level."),
+    KEY_LEVEL_MISMATCH(Severity.ERROR, "Group {}:: Expected Key Level to be [{}] and found [{}]."),
+    FILE_COUNT_MISMATCH(
+        Severity.ERROR, "Expected application to have ({}) file(s) and found ({})."),
+    SFI_UNDEFINED(
+        Severity.WARNING, "Invalid structure to check. File doesn't have an SFI defined."),
+    FILE_NOT_FOUND(Severity.ERROR, "No matching file found for SFI ({})"),
+    DATA_REF_NOT_PRESENT(Severity.ERROR, "DataRef field not present in the card!"),
+    DATA_REF_MISMATCH(
+        Severity.ERROR,
+        "DataRef for file {} [{}] doesn't match the value of the linked file {} [{}]."),
+    DATA_REF_NOT_FOUND(
+        Severity.ERROR, "No/Incorrect data ref found for file {}. Should be linked with file {}");
+
+    private final Severity severity;
+
+    private final String messagePattern;
+
+    Kind(Severity severity, String messagePattern) {
+      this.severity = severity;
+      this.messagePattern = messagePattern;
+    }
+
+    public Severity getSeverity() {
+      return severity;
+    }
+
+    /**
+     * @return The message pattern, in the SLF4J format.
+     * @since 2.1.0
+     */
+    public String getMessagePattern() {
+      return messagePattern;
+    }
+  }
+
+  private final Kind kind;
+
+  private final String aid;
+
+  private final String sfi;
+
+  private final String lid;
+
+  private final int group;
+
+  private final String field;
+
+  private final String expected;
+
+  private final String actual;
+
+  private final String linkedLid;
+
+  CheckFinding(
+      Kind kind,
+      String aid,
+      String sfi,
+      String lid,
+      int group,
+      String field,
+      String expected,
+      String actual,
+      String linkedLid) {
+    this.kind = kind;
+    this.aid = aid;
+    this.sfi = sfi;
+    this.lid = lid;
+    this.group = group;
+    this.field = field;
+    this.expected = expected;
+    this.actual = actual;
+    this.linkedLid = linkedLid;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public Severity getSeverity() {
+    return kind.getSeverity();
+  }
+
+  /**
+   * @return The AID of the application concerned, as an hexadecimal string.
+   * @since 2.1.0
+   */
+  public String getAid() {
+    return aid;
+  }
+
+  /**
+   * @return The SFI of the file concerned, null if the finding doesn't concern a file identified by
+   *     its SFI.
+   * @since 2.1.0
+   */
+  public String getSfi() {
+    return sfi;
+  }
+
+  /**
+   * @return The LID of the file concerned, null if the finding doesn't concern a file identified by
+   *     its LID.
+   * @since 2.1.0
+   */
+  public String getLid() {
+    return lid;
+  }
+
+  /**
+   * @return The access condition group concerned, -1 if not applicable.
+   * @since 2.1.0
+   */
+  public int getGroup() {
+    return group;
+  }
+
+  /**
+   * @return The name of the field concerned, null if not applicable.
+   * @since 2.1.0
+   */
+  public String getField() {
+    return field;
+  }
+
+  public String getExpected() {
+    return expected;
+  }
+
+  public String getActual() {
+    return actual;
+  }
+
+  /**
+   * @return The LID of the file linked by DataRef, null if not applicable.
+   * @since 2.1.0
+   */
+  public String getLinkedLid() {
+    return linkedLid;
+  }
+
+  /**
+   * Builds the path of the element concerned, e.g. {@code 315449432E49434131/SFI 07/Group 1}.
+   *
+   * @return A not empty string.
+   * @since 2.1.0
+   */
+  public String getPath() {
+
+    StringBuilder path = new StringBuilder();
+    path.append(aid);
+    if (sfi != null) {
+      path.append("/SFI ").append(sfi);
+    } else if (lid != null) {
+      path.append("/LID ").append(lid);
+    }
+    if (group >= 0) {
+      path.append("/Group ").append(group);
+    }
+    if (field != null) {
+      path.append('/').append(field);
+    }
+    return path.toString();
+  }
+
+  /**
+   * @return The arguments of the message pattern of the kind of the finding.
+   * @since 2.1.0
+   */
+  public Object[] getMessageArguments() {
+
+    switch (kind) {
+      case MULTIPLE_APPLICATIONS:
+        return new Object[] {actual};
+      case FILE_NOT_FOUND:
+        return new Object[] {sfi};
+      case VALUE_MISMATCH:
+      case FLAG_MISMATCH:
+        return new Object[] {field, expected, actual};
+      case ACCESS_CONDITION_MISMATCH:
+      case KEY_LEVEL_MISMATCH:
+        return new Object[] {group, expected, actual};
+      case KEY_LEVEL_UNDEFINED:
+        return new Object[] {group, expected};
+      case FILE_COUNT_MISMATCH:
+        return new Object[] {expected, actual};
+      case DATA_REF_MISMATCH:
+        return new Object[] {lid, actual, linkedLid, expected};
+      case DATA_REF_NOT_FOUND:
+        return new Object[] {lid, linkedLid};
+      default:
+        return new Object[0];
+    }
+  }
+
+  /**
+   * @return The formatted message.
+   * @since 2.1.0
+   */
+  public String getMessage() {
+    return MessageFormatter.arrayFormat(kind.getMessagePattern(), getMessageArguments())
+        .getMessage();
+  }
+
+  @Override
+  public String toString() {
+    return getSeverity() + " " + getPath() + ": " + getMessage();
+  }
+}
@@ -0,0 +1,309 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.slf4j.Logger;
+
+/**
+ * Result of the check of a card: the checked applications and the findings, in the order they were
+ * found.
+ *
+ * <p>The findings are only formatted when the report is rendered, as text with {@link
+ * #print(Logger)}, as JSON with {@link #writeJson(Writer)} or as JUnit XML with {@link
+ * #writeJUnitXml(Writer)}.
+ *
+ * @since 2.1.0
+ */
+public final class CheckReport {
+
+  private static final String DATA_REF_TEST_CASE = "DataRef";
+
+  private final List<String> checkedAids = new ArrayList<>();
+
+  private final List<CheckFinding> findings = new ArrayList<>();
+
+  private String profileName;
+
+  private long csnDec = -1;
+
+  private int nbErrors;
+
+  private int nbWarnings;
+
+  CheckReport() {}
+
+  void addCheckedAid(String aid) {
+    checkedAids.add(aid);
+  }
+
+  void setProfileName(String profileName) {
+    this.profileName = profileName;
+  }
+
+  void setCsnDec(long csnDec) {
+    this.csnDec = csnDec;
+  }
+
+  void add(CheckFinding finding) {
+    findings.add(finding);
+    if (finding.getSeverity() == CheckFinding.Severity.ERROR) {
+      nbErrors++;
+    } else {
+      nbWarnings++;
+    }
+  }
+
+  /**
+   * @return The AIDs of the applications of the profile, as hexadecimal strings.
+   * @since 2.1.0
+   */
+  public List<String> getCheckedAids() {
+    return Collections.unmodifiableList(checkedAids);
+  }
+
+  public List<CheckFinding> getFindings() {
+    return Collections.unmodifiableList(findings);
+  }
+
+  /**
+   * @return The name of the profile the card has been checked against.
+   * @since 2.1.0
+   */
+  public String getProfileName() {
+    return profileName;
+  }
+
+  /**
+   * @return The serial number of the card, -1 if no application has been found on the card.
+   * @since 2.1.0
+   */
+  public long getCsnDec() {
+    return csnDec;
+  }
+
+  public int getNbErrors() {
+    return nbErrors;
+  }
+
+  public int getNbWarnings() {
+    return nbWarnings;
+  }
+
+  /**
+   * @return True if the card matches the expected structure.
+   * @since 2.1.0
+   */
+  public boolean isSuccessful() {
+    return nbErrors == 0;
+  }
+
+  private static boolean isDataRefFinding(CheckFinding finding) {
+    return finding.getKind() == CheckFinding.Kind.DATA_REF_NOT_FOUND;
+  }
+
+  /**
+   * Prints the report, application by application.
+   *
+   * @param logger The logger to use.
+   * @since 2.1.0
+   */
+  public void print(Logger logger) {
+
+    for (String aid : checkedAids) {
+
+      logger.info(ToolUtils.SEPARATOR_LINE);
+      logger.info("Checking Application: {}", aid);
+
+      for (CheckFinding finding : findings) {
+        if (belongsTo(finding, aid)) {
+          logger.info(finding.getKind().getMessagePattern(), finding.getMessageArguments());
+        }
+      }
+    }
+
+    logger.info(ToolUtils.SEPARATOR_LINE);
+
+    for (CheckFinding finding : findings) {
+      if (belongsTo(finding, null)) {
+        logger.info(finding.getKind().getMessagePattern(), finding.getMessageArguments());
+      }
+    }
+
+    logger.info(ToolUtils.SEPARATOR_LINE);
+    logger.info("= Result:: {} error(s), {} warning(s)", nbErrors, nbWarnings);
+    logger.info(ToolUtils.SEPARATOR_LINE);
+  }
+
+  /**
+   * Writes the report as a JSON document.
+   *
+   * @param writer The destination, not closed by this method.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public void writeJson(Writer writer) throws IOException {
+
+    JsonWriter jsonWriter = new JsonWriter(writer);
+    jsonWriter.setIndent("  ");
+
+    jsonWriter.beginObject();
+    jsonWriter.name("csnDec").value(csnDec);
+    if (profileName != null) {
+      jsonWriter.name("profile").value(profileName);
+    }
+    jsonWriter.name("successful").value(isSuccessful());
+    jsonWriter.name("nbErrors").value(nbErrors);
+    jsonWriter.name("nbWarnings").value(nbWarnings);
+    jsonWriter.name("checkedAids").beginArray();
+    for (String aid : checkedAids) {
+      jsonWriter.value(aid);
+    }
+    jsonWriter.endArray();
+    jsonWriter.name("findings").beginArray();
+    for (CheckFinding finding : findings) {
+      jsonWriter.beginObject();
+      jsonWriter.name("kind").value(finding.getKind().name());
+      jsonWriter.name("severity").value(finding.getSeverity().name());
+      jsonWriter.name("path").value(finding.getPath());
+      jsonWriter.name("aid").value(finding.getAid());
+      if (finding.getSfi() != null) {
+        jsonWriter.name("sfi").value(finding.getSfi());
+      }
+      if (finding.getLid() != null) {
+        jsonWriter.name("lid").value(finding.getLid());
+      }
+      if (finding.getGroup() >= 0) {
+        jsonWriter.name("group").value(finding.getGroup());
+      }
+      if (finding.getField() != null) {
+        jsonWriter.name("field").value(finding.getField());
+      }
+      if (finding.getExpected() != null) {
+        jsonWriter.name("expected").value(finding.getExpected());
+      }
+      if (finding.getActual() != null) {
+        jsonWriter.name("actual").value(finding.getActual());
+      }
+      if (finding.getLinkedLid() != null) {
+        jsonWriter.name("linkedLid").value(finding.getLinkedLid());
+      }
+      jsonWriter.name("message").value(finding.getMessage());
+      jsonWriter.endObject();
+    }
+    jsonWriter.endArray();
+    jsonWriter.endObject();
+    jsonWriter.flush();
+  }
+
+  /**
+   * Writes the report as a JUnit XML test suite, with one test case per checked application plus
+   * one for the DataRef links between files.
+   *
+   * @param writer The destination, not closed by this method.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public void writeJUnitXml(Writer writer) throws IOException {
+
+    try {
+      XMLStreamWriter xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+
+      xmlWriter.writeStartDocument("1.0");
+      xmlWriter.writeCharacters("\n");
+      xmlWriter.writeStartElement("testsuite");
+      xmlWriter.writeAttribute("name", "Card " + csnDec);
+      xmlWriter.writeAttribute("tests", String.valueOf(checkedAids.size() + 1));
+      xmlWriter.writeAttribute("failures", String.valueOf(getNbFailedTestCases()));
+      xmlWriter.writeAttribute("errors", "0");
+      xmlWriter.writeCharacters("\n");
+
+      for (String aid : checkedAids) {
+        writeTestCase(xmlWriter, aid);
+      }
+      writeTestCase(xmlWriter, null);
+
+      xmlWriter.writeEndElement();
+      xmlWriter.writeCharacters("\n");
+      xmlWriter.writeEndDocument();
+      xmlWriter.flush();
+
+    } catch (XMLStreamException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  private static boolean belongsTo(CheckFinding finding, String aid) {
+    return aid == null
+        ? isDataRefFinding(finding)
+        : aid.equals(finding.getAid()) && !isDataRefFinding(finding);
+  }
+
+  private int getNbFailedTestCases() {
+
+    int nbFailedTestCases = 0;
+    List<String> testCases = new ArrayList<>(checkedAids);
+    testCases.add(null);
+    for (String aid : testCases) {
+      for (CheckFinding finding : findings) {
+        if (belongsTo(finding, aid) && finding.getSeverity() == CheckFinding.Severity.ERROR) {
+          nbFailedTestCases++;
+          break;
+        }
+      }
+    }
+    return nbFailedTestCases;
+  }
+
+  /** Writes the test case of an application, or the DataRef one if the AID is null. */
+  private void writeTestCase(XMLStreamWriter xmlWriter, String aid) throws XMLStreamException {
+
+    xmlWriter.writeCharacters("  ");
+    xmlWriter.writeStartElement("testcase");
+    xmlWriter.writeAttribute("classname", "Card " + csnDec);
+    xmlWriter.writeAttribute("name", aid == null ? DATA_REF_TEST_CASE : aid);
+
+    StringBuilder warnings = new StringBuilder();
+    for (CheckFinding finding : findings) {
+      if (!belongsTo(finding, aid)) {
+        continue;
+      }
+      if (finding.getSeverity() == CheckFinding.Severity.ERROR) {
+        xmlWriter.writeCharacters("\n    ");
+        xmlWriter.writeEmptyElement("failure");
+        xmlWriter.writeAttribute("type", finding.getKind().name());
+        xmlWriter.writeAttribute("message", finding.getPath() + ": " + finding.getMessage());
+      } else {
+        warnings.append(finding).append('\n');
+      }
+    }
+    if (warnings.length() > 0) {
+      xmlWriter.writeCharacters("\n    ");
+      xmlWriter.writeStartElement("system-out");
+      xmlWriter.writeCharacters(warnings.toString());
+      xmlWriter.writeEndElement();
+    }
+
+    xmlWriter.writeCharacters("\n  ");
+    xmlWriter.writeEndElement();
+    xmlWriter.writeCharacters("\n");
+  }
+}
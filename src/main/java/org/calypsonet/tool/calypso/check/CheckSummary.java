@@ -0,0 +1,155 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.slf4j.Logger;
+
+/**
+ * Aggregate result of the check of a set of cards.
+ *
+ * <p>The reports can be added concurrently by several threads.
+ *
+ * @since 2.1.0
+ */
+public final class CheckSummary {
+
+  private final LongAdder nbCards = new LongAdder();
+
+  private final LongAdder nbSuccessfulCards = new LongAdder();
+
+  private final LongAdder nbUnreadableCards = new LongAdder();
+
+  private final LongAdder nbErrors = new LongAdder();
+
+  private final LongAdder nbWarnings = new LongAdder();
+
+  private final Map<CheckFinding.Kind, LongAdder> nbFindingsByKind =
+      new EnumMap<>(CheckFinding.Kind.class);
+
+  private final Map<String, LongAdder> nbCardsByProfile = new ConcurrentHashMap<>();
+
+  public CheckSummary() {
+    for (CheckFinding.Kind kind : CheckFinding.Kind.values()) {
+      nbFindingsByKind.put(kind, new LongAdder());
+    }
+  }
+
+  /**
+   * Adds the report of a card.
+   *
+   * @param checkReport The report.
+   * @since 2.1.0
+   */
+  public void add(CheckReport checkReport) {
+    nbCards.increment();
+    if (checkReport.isSuccessful()) {
+      nbSuccessfulCards.increment();
+    }
+    nbErrors.add(checkReport.getNbErrors());
+    nbWarnings.add(checkReport.getNbWarnings());
+    for (CheckFinding finding : checkReport.getFindings()) {
+      nbFindingsByKind.get(finding.getKind()).increment();
+    }
+    if (checkReport.getProfileName() != null) {
+      nbCardsByProfile
+          .computeIfAbsent(checkReport.getProfileName(), name -> new LongAdder())
+          .increment();
+    }
+  }
+
+  /**
+   * Counts a card whose data could not be obtained.
+   *
+   * @since 2.1.0
+   */
+  public void addUnreadable() {
+    nbUnreadableCards.increment();
+  }
+
+  /**
+   * @return The number of cards checked, not including the unreadable ones.
+   * @since 2.1.0
+   */
+  public long getNbCards() {
+    return nbCards.sum();
+  }
+
+  public long getNbSuccessfulCards() {
+    return nbSuccessfulCards.sum();
+  }
+
+  public long getNbUnreadableCards() {
+    return nbUnreadableCards.sum();
+  }
+
+  public long getNbErrors() {
+    return nbErrors.sum();
+  }
+
+  public long getNbWarnings() {
+    return nbWarnings.sum();
+  }
+
+  public long getNbFindings(CheckFinding.Kind kind) {
+    return nbFindingsByKind.get(kind).sum();
+  }
+
+  /**
+   * @param profileName The name of a profile.
+   * @return The number of cards checked against the profile, e.g. identified as matching it.
+   * @since 2.1.0
+   */
+  public long getNbCards(String profileName) {
+    LongAdder nbProfileCards = nbCardsByProfile.get(profileName);
+    return nbProfileCards != null ? nbProfileCards.sum() : 0;
+  }
+
+  /**
+   * Prints the summary.
+   *
+   * @param logger The logger to use.
+   * @since 2.1.0
+   */
+  public void print(Logger logger) {
+
+    logger.info(ToolUtils.SEPARATOR_LINE);
+    logger.info("= Checked cards:: {}", getNbCards());
+    logger.info("= Successful cards:: {}", getNbSuccessfulCards());
+    logger.info("= Failed cards:: {}", getNbCards() - getNbSuccessfulCards());
+    logger.info("= Unreadable cards:: {}", getNbUnreadableCards());
+    logger.info("= Errors:: {}", getNbErrors());
+    logger.info("= Warnings:: {}", getNbWarnings());
+
+    for (CheckFinding.Kind kind : CheckFinding.Kind.values()) {
+      long nbFindings = getNbFindings(kind);
+      if (nbFindings != 0) {
+        logger.info("=   {}:: {}", kind, nbFindings);
+      }
+    }
+
+    // Only informative when the cards have been identified among several profiles
+    if (nbCardsByProfile.size() > 1) {
+      logger.info("= Cards by profile::");
+      for (Map.Entry<String, LongAdder> entry : new TreeMap<>(nbCardsByProfile).entrySet()) {
+        logger.info("=   {}:: {}", entry.getKey(), entry.getValue().sum());
+      }
+    }
+
+    logger.info(ToolUtils.SEPARATOR_LINE);
+  }
+}
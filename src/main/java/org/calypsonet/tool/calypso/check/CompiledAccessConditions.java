@@ -0,0 +1,116 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import org.calypsonet.tool.calypso.carddata.AccessConditions;
+
+/**
+ * Access conditions of a DF or an EF packed into ints, one byte per group (group 0 in the most
+ * significant byte).
+ *
+ * @since 2.1.0
+ */
+final class CompiledAccessConditions {
+
+  static final int NB_GROUPS = 4;
+
+  private final AccessConditions.AccessCondition[] groups;
+
+  /** Access conditions. */
+  private final int accessConditions;
+
+  /** Key levels. */
+  private final int keyLevels;
+
+  /** 0xFF for each group having an access condition. */
+  private final int accessConditionMask;
+
+  /** 0xFF for each group whose access condition requires a key level and having one. */
+  private final int keyLevelMask;
+
+  /** Bit i set if the access condition of group i requires a key level which is missing. */
+  private final int missingKeyLevelGroups;
+
+  CompiledAccessConditions(AccessConditions source) {
+
+    groups =
+        new AccessConditions.AccessCondition[] {
+          source.getGroup0(), source.getGroup1(), source.getGroup2(), source.getGroup3()
+        };
+
+    int packedAccessConditions = 0;
+    int packedKeyLevels = 0;
+    int packedAccessConditionMask = 0;
+    int packedKeyLevelMask = 0;
+    int missingKeyLevels = 0;
+
+    for (int i = 0; i < NB_GROUPS; i++) {
+      int shift = (NB_GROUPS - 1 - i) * 8;
+      int accessCondition = groups[i].getAccessConditionValue();
+      int keyLevel = groups[i].getKeyLevelValue();
+      if (accessCondition >= 0) {
+        packedAccessConditions |= (accessCondition & 0xFF) << shift;
+        packedAccessConditionMask |= 0xFF << shift;
+      }
+      if (isKeyLevelRequired(accessCondition)) {
+        if (keyLevel >= 0) {
+          packedKeyLevels |= (keyLevel & 0xFF) << shift;
+          packedKeyLevelMask |= 0xFF << shift;
+        } else {
+          missingKeyLevels |= 1 << i;
+        }
+      } else if (keyLevel >= 0) {
+        packedKeyLevels |= (keyLevel & 0xFF) << shift;
+      }
+    }
+
+    accessConditions = packedAccessConditions;
+    keyLevels = packedKeyLevels;
+    accessConditionMask = packedAccessConditionMask;
+    keyLevelMask = packedKeyLevelMask;
+    missingKeyLevelGroups = missingKeyLevels;
+  }
+
+  private static boolean isKeyLevelRequired(int accessCondition) {
+    return accessCondition == 0x10 || accessCondition == 0x14 || accessCondition == 0x15;
+  }
+
+  /**
+   * Tells if the provided access conditions match these expected ones.
+   *
+   * @param dataRead The access conditions read.
+   * @return False if at least one mismatch has to be reported.
+   */
+  boolean matches(CompiledAccessConditions dataRead) {
+    return missingKeyLevelGroups == 0
+        && ((accessConditions ^ dataRead.accessConditions) & accessConditionMask) == 0
+        && ((keyLevels ^ dataRead.keyLevels) & keyLevelMask) == 0;
+  }
+
+  AccessConditions.AccessCondition getGroup(int groupNumber) {
+    return groups[groupNumber];
+  }
+
+  boolean isAccessConditionMismatch(int groupNumber, CompiledAccessConditions dataRead) {
+    int mask = 0xFF << ((NB_GROUPS - 1 - groupNumber) * 8);
+    return ((accessConditions ^ dataRead.accessConditions) & accessConditionMask & mask) != 0;
+  }
+
+  boolean isKeyLevelMissing(int groupNumber) {
+    return (missingKeyLevelGroups & (1 << groupNumber)) != 0;
+  }
+
+  boolean isKeyLevelMismatch(int groupNumber, CompiledAccessConditions dataRead) {
+    int mask = 0xFF << ((NB_GROUPS - 1 - groupNumber) * 8);
+    return ((keyLevels ^ dataRead.keyLevels) & keyLevelMask & mask) != 0;
+  }
+}
@@ -0,0 +1,201 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardFileData;
+import org.eclipse.keyple.core.util.HexUtil;
+
+/**
+ * Application data with its hexadecimal fields parsed into ints, -1 standing for an undefined
+ * field, and its files indexed by SFI.
+ *
+ * @since 2.1.0
+ */
+public final class CompiledApplication {
+
+  private static final int NB_SFI = 256;
+
+  private final CardApplicationData source;
+
+  private final String aid;
+
+  private final int sessionModif;
+
+  private final int applicationType;
+
+  private final int applicationSubtype;
+
+  private final int kif1;
+
+  private final int kif2;
+
+  private final int kif3;
+
+  private final int kvc1;
+
+  private final int kvc2;
+
+  private final int kvc3;
+
+  private final int lid;
+
+  private final CompiledAccessConditions accessConditions;
+
+  private final List<CompiledFile> files;
+
+  private final CompiledFile[] filesBySfi;
+
+  private final List<Short> expectedLids;
+
+  /**
+   * Constructor.
+   *
+   * @param source The application data.
+   * @param firstFileOrdinal The ordinal of the first file of the application in the whole profile.
+   * @param linkedFileOrdinals The linked file ordinals of each file of the whole profile, or null
+   *     if DataRefs are not resolved.
+   */
+  CompiledApplication(
+      CardApplicationData source, int firstFileOrdinal, int[][] linkedFileOrdinals) {
+
+    this.source = source;
+
+    aid = source.getAid() == null ? null : HexUtil.toHex(source.getAid());
+
+    sessionModif = source.getSessionModifValue();
+    applicationType = source.getApplicationTypeValue();
+    applicationSubtype = source.getApplicationSubtypeValue();
+    kif1 = source.getKif1Value();
+    kif2 = source.getKif2Value();
+    kif3 = source.getKif3Value();
+    kvc1 = source.getKvc1Value();
+    kvc2 = source.getKvc2Value();
+    kvc3 = source.getKvc3Value();
+    lid = source.getLidValue();
+    accessConditions = new CompiledAccessConditions(source.getAccessConditions());
+
+    List<CompiledFile> compiledFiles = new ArrayList<>(source.getFileList().size());
+    List<Short> lids = new ArrayList<>(source.getFileList().size());
+    filesBySfi = new CompiledFile[NB_SFI];
+
+    int ordinal = firstFileOrdinal;
+    for (CardFileData cardFileData : source.getFileList()) {
+      if (cardFileData == null) {
+        continue;
+      }
+      CompiledFile compiledFile =
+          new CompiledFile(
+              cardFileData,
+              ordinal,
+              linkedFileOrdinals == null ? null : linkedFileOrdinals[ordinal]);
+      compiledFiles.add(compiledFile);
+      // The first file having a given SFI is the one retained
+      if (compiledFile.getSfi() >= 0 && filesBySfi[compiledFile.getSfi() & 0xFF] == null) {
+        filesBySfi[compiledFile.getSfi() & 0xFF] = compiledFile;
+      }
+      if (compiledFile.getLid() >= 0) {
+        lids.add((short) compiledFile.getLid());
+      }
+      ordinal++;
+    }
+
+    files = Collections.unmodifiableList(compiledFiles);
+    expectedLids = Collections.unmodifiableList(lids);
+  }
+
+  /**
+   * Compiles the application data read from a card.
+   *
+   * @param dataRead The application data.
+   * @return A new instance.
+   * @since 2.1.0
+   */
+  public static CompiledApplication compile(CardApplicationData dataRead) {
+    return new CompiledApplication(dataRead, 0, null);
+  }
+
+  public CardApplicationData getSource() {
+    return source;
+  }
+
+  /**
+   * @return The AID as an hexadecimal string.
+   * @since 2.1.0
+   */
+  public String getAid() {
+    return aid;
+  }
+
+  /**
+   * @return The LIDs of the files of the application.
+   * @since 2.1.0
+   */
+  public List<Short> getExpectedLids() {
+    return expectedLids;
+  }
+
+  int getSessionModif() {
+    return sessionModif;
+  }
+
+  int getApplicationType() {
+    return applicationType;
+  }
+
+  int getApplicationSubtype() {
+    return applicationSubtype;
+  }
+
+  int getKif1() {
+    return kif1;
+  }
+
+  int getKif2() {
+    return kif2;
+  }
+
+  int getKif3() {
+    return kif3;
+  }
+
+  int getKvc1() {
+    return kvc1;
+  }
+
+  int getKvc2() {
+    return kvc2;
+  }
+
+  int getKvc3() {
+    return kvc3;
+  }
+
+  int getLid() {
+    return lid;
+  }
+
+  CompiledAccessConditions getAccessConditions() {
+    return accessConditions;
+  }
+
+  List<CompiledFile> getFiles() {
+    return files;
+  }
+
+  CompiledFile getFileBySfi(int sfi) {
+    return sfi < 0 ? null : filesBySfi[sfi & 0xFF];
+  }
+}
@@ -0,0 +1,105 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import org.calypsonet.tool.calypso.carddata.CardFileData;
+
+/**
+ * File data with its hexadecimal fields parsed into ints, -1 standing for an undefined field.
+ *
+ * @since 2.1.0
+ */
+final class CompiledFile {
+
+  private static final int[] NO_LINKED_FILES = new int[0];
+
+  private final CardFileData source;
+
+  private final int ordinal;
+
+  private final int sfi;
+
+  private final int lid;
+
+  private final int efType;
+
+  private final int recSize;
+
+  private final int numRec;
+
+  private final int dataRef;
+
+  private final CompiledAccessConditions accessConditions;
+
+  private final int[] linkedFileOrdinals;
+
+  /**
+   * Constructor.
+   *
+   * @param source The file data.
+   * @param ordinal The index of the file in the whole profile.
+   * @param linkedFileOrdinals The ordinals of the previous files of the profile whose DataRef
+   *     designates this file, in the order they are checked.
+   */
+  CompiledFile(CardFileData source, int ordinal, int[] linkedFileOrdinals) {
+    this.source = source;
+    this.ordinal = ordinal;
+    sfi = source.getSfiValue();
+    lid = source.getLidValue();
+    efType = source.getEfTypeValue();
+    recSize = source.getRecSizeValue();
+    numRec = source.getNumRecValue();
+    dataRef = source.getDataRefValue();
+    accessConditions = new CompiledAccessConditions(source.getAccessConditions());
+    this.linkedFileOrdinals = linkedFileOrdinals == null ? NO_LINKED_FILES : linkedFileOrdinals;
+  }
+
+  CardFileData getSource() {
+    return source;
+  }
+
+  int getOrdinal() {
+    return ordinal;
+  }
+
+  int getSfi() {
+    return sfi;
+  }
+
+  int getLid() {
+    return lid;
+  }
+
+  int getEfType() {
+    return efType;
+  }
+
+  int getRecSize() {
+    return recSize;
+  }
+
+  int getNumRec() {
+    return numRec;
+  }
+
+  int getDataRef() {
+    return dataRef;
+  }
+
+  CompiledAccessConditions getAccessConditions() {
+    return accessConditions;
+  }
+
+  int[] getLinkedFileOrdinals() {
+    return linkedFileOrdinals;
+  }
+}
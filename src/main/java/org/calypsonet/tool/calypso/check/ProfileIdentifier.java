@@ -0,0 +1,408 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+
+/**
+ * Identifies the profile a card matches best among a set of profiles.
+ *
+ * <p>The card is checked against the profiles and the one with the lowest score is retained, the
+ * score being the number of errors of the check plus the number of applications of the card that
+ * the profile does not expect; the equally scored profiles are ranked by number of warnings. An
+ * expected application missing on the card, or an application of the card that the profile does not
+ * expect, weighs as much as its files, as if each of them was reported missing, so that a profile
+ * does not win only because it expects fewer applications. The profiles expecting none of the
+ * applications of the card are not retained.
+ *
+ * <p>To avoid checking every profile, the profiles are indexed by the AID of their expected
+ * applications, and a lower bound of the score of each profile is computed from a few
+ * discriminating features of its expected applications: their presence on the card, their type,
+ * subtype and number of files, and the SFIs of their files. The profiles are then checked in
+ * parallel by increasing lower bound, until the bound exceeds the score of the best match, which
+ * gives the same result as checking all the profiles.
+ *
+ * <p>An instance is immutable and can be shared between threads.
+ *
+ * @since 2.1.0
+ */
+public final class ProfileIdentifier {
+
+  /** Application type values checked as a whole, the other values being checked flag by flag. */
+  private static final int MIN_PLAIN_APPLICATION_TYPE = 0x06;
+
+  private static final int MAX_PLAIN_APPLICATION_TYPE = 0x1F;
+
+  /** Flags of the application type checked separately: PIN, SV, Rev 3.2 and PKI modes. */
+  private static final int APPLICATION_TYPE_FLAGS = 0x1B;
+
+  /**
+   * Best match of a card.
+   *
+   * @since 2.1.0
+   */
+  public static final class Identification {
+
+    private final ProfileMatcher profileMatcher;
+
+    private final CheckReport report;
+
+    private final int nbUnexpectedApplications;
+
+    private final int nbCheckedProfiles;
+
+    private final int nbProfiles;
+
+    private Identification(
+        ProfileMatcher profileMatcher,
+        CheckReport report,
+        int nbUnexpectedApplications,
+        int nbCheckedProfiles,
+        int nbProfiles) {
+      this.profileMatcher = profileMatcher;
+      this.report = report;
+      this.nbUnexpectedApplications = nbUnexpectedApplications;
+      this.nbCheckedProfiles = nbCheckedProfiles;
+      this.nbProfiles = nbProfiles;
+    }
+
+    /**
+     * @return The profile the card matches best.
+     * @since 2.1.0
+     */
+    public ProfileMatcher getProfileMatcher() {
+      return profileMatcher;
+    }
+
+    /**
+     * @return The report of the check of the card against the profile, i.e. the differences between
+     *     the card and the profile.
+     * @since 2.1.0
+     */
+    public CheckReport getReport() {
+      return report;
+    }
+
+    /**
+     * @return The number of applications of the card whose AID matches none of the applications
+     *     expected by the profile.
+     * @since 2.1.0
+     */
+    public int getNbUnexpectedApplications() {
+      return nbUnexpectedApplications;
+    }
+
+    /**
+     * @return The number of profiles the card has actually been checked against.
+     * @since 2.1.0
+     */
+    public int getNbCheckedProfiles() {
+      return nbCheckedProfiles;
+    }
+
+    /**
+     * @return The number of profiles the card has been identified among.
+     * @since 2.1.0
+     */
+    public int getNbProfiles() {
+      return nbProfiles;
+    }
+  }
+
+  /** Profile being identified, with the lower bound of its score. */
+  private static final class Candidate {
+
+    private final ProfileMatcher profileMatcher;
+
+    private final int order;
+
+    /** Applications of the card matching an expected application. */
+    private final BitSet expectedApplicationsRead = new BitSet();
+
+    private int nbUnexpectedApplications;
+
+    /** Weight of the missing expected applications, beyond the error reported for each of them. */
+    private int missingApplicationsPenalty;
+
+    private int unexpectedApplicationsWeight;
+
+    private int minScore;
+
+    private Candidate(ProfileMatcher profileMatcher, int order) {
+      this.profileMatcher = profileMatcher;
+      this.order = order;
+    }
+  }
+
+  /** Expected application of a profile. */
+  private static final class IndexEntry {
+
+    private final int profileOrder;
+
+    private final CompiledApplication application;
+
+    private IndexEntry(int profileOrder, CompiledApplication application) {
+      this.profileOrder = profileOrder;
+      this.application = application;
+    }
+  }
+
+  private static final Comparator<Candidate> CANDIDATE_COMPARATOR =
+      Comparator.<Candidate>comparingInt(candidate -> candidate.minScore)
+          .thenComparingInt(candidate -> candidate.order);
+
+  private final List<ProfileMatcher> profiles;
+
+  /** Expected applications by AID. */
+  private final Map<String, List<IndexEntry>> applicationsByAid;
+
+  /**
+   * Constructor.
+   *
+   * @param profiles The profiles, in the order in which the equally matching profiles are
+   *     preferred.
+   * @since 2.1.0
+   */
+  public ProfileIdentifier(Collection<ProfileMatcher> profiles) {
+    this.profiles = Collections.unmodifiableList(new ArrayList<>(profiles));
+    applicationsByAid = new HashMap<>();
+    for (int order = 0; order < this.profiles.size(); order++) {
+      for (CompiledApplication application : this.profiles.get(order).getApplications()) {
+        if (application.getAid() != null) {
+          applicationsByAid
+              .computeIfAbsent(application.getAid(), aid -> new ArrayList<>())
+              .add(new IndexEntry(order, application));
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The profiles, in the order given at construction.
+   * @since 2.1.0
+   */
+  public List<ProfileMatcher> getProfiles() {
+    return profiles;
+  }
+
+  /**
+   * Identifies the profile matched best by card data previously read, the applications whose AID
+   * starts with an expected one being retained as the card selection would do.
+   *
+   * @param cardStructureData The card data, e.g. produced by the analyzer.
+   * @return Null if no profile expects any of the applications of the card.
+   * @since 2.1.0
+   */
+  public Identification identify(CardStructureData cardStructureData) {
+    return identify(cardStructureData.getApplicationList());
+  }
+
+  /**
+   * Identifies the profile matched best by the applications read on a card, the applications whose
+   * AID starts with an expected one being retained as the card selection would do.
+   *
+   * @param cardApplicationDataList The data of the applications read.
+   * @return Null if no profile expects any of the applications read.
+   * @since 2.1.0
+   */
+  public Identification identify(List<CardApplicationData> cardApplicationDataList) {
+
+    List<CompiledApplication> applicationsRead =
+        ProfileMatcher.compileApplications(cardApplicationDataList);
+
+    List<Candidate> candidates = getCandidates(applicationsRead);
+    if (candidates.isEmpty()) {
+      return null;
+    }
+
+    Candidate bestCandidate = null;
+    CheckReport bestReport = null;
+    int bestScore = Integer.MAX_VALUE;
+    int nbCheckedProfiles = 0;
+
+    // The candidates sharing the same lower bound are checked in parallel, until no remaining
+    // candidate can have a lower score than the best one
+    int start = 0;
+    while (start < candidates.size() && candidates.get(start).minScore <= bestScore) {
+
+      int end = start + 1;
+      while (end < candidates.size()
+          && candidates.get(end).minScore == candidates.get(start).minScore) {
+        end++;
+      }
+
+      List<Candidate> group = candidates.subList(start, end);
+      List<CheckReport> reports =
+          group.parallelStream()
+              .map(candidate -> candidate.profileMatcher.checkCompiled(applicationsRead))
+              .collect(Collectors.toList());
+      nbCheckedProfiles += group.size();
+
+      for (int i = 0; i < group.size(); i++) {
+        Candidate candidate = group.get(i);
+        CheckReport report = reports.get(i);
+        int score =
+            report.getNbErrors()
+                + candidate.missingApplicationsPenalty
+                + candidate.unexpectedApplicationsWeight;
+        if (score < bestScore
+            || (score == bestScore && isBetter(candidate, report, bestCandidate, bestReport))) {
+          bestCandidate = candidate;
+          bestReport = report;
+          bestScore = score;
+        }
+      }
+      start = end;
+    }
+
+    return new Identification(
+        bestCandidate.profileMatcher,
+        bestReport,
+        bestCandidate.nbUnexpectedApplications,
+        nbCheckedProfiles,
+        profiles.size());
+  }
+
+  /** Ranks two equally scored profiles by number of warnings, then by order. */
+  private static boolean isBetter(
+      Candidate candidate, CheckReport report, Candidate bestCandidate, CheckReport bestReport) {
+    return report.getNbWarnings() < bestReport.getNbWarnings()
+        || (report.getNbWarnings() == bestReport.getNbWarnings()
+            && candidate.order < bestCandidate.order);
+  }
+
+  /**
+   * @return The weight of an expected application missing on the card, or of an application of the
+   *     card not expected: its number of files, at least one.
+   */
+  private static int getApplicationWeight(CompiledApplication application) {
+    return Math.max(1, application.getFiles().size());
+  }
+
+  /**
+   * Computes the lower bound of the score of each profile expecting at least one application of the
+   * card, the expected applications missing on the card and the unexpected applications of the card
+   * counting for their weight.
+   *
+   * @return The profiles, sorted by increasing lower bound then by order.
+   */
+  private List<Candidate> getCandidates(List<CompiledApplication> applicationsRead) {
+
+    List<Candidate> candidates = new ArrayList<>(profiles.size());
+    for (int order = 0; order < profiles.size(); order++) {
+      Candidate candidate = new Candidate(profiles.get(order), order);
+      for (CompiledApplication application : candidate.profileMatcher.getApplications()) {
+        candidate.missingApplicationsPenalty += getApplicationWeight(application) - 1;
+        candidate.minScore += getApplicationWeight(application);
+      }
+      candidates.add(candidate);
+    }
+
+    // Expected applications matched by each application of the card, looked up by AID prefix
+    Map<IndexEntry, List<CompiledApplication>> applicationsReadByEntry = new HashMap<>();
+    for (int index = 0; index < applicationsRead.size(); index++) {
+      CompiledApplication applicationRead = applicationsRead.get(index);
+      String aid = applicationRead.getAid();
+      for (int length = 1; length <= aid.length(); length++) {
+        List<IndexEntry> entries = applicationsByAid.get(aid.substring(0, length));
+        if (entries != null) {
+          for (IndexEntry entry : entries) {
+            applicationsReadByEntry
+                .computeIfAbsent(entry, e -> new ArrayList<>())
+                .add(applicationRead);
+            candidates.get(entry.profileOrder).expectedApplicationsRead.set(index);
+          }
+        }
+      }
+    }
+
+    for (Map.Entry<IndexEntry, List<CompiledApplication>> entry :
+        applicationsReadByEntry.entrySet()) {
+      Candidate candidate = candidates.get(entry.getKey().profileOrder);
+      // Not missing anymore, the errors of its features are counted instead
+      int missingApplicationWeight = getApplicationWeight(entry.getKey().application);
+      candidate.missingApplicationsPenalty -= missingApplicationWeight - 1;
+      candidate.minScore -= missingApplicationWeight;
+      if (entry.getValue().size() > 1) {
+        candidate.minScore++;
+      } else {
+        candidate.minScore += getMinNbErrors(entry.getKey().application, entry.getValue().get(0));
+      }
+    }
+
+    for (Candidate candidate : candidates) {
+      candidate.nbUnexpectedApplications =
+          applicationsRead.size() - candidate.expectedApplicationsRead.cardinality();
+      for (int index = candidate.expectedApplicationsRead.nextClearBit(0);
+          index < applicationsRead.size();
+          index = candidate.expectedApplicationsRead.nextClearBit(index + 1)) {
+        candidate.unexpectedApplicationsWeight += getApplicationWeight(applicationsRead.get(index));
+      }
+      candidate.minScore += candidate.unexpectedApplicationsWeight;
+    }
+
+    // The profiles expecting none of the applications of the card do not identify it
+    candidates.removeIf(candidate -> candidate.expectedApplicationsRead.isEmpty());
+
+    candidates.sort(CANDIDATE_COMPARATOR);
+    return candidates;
+  }
+
+  /** Counts the errors the check of an application is sure to report, as {@link CardCheck} does. */
+  private static int getMinNbErrors(
+      CompiledApplication applicationToCheck, CompiledApplication applicationRead) {
+
+    int nbErrors = 0;
+
+    int applicationTypeToCheck = applicationToCheck.getApplicationType();
+    int applicationTypeRead = applicationRead.getApplicationType();
+    if (applicationTypeToCheck >= 0 && applicationTypeRead >= 0) {
+      if (applicationTypeToCheck >= MIN_PLAIN_APPLICATION_TYPE
+          && applicationTypeToCheck <= MAX_PLAIN_APPLICATION_TYPE) {
+        if (applicationTypeToCheck != applicationTypeRead) {
+          nbErrors++;
+        }
+      } else {
+        nbErrors +=
+            Integer.bitCount(
+                (applicationTypeToCheck ^ applicationTypeRead) & APPLICATION_TYPE_FLAGS);
+      }
+    }
+
+    if (applicationToCheck.getApplicationSubtype() >= 0
+        && applicationToCheck.getApplicationSubtype() != applicationRead.getApplicationSubtype()) {
+      nbErrors++;
+    }
+
+    if (applicationToCheck.getFiles().size() != applicationRead.getFiles().size()) {
+      nbErrors++;
+    }
+
+    for (CompiledFile fileToCheck : applicationToCheck.getFiles()) {
+      if (fileToCheck.getSfi() >= 0 && applicationRead.getFileBySfi(fileToCheck.getSfi()) == null) {
+        nbErrors++;
+      }
+    }
+
+    return nbErrors;
+  }
+}
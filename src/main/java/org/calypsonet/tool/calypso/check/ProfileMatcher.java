@@ -0,0 +1,224 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardFileData;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+
+/**
+ * Card profile compiled once for checking any number of cards.
+ *
+ * <p>The hexadecimal fields of the profile are parsed into ints, the files are indexed by SFI and
+ * the DataRef links between files are resolved at compilation time. The instance is immutable and
+ * can be shared between threads, the state of the check of a card being held by a {@link
+ * CardCheck}.
+ *
+ * @since 2.1.0
+ */
+public final class ProfileMatcher {
+
+  private final String name;
+
+  private final CardStructureData profile;
+
+  private final List<CompiledApplication> applications;
+
+  private final CompiledFile[] filesByOrdinal;
+
+  private ProfileMatcher(String name, CardStructureData profile) {
+
+    this.name = name;
+    this.profile = profile;
+
+    List<CardFileData> allFiles = new ArrayList<>();
+    for (CardApplicationData cardApplicationData : profile.getApplicationList()) {
+      for (CardFileData cardFileData : cardApplicationData.getFileList()) {
+        // Null for a trailing comma in the JSON list of the files, not compiled
+        if (cardFileData != null) {
+          allFiles.add(cardFileData);
+        }
+      }
+    }
+
+    int[][] linkedFileOrdinals = resolveDataRefs(allFiles);
+
+    List<CompiledApplication> compiledApplications = new ArrayList<>();
+    filesByOrdinal = new CompiledFile[allFiles.size()];
+    int firstFileOrdinal = 0;
+    for (CardApplicationData cardApplicationData : profile.getApplicationList()) {
+      CompiledApplication compiledApplication =
+          new CompiledApplication(cardApplicationData, firstFileOrdinal, linkedFileOrdinals);
+      for (CompiledFile compiledFile : compiledApplication.getFiles()) {
+        filesByOrdinal[compiledFile.getOrdinal()] = compiledFile;
+      }
+      compiledApplications.add(compiledApplication);
+      firstFileOrdinal += compiledApplication.getFiles().size();
+    }
+    applications = Collections.unmodifiableList(compiledApplications);
+  }
+
+  /**
+   * For each file, determines the previous files whose DataRef designates it, i.e. the files it may
+   * be linked with when checked.
+   */
+  private static int[][] resolveDataRefs(List<CardFileData> allFiles) {
+
+    int[][] linkedFileOrdinals = new int[allFiles.size()][];
+    Map<Integer, List<Integer>> filesByDataRef = new HashMap<>();
+
+    for (int ordinal = 0; ordinal < allFiles.size(); ordinal++) {
+      CardFileData cardFileData = allFiles.get(ordinal);
+      List<Integer> linkedFiles = filesByDataRef.get(cardFileData.getLidValue());
+      if (linkedFiles != null) {
+        linkedFileOrdinals[ordinal] = new int[linkedFiles.size()];
+        for (int i = 0; i < linkedFiles.size(); i++) {
+          linkedFileOrdinals[ordinal][i] = linkedFiles.get(i);
+        }
+      }
+      int dataRef = cardFileData.getDataRefValue();
+      if (dataRef >= 0) {
+        filesByDataRef.computeIfAbsent(dataRef, k -> new ArrayList<>()).add(ordinal);
+      }
+    }
+
+    return linkedFileOrdinals;
+  }
+
+  /**
+   * Compiles the provided profile.
+   *
+   * @param profile The profile.
+   * @return A new instance.
+   * @since 2.1.0
+   */
+  public static ProfileMatcher compile(CardStructureData profile) {
+    return new ProfileMatcher(profile.getId(), profile);
+  }
+
+  /**
+   * Compiles the provided profile under a given name.
+   *
+   * @param name The name of the profile, e.g. the name of its file.
+   * @param profile The profile.
+   * @return A new instance.
+   * @since 2.1.0
+   */
+  public static ProfileMatcher compile(String name, CardStructureData profile) {
+    return new ProfileMatcher(name, profile);
+  }
+
+  /**
+   * @return The name given at compilation, the ID of the profile by default.
+   * @since 2.1.0
+   */
+  public String getName() {
+    return name;
+  }
+
+  public CardStructureData getProfile() {
+    return profile;
+  }
+
+  public List<CompiledApplication> getApplications() {
+    return applications;
+  }
+
+  int getNbFiles() {
+    return filesByOrdinal.length;
+  }
+
+  CompiledFile getFile(int ordinal) {
+    return filesByOrdinal[ordinal];
+  }
+
+  /**
+   * Checks card data previously read, the applications whose AID starts with the expected one being
+   * retained as the card selection would do.
+   *
+   * @param cardStructureData The card data, e.g. loaded from a file produced by the analyzer.
+   * @return The report of the check.
+   * @since 2.1.0
+   */
+  public CheckReport check(CardStructureData cardStructureData) {
+    return check(cardStructureData.getApplicationList());
+  }
+
+  /**
+   * Checks the data of the applications read on a card, the applications whose AID starts with the
+   * expected one being retained as the card selection would do.
+   *
+   * @param applicationsRead The data of the applications read, e.g. a snapshot of the structure of
+   *     the card taken once for all the expected applications.
+   * @return The report of the check.
+   * @since 2.1.0
+   */
+  public CheckReport check(List<CardApplicationData> applicationsRead) {
+    return checkCompiled(compileApplications(applicationsRead));
+  }
+
+  /** Compiles the applications read on a card, ignoring those without AID. */
+  static List<CompiledApplication> compileApplications(List<CardApplicationData> applicationsRead) {
+    List<CompiledApplication> compiledApplications = new ArrayList<>(applicationsRead.size());
+    for (CardApplicationData cardApplicationData : applicationsRead) {
+      if (cardApplicationData.getAid() != null) {
+        compiledApplications.add(CompiledApplication.compile(cardApplicationData));
+      }
+    }
+    return compiledApplications;
+  }
+
+  /** Checks the applications read on a card, compiled once to be checked against any profile. */
+  CheckReport checkCompiled(List<CompiledApplication> applicationsRead) {
+
+    CardCheck cardCheck = newCardCheck();
+
+    for (CompiledApplication applicationToCheck : applications) {
+
+      CompiledApplication applicationRead = null;
+      int nbApplicationsRead = 0;
+      for (CompiledApplication application : applicationsRead) {
+        if (application.getAid().startsWith(applicationToCheck.getAid())) {
+          applicationRead = application;
+          nbApplicationsRead++;
+        }
+      }
+
+      if (nbApplicationsRead == 0) {
+        cardCheck.applicationNotFound(applicationToCheck);
+      } else if (nbApplicationsRead > 1) {
+        cardCheck.multipleApplicationsFound(applicationToCheck, nbApplicationsRead);
+      } else {
+        cardCheck.checkApplication(applicationToCheck, applicationRead);
+      }
+    }
+
+    cardCheck.checkDataRefs();
+
+    return cardCheck.getReport();
+  }
+
+  /**
+   * Starts the check of a new card.
+   *
+   * @return A new instance.
+   * @since 2.1.0
+   */
+  public CardCheck newCardCheck() {
+    return new CardCheck(this);
+  }
+}
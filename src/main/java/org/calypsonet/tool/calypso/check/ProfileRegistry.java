@@ -0,0 +1,321 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.carddata.CardStructureJson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled card profiles of a directory, kept in memory to check any number of cards.
+ *
+ * <p>The profile files are loaded and compiled in parallel, each profile being named after its file
+ * (without the ".json" extension). The profiles can be looked up in constant time by name, or
+ * identified from the applications of a card. Once {@link #startWatching()} is called, the
+ * directory is watched and only the profile files created, modified or deleted are reloaded, a
+ * profile that fails to load keeping its previous version.
+ *
+ * <p>An instance is thread safe, the lookups never block.
+ *
+ * @since 2.1.0
+ */
+public final class ProfileRegistry implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(ProfileRegistry.class);
+
+  /**
+   * Default pattern of the profile file names.
+   *
+   * @since 2.1.0
+   */
+  public static final String DEFAULT_FILE_NAME_PATTERN = "*.json";
+
+  private static final String FILE_EXTENSION = ".json";
+
+  /** Profiles and their index, replaced as a whole when a profile changes. */
+  private static final class Snapshot {
+
+    private final Map<String, ProfileMatcher> profilesByName;
+
+    private final ProfileIdentifier identifier;
+
+    private Snapshot(Map<String, ProfileMatcher> profilesByName) {
+      this.profilesByName = profilesByName;
+      identifier = new ProfileIdentifier(profilesByName.values());
+    }
+  }
+
+  private final Path directory;
+
+  private final PathMatcher fileNameMatcher;
+
+  /** Last modification time of each loaded file, to ignore the duplicate change events. */
+  private final Map<Path, FileTime> lastModifiedTimes = new ConcurrentHashMap<>();
+
+  private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+
+  private WatchService watchService;
+
+  private ProfileRegistry(Path directory, String fileNamePattern) {
+    this.directory = directory;
+    fileNameMatcher = directory.getFileSystem().getPathMatcher("glob:" + fileNamePattern);
+  }
+
+  /**
+   * Loads the profiles of a directory.
+   *
+   * @param directory The directory of the profile files.
+   * @param fileNamePattern The glob pattern of the profile file names, e.g. {@link
+   *     #DEFAULT_FILE_NAME_PATTERN} or the name of a single file.
+   * @return A new instance, without the profiles that failed to load.
+   * @throws IOException If the directory cannot be listed.
+   * @since 2.1.0
+   */
+  public static ProfileRegistry load(Path directory, String fileNamePattern) throws IOException {
+
+    ProfileRegistry registry = new ProfileRegistry(directory, fileNamePattern);
+
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+      for (Path file : directoryStream) {
+        if (registry.isProfileFile(file)) {
+          files.add(file);
+        }
+      }
+    }
+
+    Map<String, ProfileMatcher> profilesByName = new ConcurrentHashMap<>();
+    files.parallelStream()
+        .forEach(
+            file -> {
+              ProfileMatcher profileMatcher = registry.loadProfile(file);
+              if (profileMatcher != null) {
+                profilesByName.put(profileMatcher.getName(), profileMatcher);
+              }
+            });
+    registry.snapshot = new Snapshot(new TreeMap<>(profilesByName));
+
+    logger.info("{} profile(s) loaded from {}", profilesByName.size(), directory);
+    return registry;
+  }
+
+  /**
+   * Loads a single profile file, the registry then only watching this file of its directory.
+   *
+   * @param file The profile file.
+   * @return A new instance, empty if the profile failed to load.
+   * @throws IOException If the directory of the file cannot be listed.
+   * @since 2.1.0
+   */
+  public static ProfileRegistry loadFile(Path file) throws IOException {
+    // The special characters of the glob syntax are escaped
+    String fileNamePattern =
+        file.getFileName().toString().replaceAll("([\\\\*?\\[\\]{}])", "\\\\$1");
+    return load(file.toAbsolutePath().getParent(), fileNamePattern);
+  }
+
+  /**
+   * @param file A profile file.
+   * @return The name of the profile of the file: its file name without the ".json" extension.
+   * @since 2.1.0
+   */
+  public static String getProfileName(Path file) {
+    String fileName = file.getFileName().toString();
+    return fileName.endsWith(FILE_EXTENSION)
+        ? fileName.substring(0, fileName.length() - FILE_EXTENSION.length())
+        : fileName;
+  }
+
+  private boolean isProfileFile(Path file) {
+    return fileNameMatcher.matches(file.getFileName()) && Files.isRegularFile(file);
+  }
+
+  /**
+   * @return Null if the profile cannot be loaded or compiled.
+   */
+  private ProfileMatcher loadProfile(Path file) {
+    try {
+      FileTime lastModifiedTime = Files.getLastModifiedTime(file);
+      CardStructureData profile = CardStructureJson.read(file);
+      if (profile == null || profile.getApplicationList() == null) {
+        logger.warn("No profile in {}", file);
+        return null;
+      }
+      ProfileMatcher profileMatcher = ProfileMatcher.compile(getProfileName(file), profile);
+      lastModifiedTimes.put(file, lastModifiedTime);
+      return profileMatcher;
+    } catch (Exception e) {
+      logger.warn("Unable to load the profile {}: {}", file, e.getMessage(), e);
+      return null;
+    }
+  }
+
+  /**
+   * @param name The name of the profile.
+   * @return Null if unknown.
+   * @since 2.1.0
+   */
+  public ProfileMatcher get(String name) {
+    return snapshot.profilesByName.get(name);
+  }
+
+  /**
+   * @return The identifier of the cards among all the profiles, the profiles matching a card
+   *     equally being preferred by name.
+   * @since 2.1.0
+   */
+  public ProfileIdentifier getIdentifier() {
+    return snapshot.identifier;
+  }
+
+  /**
+   * @return The number of profiles.
+   * @since 2.1.0
+   */
+  public int size() {
+    return snapshot.profilesByName.size();
+  }
+
+  private synchronized void update(String name, ProfileMatcher profileMatcher) {
+    Map<String, ProfileMatcher> profilesByName = new TreeMap<>(snapshot.profilesByName);
+    if (profileMatcher != null) {
+      profilesByName.put(name, profileMatcher);
+    } else {
+      profilesByName.remove(name);
+    }
+    snapshot = new Snapshot(profilesByName);
+  }
+
+  private void onFileChanged(Path file) {
+    String name = getProfileName(file);
+    if (!Files.exists(file)) {
+      if (lastModifiedTimes.remove(file) != null) {
+        update(name, null);
+        logger.info("Profile {} removed", name);
+      }
+      return;
+    }
+    try {
+      if (Files.getLastModifiedTime(file).equals(lastModifiedTimes.get(file))) {
+        return;
+      }
+    } catch (IOException e) {
+      return;
+    }
+    ProfileMatcher profileMatcher = loadProfile(file);
+    if (profileMatcher != null) {
+      update(name, profileMatcher);
+      logger.info("Profile {} reloaded", name);
+    }
+  }
+
+  /**
+   * Starts watching the directory, the profile files created, modified or deleted being reloaded in
+   * a background thread until the registry is closed.
+   *
+   * @throws IOException If the directory cannot be watched.
+   * @since 2.1.0
+   */
+  public synchronized void startWatching() throws IOException {
+
+    if (watchService != null) {
+      return;
+    }
+    watchService = FileSystems.getDefault().newWatchService();
+    directory.register(
+        watchService,
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY,
+        StandardWatchEventKinds.ENTRY_DELETE);
+
+    WatchService service = watchService;
+    Thread watcher = new Thread(() -> watch(service), "Profile watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  private void watch(WatchService service) {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            reloadAll();
+          } else {
+            Path file = directory.resolve((Path) event.context());
+            if (fileNameMatcher.matches(file.getFileName())) {
+              onFileChanged(file);
+            }
+          }
+        }
+        if (!key.reset()) {
+          logger.warn("The profile directory {} is no longer watched", directory);
+          return;
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      // Registry closed
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Reloads the changed files after missed events, and removes the deleted ones. */
+  private void reloadAll() {
+    for (Path file : new ArrayList<>(lastModifiedTimes.keySet())) {
+      onFileChanged(file);
+    }
+    try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+      for (Path file : directoryStream) {
+        if (isProfileFile(file)) {
+          onFileChanged(file);
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to list the profile directory {}: {}", directory, e.getMessage());
+    }
+  }
+
+  /**
+   * Stops watching the directory, if watched.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+      watchService = null;
+    }
+  }
+}
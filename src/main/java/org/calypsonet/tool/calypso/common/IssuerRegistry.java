@@ -0,0 +1,149 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Names of the card software issuers, by issuer code.
+ *
+ * <p>The built-in names are loaded from the {@value #RESOURCE_NAME} resource, in which each line
+ * maps an issuer code, as 2 hexadecimal digits, to its name. A registry can be extended with a file
+ * of the same format, so that new issuers don't require code changes.
+ *
+ * <p>The names are held in an immutable 256 entries table of interned strings, "--" standing for an
+ * unknown issuer.
+ *
+ * @since 2.1.0
+ */
+public final class IssuerRegistry {
+
+  /**
+   * Name of the resource of the built-in issuers.
+   *
+   * @since 2.1.0
+   */
+  public static final String RESOURCE_NAME = "issuers.properties";
+
+  /**
+   * Name of an unknown issuer.
+   *
+   * @since 2.1.0
+   */
+  public static final String UNKNOWN_ISSUER_NAME = "--";
+
+  private static final IssuerRegistry builtIn = loadBuiltIn();
+
+  private static volatile IssuerRegistry current = builtIn;
+
+  private final String[] names;
+
+  private IssuerRegistry(String[] names) {
+    this.names = names;
+  }
+
+  private static IssuerRegistry loadBuiltIn() {
+    String[] names = new String[256];
+    Arrays.fill(names, UNKNOWN_ISSUER_NAME);
+    try (InputStream in =
+        IssuerRegistry.class.getClassLoader().getResourceAsStream(RESOURCE_NAME)) {
+      if (in == null) {
+        throw new IllegalStateException("Resource not found: " + RESOURCE_NAME);
+      }
+      Properties properties = new Properties();
+      properties.load(in);
+      putAll(names, properties, RESOURCE_NAME);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read the resource " + RESOURCE_NAME, e);
+    }
+    return new IssuerRegistry(names);
+  }
+
+  private static void putAll(String[] names, Properties properties, String source)
+      throws IOException {
+    for (String code : properties.stringPropertyNames()) {
+      int value;
+      try {
+        value = Integer.parseInt(code.trim(), 16);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid issuer code '" + code + "' in " + source, e);
+      }
+      if (value < 0 || value > 0xFF) {
+        throw new IOException("Invalid issuer code '" + code + "' in " + source);
+      }
+      names[value] = properties.getProperty(code).trim().intern();
+    }
+  }
+
+  /**
+   * @return The registry of the issuers defined in the {@value #RESOURCE_NAME} resource.
+   * @since 2.1.0
+   */
+  public static IssuerRegistry getBuiltIn() {
+    return builtIn;
+  }
+
+  /**
+   * @return The registry used to name the issuers of the cards, the built-in one unless replaced
+   *     with {@link #setCurrent(IssuerRegistry)}.
+   * @since 2.1.0
+   */
+  public static IssuerRegistry getCurrent() {
+    return current;
+  }
+
+  /**
+   * Replaces the registry used to name the issuers of the cards.
+   *
+   * @param registry The registry.
+   * @since 2.1.0
+   */
+  public static void setCurrent(IssuerRegistry registry) {
+    current = registry;
+  }
+
+  /**
+   * Builds a registry made of the issuers of this registry, completed or overridden by the ones
+   * defined in a file.
+   *
+   * @param file The issuers file, in the format of the {@value #RESOURCE_NAME} resource.
+   * @return A new instance.
+   * @throws IOException If the file cannot be read or if an issuer code is invalid.
+   * @since 2.1.0
+   */
+  public IssuerRegistry extend(Path file) throws IOException {
+    String[] extendedNames = names.clone();
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    }
+    putAll(extendedNames, properties, file.toString());
+    return new IssuerRegistry(extendedNames);
+  }
+
+  /**
+   * @param issuer The issuer code.
+   * @return The name of the issuer, {@link #UNKNOWN_ISSUER_NAME} if unknown.
+   * @since 2.1.0
+   */
+  public String getName(byte issuer) {
+    return names[issuer & 0xFF];
+  }
+}
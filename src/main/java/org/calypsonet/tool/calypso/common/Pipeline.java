@@ -0,0 +1,182 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.common;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stages of a processing, each run by a dedicated thread and fed by a bounded queue, so that the
+ * stages process different cards concurrently.
+ *
+ * <p>Submitting an item to a stage whose queue is full blocks until the stage catches up: a slow
+ * stage, e.g. writing to a slow disk, throttles the previous ones instead of growing the heap. A
+ * stage failing to process an item logs the error and goes on with the next item.
+ *
+ * @since 2.1.0
+ */
+public final class Pipeline implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(Pipeline.class);
+
+  /**
+   * Default capacity of the queue of each stage.
+   *
+   * @since 2.1.0
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+  /** Marks the end of the items of a stage. */
+  private static final Object END_OF_ITEMS = new Object();
+
+  /**
+   * Stage of the pipeline.
+   *
+   * @param <T> The type of the items processed.
+   * @since 2.1.0
+   */
+  public static final class Stage<T> {
+
+    private final String name;
+
+    private final Consumer<T> processor;
+
+    private final BlockingQueue<Object> queue;
+
+    private final Thread thread;
+
+    private boolean isClosed;
+
+    private Stage(String name, Consumer<T> processor, int queueCapacity) {
+      this.name = name;
+      this.processor = processor;
+      queue = new ArrayBlockingQueue<>(queueCapacity);
+      thread = new Thread(this::run, name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /**
+     * Submits an item to the stage, blocking while its queue is full.
+     *
+     * <p>If the stage is closed or the calling thread is interrupted, the item is processed by the
+     * calling thread.
+     *
+     * @param item The item.
+     * @since 2.1.0
+     */
+    public synchronized void submit(T item) {
+      if (!isClosed) {
+        try {
+          queue.put(item);
+          return;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      process(item);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run() {
+      try {
+        Object item;
+        while ((item = queue.take()) != END_OF_ITEMS) {
+          process((T) item);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void process(T item) {
+      try {
+        processor.accept(item);
+      } catch (RuntimeException e) {
+        logger.error("{} stage failed: {}", name, e.getMessage(), e);
+      }
+    }
+
+    /** Waits for the stage to process all the submitted items, then stops its thread. */
+    private void close() throws InterruptedException {
+      synchronized (this) {
+        if (isClosed) {
+          return;
+        }
+        isClosed = true;
+        queue.put(END_OF_ITEMS);
+      }
+      thread.join();
+    }
+  }
+
+  private final int queueCapacity;
+
+  private final List<Stage<?>> stages = new ArrayList<>();
+
+  /**
+   * Creates a pipeline whose stages have queues of the default capacity.
+   *
+   * @since 2.1.0
+   */
+  public Pipeline() {
+    this(DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Creates a pipeline.
+   *
+   * @param queueCapacity The capacity of the queue of each stage.
+   * @since 2.1.0
+   */
+  public Pipeline(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Adds a stage, started at once.
+   *
+   * @param name The name of the stage, also the name of its thread.
+   * @param processor The processing of an item, which may submit it to a next stage.
+   * @param <T> The type of the items processed.
+   * @return The new stage.
+   * @since 2.1.0
+   */
+  public synchronized <T> Stage<T> addStage(String name, Consumer<T> processor) {
+    Stage<T> stage = new Stage<>(name, processor, queueCapacity);
+    stages.add(stage);
+    return stage;
+  }
+
+  /**
+   * Closes the stages in the order they were added, each one after it has processed all the items
+   * submitted to it, so that the items submitted by a stage to a next one are processed too.
+   *
+   * @since 2.1.0
+   */
+  @Override
+  public synchronized void close() {
+    try {
+      for (Stage<?> stage : stages) {
+        stage.close();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
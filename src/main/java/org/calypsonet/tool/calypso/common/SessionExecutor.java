@@ -0,0 +1,283 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.common;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs one task per reader session, e.g. the processing of the card present in a reader.
+ *
+ * <p>The readers block their thread for each APDU exchanged. When the JVM supports them (Java 21 or
+ * later, detected at runtime), each session runs in its own virtual thread, so that dozens of
+ * readers do not need as many platform threads; otherwise the sessions run in a bounded pool of
+ * platform threads, the sessions exceeding its size waiting for a free thread. The thread running a
+ * session is named after it for the time of the session.
+ *
+ * <p>A session running longer than the timeout, if any, is cancelled: its thread is interrupted and
+ * its future completes with a {@link java.util.concurrent.CancellationException}, even if the
+ * reader does not react to the interruption. As the task may then still be exchanging with the
+ * reader, e.g. blocked in a native call, {@link Session#awaitEnd()} has to be called before using
+ * the reader again.
+ *
+ * @since 2.1.0
+ */
+public final class SessionExecutor implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(SessionExecutor.class);
+
+  /**
+   * Default maximum number of platform threads running sessions when virtual threads are not
+   * available.
+   *
+   * @since 2.1.0
+   */
+  public static final int DEFAULT_MAX_PLATFORM_THREADS = 64;
+
+  /** Idle time after which a platform thread of the pool is released. */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private final ExecutorService executor;
+
+  private final boolean isVirtual;
+
+  private final long timeoutMillis;
+
+  /** Cancels the sessions running longer than the timeout, null if no timeout. */
+  private final ScheduledThreadPoolExecutor timeoutScheduler;
+
+  /**
+   * Session of a reader, cancelled when running longer than the timeout.
+   *
+   * @param <T> The type of the result of the session.
+   * @since 2.1.0
+   */
+  public final class Session<T> extends FutureTask<T> {
+
+    private final String name;
+
+    /** Released once the task has returned, or will never run. */
+    private final CountDownLatch end = new CountDownLatch(1);
+
+    private Session(String name, Callable<T> callable) {
+      super(callable);
+      this.name = name;
+    }
+
+    @Override
+    public void run() {
+      Thread thread = Thread.currentThread();
+      String threadName = thread.getName();
+      thread.setName(name);
+      ScheduledFuture<?> timeout = scheduleTimeout();
+      try {
+        super.run();
+      } finally {
+        if (timeout != null) {
+          timeout.cancel(false);
+        }
+        thread.setName(threadName);
+        end.countDown();
+      }
+    }
+
+    /**
+     * Waits until the task of the session has returned. Unlike {@link #get()}, the wait goes on
+     * after the cancellation of the session, until the task has stopped using the reader.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     * @since 2.1.0
+     */
+    public void awaitEnd() throws InterruptedException {
+      end.await();
+    }
+
+    /** Cancels the session before it has started, it will never run. */
+    private void abandon() {
+      cancel(false);
+      end.countDown();
+    }
+
+    /**
+     * @return Null if there is no timeout or if the executor is closed.
+     */
+    private ScheduledFuture<?> scheduleTimeout() {
+      if (timeoutScheduler == null) {
+        return null;
+      }
+      try {
+        return timeoutScheduler.schedule(this::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // Session started while the executor is being closed, its thread is interrupted anyway
+        return null;
+      }
+    }
+
+    private void expire() {
+      if (cancel(true)) {
+        logger.warn("= {}:: session cancelled after {} ms", name, timeoutMillis);
+      }
+    }
+  }
+
+  private SessionExecutor(ExecutorService executor, boolean isVirtual, long timeoutMillis) {
+    this.executor = executor;
+    this.isVirtual = isVirtual;
+    this.timeoutMillis = timeoutMillis;
+    if (timeoutMillis > 0) {
+      timeoutScheduler =
+          new ScheduledThreadPoolExecutor(
+              1,
+              runnable -> {
+                Thread thread = new Thread(runnable, "SessionTimeout");
+                thread.setDaemon(true);
+                return thread;
+              });
+      timeoutScheduler.setRemoveOnCancelPolicy(true);
+    } else {
+      timeoutScheduler = null;
+    }
+  }
+
+  /**
+   * Creates an executor running the sessions in virtual threads if available, in at most {@link
+   * #DEFAULT_MAX_PLATFORM_THREADS} platform threads otherwise.
+   *
+   * @param timeoutMillis The maximum duration of a session in milliseconds, 0 for no timeout.
+   * @return A new instance.
+   * @since 2.1.0
+   */
+  public static SessionExecutor create(long timeoutMillis) {
+    return create(timeoutMillis, DEFAULT_MAX_PLATFORM_THREADS);
+  }
+
+  /**
+   * Creates an executor running the sessions in virtual threads if available, in a bounded pool of
+   * platform threads otherwise.
+   *
+   * @param timeoutMillis The maximum duration of a session in milliseconds, 0 for no timeout.
+   * @param maxPlatformThreads The maximum number of platform threads, when virtual threads are not
+   *     available.
+   * @return A new instance.
+   * @since 2.1.0
+   */
+  public static SessionExecutor create(long timeoutMillis, int maxPlatformThreads) {
+    ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+    if (virtualThreadExecutor != null) {
+      return new SessionExecutor(virtualThreadExecutor, true, timeoutMillis);
+    }
+    return new SessionExecutor(newPlatformThreadExecutor(maxPlatformThreads), false, timeoutMillis);
+  }
+
+  /**
+   * @return Null if the JVM does not support virtual threads.
+   */
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      // Java 21 API, looked up at runtime as the tool targets Java 8
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static ExecutorService newPlatformThreadExecutor(int maxThreads) {
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            maxThreads,
+            maxThreads,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "Session-" + threadNumber.incrementAndGet());
+              // A session blocked in a reader must not prevent the JVM from exiting
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * @return True if the sessions run in virtual threads.
+   * @since 2.1.0
+   */
+  public boolean isVirtual() {
+    return isVirtual;
+  }
+
+  /**
+   * @return The maximum duration of a session in milliseconds, 0 if no timeout.
+   * @since 2.1.0
+   */
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /**
+   * Starts a session.
+   *
+   * @param name The name of the session, e.g. the name of the reader.
+   * @param session The task of the session.
+   * @param <T> The type of the result of the session.
+   * @return The future result of the session, which can be cancelled.
+   * @since 2.1.0
+   */
+  public <T> Session<T> submit(String name, Callable<T> session) {
+    Session<T> task = new Session<>(name, session);
+    executor.execute(task);
+    return task;
+  }
+
+  /**
+   * Starts a session without result.
+   *
+   * @param name The name of the session, e.g. the name of the reader.
+   * @param session The task of the session.
+   * @return The future completion of the session, which can be cancelled.
+   * @since 2.1.0
+   */
+  public Session<?> submit(String name, Runnable session) {
+    return submit(name, Executors.callable(session));
+  }
+
+  /**
+   * Cancels the sessions still running or waiting for a thread, and releases the threads.
+   *
+   * @since 2.1.0
+   */
+  @Override
+  public void close() {
+    for (Runnable waitingSession : executor.shutdownNow()) {
+      ((Session<?>) waitingSession).abandon();
+    }
+    if (timeoutScheduler != null) {
+      timeoutScheduler.shutdownNow();
+    }
+  }
+}
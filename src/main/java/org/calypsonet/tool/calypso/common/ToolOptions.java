@@ -0,0 +1,87 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line arguments of the tools.
+ *
+ * <p>Arguments starting with "--" are options, given either as a flag ("--name") or with a value
+ * ("--name=value"). All other arguments are positional and kept in their original order. The
+ * options not accepted by a tool are reported by {@link #getUnknownOptions(Collection)}.
+ *
+ * @since 2.1.0
+ */
+public class ToolOptions {
+
+  private static final String OPTION_PREFIX = "--";
+
+  private final List<String> arguments;
+
+  private final Map<String, String> options;
+
+  public ToolOptions(String[] args) {
+
+    arguments = new ArrayList<>();
+
+    options = new LinkedHashMap<>();
+
+    for (String arg : args) {
+      if (arg.startsWith(OPTION_PREFIX)) {
+        int separatorIndex = arg.indexOf('=');
+        if (separatorIndex < 0) {
+          options.put(arg.substring(OPTION_PREFIX.length()), "");
+        } else {
+          options.put(
+              arg.substring(OPTION_PREFIX.length(), separatorIndex),
+              arg.substring(separatorIndex + 1));
+        }
+      } else {
+        arguments.add(arg);
+      }
+    }
+  }
+
+  public List<String> getArguments() {
+    return arguments;
+  }
+
+  public boolean hasOption(String name) {
+    return options.containsKey(name);
+  }
+
+  public String getOption(String name, String defaultValue) {
+    String value = options.get(name);
+    return value == null || value.isEmpty() ? defaultValue : value;
+  }
+
+  /**
+   * @param optionNames The names of the options accepted by the tool, without the "--" prefix.
+   * @return The options given but not accepted, with their "--" prefix and without their value, in
+   *     the order of the command line, empty if none.
+   * @since 2.1.0
+   */
+  public List<String> getUnknownOptions(Collection<String> optionNames) {
+    List<String> unknownOptions = new ArrayList<>();
+    for (String name : options.keySet()) {
+      if (!optionNames.contains(name)) {
+        unknownOptions.add(OPTION_PREFIX + name);
+      }
+    }
+    return unknownOptions;
+  }
+}
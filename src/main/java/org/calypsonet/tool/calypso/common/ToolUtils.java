@@ -11,8 +11,20 @@
  ************************************************************************************** */
 package org.calypsonet.tool.calypso.common;
 
-import com.google.gson.*;
-import java.lang.reflect.Type;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.calypsonet.tool.calypso.carddata.CardStructureBinary;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.carddata.CardStructureJson;
 import org.eclipse.keyple.core.service.Plugin;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.card.card.ElementaryFile;
@@ -42,6 +54,14 @@ public class ToolUtils {
   public static final int CARD_EF_TYPE_SIMULATED_COUNTERS = 8;
   public static final int CARD_EF_TYPE_COUNTERS = 9;
 
+  /**
+   * Glob matching the names of the card data files written by the analysis tool, JSON or binary.
+   *
+   * @since 2.1.0
+   */
+  public static final String CARD_DATA_FILE_NAME_PATTERN =
+      "*_CardData_*{.json," + CardStructureBinary.FILE_EXTENSION + "}";
+
   private ToolUtils() {}
 
   public static String getCardReaderName(Plugin plugin, String readerNameRegex) {
@@ -55,13 +75,49 @@ public class ToolUtils {
         "Reader '" + readerNameRegex + "' not found in plugin '" + plugin.getName() + "'");
   }
 
+  public static List<String> getCardReaderNames(Plugin plugin, String readerNameRegex) {
+    List<String> readerNames = new ArrayList<>();
+    for (String readerName : plugin.getReaderNames()) {
+      if (readerName.matches(readerNameRegex)) {
+        logger.info("Card reader, plugin; {}, name: {}", plugin.getName(), readerName);
+        readerNames.add(readerName);
+      }
+    }
+    if (readerNames.isEmpty()) {
+      throw new IllegalStateException(
+          "Reader '" + readerNameRegex + "' not found in plugin '" + plugin.getName() + "'");
+    }
+    Collections.sort(readerNames);
+    return readerNames;
+  }
+
   public static String getEfTypeName(String inEfType, boolean longModeFlag) {
     int efType = Integer.valueOf(inEfType, 16);
 
     return getEfTypeName(efType, longModeFlag);
   }
 
+  /** Names of the EF types by EF type byte, in long and short modes. */
+  private static final String[] EF_TYPE_NAMES_LONG = newEfTypeNames(true);
+
+  private static final String[] EF_TYPE_NAMES_SHORT = newEfTypeNames(false);
+
+  private static String[] newEfTypeNames(boolean longModeFlag) {
+    String[] names = new String[256];
+    for (int efType = 0; efType < names.length; efType++) {
+      names[efType] = computeEfTypeName(efType, longModeFlag);
+    }
+    return names;
+  }
+
   public static String getEfTypeName(int inEfType, boolean longModeFlag) {
+    if ((inEfType & ~0xFF) == 0) {
+      return (longModeFlag ? EF_TYPE_NAMES_LONG : EF_TYPE_NAMES_SHORT)[inEfType];
+    }
+    return computeEfTypeName(inEfType, longModeFlag);
+  }
+
+  private static String computeEfTypeName(int inEfType, boolean longModeFlag) {
 
     switch (inEfType) {
       case CARD_EF_TYPE_BINARY:
@@ -138,7 +194,37 @@ public class ToolUtils {
     return getAcName(acValue, keyLevel, longModeFlag);
   }
 
+  /**
+   * Names of the access conditions by access condition and key level bytes, in long and short
+   * modes. The rows of the access conditions not depending on the key level are shared.
+   */
+  private static final String[][] AC_NAMES_LONG = newAcNames(true);
+
+  private static final String[][] AC_NAMES_SHORT = newAcNames(false);
+
+  private static String[][] newAcNames(boolean longModeFlag) {
+    String[][] names = new String[256][];
+    Map<String, String[]> constantRows = new HashMap<>();
+    for (int acValue = 0; acValue < names.length; acValue++) {
+      String[] row = new String[256];
+      boolean isConstantRow = true;
+      for (int keyLevel = 0; keyLevel < row.length; keyLevel++) {
+        row[keyLevel] = computeAcName(acValue, keyLevel, longModeFlag).intern();
+        isConstantRow &= row[keyLevel] == row[0];
+      }
+      names[acValue] = isConstantRow ? constantRows.computeIfAbsent(row[0], name -> row) : row;
+    }
+    return names;
+  }
+
   public static String getAcName(int inAcValue, int inKeyLevel, boolean longModeFlag) {
+    if ((inAcValue & ~0xFF) == 0 && (inKeyLevel & ~0xFF) == 0) {
+      return (longModeFlag ? AC_NAMES_LONG : AC_NAMES_SHORT)[inAcValue][inKeyLevel];
+    }
+    return computeAcName(inAcValue, inKeyLevel, longModeFlag);
+  }
+
+  private static String computeAcName(int inAcValue, int inKeyLevel, boolean longModeFlag) {
 
     switch (inAcValue) {
       case 0x1F:
@@ -177,253 +263,75 @@ public class ToolUtils {
     }
   }
 
+  /**
+   * @return The name of the issuer in the current {@link IssuerRegistry}.
+   */
   public static String getIssuerName(byte inIssuer) {
+    return IssuerRegistry.getCurrent().getName(inIssuer);
+  }
 
-    switch (inIssuer) {
-      case 0x00:
-        {
-          return "Paragon Id";
-        }
-
-      case 0x01:
-        {
-          return "Intec";
-        }
-
-      case 0x02:
-        {
-          return "Calypso";
-        }
-
-      case 0x04:
-        {
-          return "Thales";
-        }
-
-      case 0x05:
-      case 0x0A:
-        {
-          return "Idemia";
-        }
-
-      case 0x06:
-        {
-          return "Axalto";
-        }
-
-      case 0x07:
-        {
-          return "Bull";
-        }
-
-      case 0x08:
-        {
-          return "Spirtech";
-        }
-
-      case 0x09:
-        {
-          return "BMS";
-        }
-
-      case 0x0B:
-        {
-          return "Gemplus";
-        }
-
-      case 0x0C:
-        {
-          return "Magnadata";
-        }
-
-      case 0x0D:
-        {
-          return "Calmell";
-        }
-
-      case 0x0E:
-        {
-          return "Mecstar";
-        }
-
-      case 0x0F:
-        {
-          return "ACG Identification";
-        }
-
-      case 0x10:
-        {
-          return "STMicroelectronics";
-        }
-
-      case 0x11:
-        {
-          return "CNA";
-        }
-
-      case 0x12:
-        {
-          return "G&D";
-        }
-
-      case 0x13:
-        {
-          return "OTI";
-        }
-
-      case 0x14:
-        {
-          return "Gemalto";
-        }
-
-      case 0x15:
-        {
-          return "Watchdata";
-        }
-
-      case 0x16:
-        {
-          return "Alios";
-        }
-
-      case 0x17:
-        {
-          return "S-P-S";
-        }
-
-      case 0x18:
-        {
-          return "ISRA";
-        }
-
-      case 0x19:
-        {
-          return "Trust Electronics";
-        }
-
-      case 0x1A:
-        {
-          return "Trusted Labs";
-        }
-
-      case 0x1B:
-        {
-          return "Neowave";
-        }
-
-      case 0x1C:
-        {
-          return "Digital People";
-        }
-
-      case 0x1D:
-        {
-          return "ABNote Europe";
-        }
-
-      case 0x1E:
-        {
-          return "Twinlinx";
-        }
-
-      case 0x1F:
-        {
-          return "Inteligensa";
-        }
-
-      case 0x20:
-        {
-          return "CNA";
-        }
-
-      case 0x21:
-        {
-          return "Innovatron";
-        }
-
-      case 0x22:
-        {
-          return "Austria Card";
-        }
-
-      case 0x23:
-        {
-          return "Carta+";
-        }
-
-      case 0x24:
-        {
-          return "Impimerie Nationale";
-        }
-
-      case 0x25:
-      case 0x29:
-        {
-          return "HID Global";
-        }
-
-      case 0x26:
-        {
-          return "Card Project";
-        }
-
-      case 0x27:
-        {
-          return "PosteMobile";
-        }
-
-      case 0x28:
-        {
-          return "HB Technologies";
-        }
-
-      case 0x2A:
-        {
-          return "ANY Security Printing";
-        }
-
-      case 0x2B:
-        {
-          return "SELP";
-        }
-
-      case 0x2C:
-        {
-          return "Future Card";
-        }
-
-      case 0x2D:
-        {
-          return "iQuantics";
-        }
-
-      case 0x2E:
-        {
-          return "Calypso";
-        }
-
-      case 0x2F:
-        {
-          return "Aruba PEC";
-        }
+  /**
+   * Gson adapter (de)serializing byte arrays as hexadecimal strings, directly from/to the JSON
+   * stream.
+   */
+  public static class HexTypeAdapter extends TypeAdapter<byte[]> {
+
+    @Override
+    public void write(JsonWriter out, byte[] data) throws IOException {
+      if (data == null) {
+        out.nullValue();
+      } else {
+        out.value(HexUtil.toHex(data));
+      }
+    }
 
-      default:
-        {
-          return "--";
-        }
+    @Override
+    public byte[] read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      return HexUtil.toByteArray(in.nextString());
     }
   }
 
-  public static class HexTypeAdapter implements JsonSerializer<byte[]>, JsonDeserializer<byte[]> {
+  /**
+   * Reads a card data file, in the binary format if it has the binary file extension, in JSON
+   * otherwise.
+   *
+   * @param file The card data file.
+   * @return The card data.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public static CardStructureData readCardData(Path file) throws IOException {
+    return file.getFileName().toString().endsWith(CardStructureBinary.FILE_EXTENSION)
+        ? CardStructureBinary.read(file)
+        : CardStructureJson.read(file);
+  }
 
-    public byte[] deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-      return HexUtil.toByteArray(json.getAsString());
+  /**
+   * Reads a card data file like {@link #readCardData(Path)}, logging why it cannot be used.
+   *
+   * @param file The card data file.
+   * @return Null if the file cannot be read or holds no application list.
+   * @since 2.1.0
+   */
+  public static CardStructureData loadCardData(Path file) {
+
+    CardStructureData cardStructureData;
+    try {
+      cardStructureData = readCardData(file);
+    } catch (Exception e) {
+      logger.error("Exception while loading card data {}: {}", file, e.getMessage());
+      return null;
     }
 
-    public JsonElement serialize(byte[] data, Type typeOfSrc, JsonSerializationContext context) {
-      return new JsonPrimitive(HexUtil.toHex(data));
+    if (cardStructureData == null || cardStructureData.getApplicationList() == null) {
+      logger.error("No card data in {}", file);
+      return null;
     }
+    return cardStructureData;
   }
 
   public static String padLeft(String input, int length, char padChar) {
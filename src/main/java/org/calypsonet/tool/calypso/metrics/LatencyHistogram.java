@@ -0,0 +1,134 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in microseconds, with a bounded relative error.
+ *
+ * <p>As in HdrHistogram, the values are counted in log-linear buckets: the values below 128 have
+ * their own bucket, each power of two above is split into 64 buckets, so that a value is known
+ * within 1.6%. The memory used is fixed and the recording is lock-free, so that the histogram can
+ * be updated concurrently by the threads of all the readers.
+ *
+ * @since 2.1.0
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  private static final int LINEAR_LIMIT = 2 * SUB_BUCKET_COUNT;
+
+  private static final int NB_BUCKETS =
+      LINEAR_LIMIT + (Long.SIZE - 1 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NB_BUCKETS);
+
+  private final LongAdder totalCount = new LongAdder();
+
+  private final LongAdder totalMicros = new LongAdder();
+
+  private final AtomicLong minMicros = new AtomicLong(Long.MAX_VALUE);
+
+  private final AtomicLong maxMicros = new AtomicLong(0);
+
+  private static int getBucketIndex(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /** Highest value counted in the bucket. */
+  private static long getHighestValue(int bucketIndex) {
+    if (bucketIndex < LINEAR_LIMIT) {
+      return bucketIndex;
+    }
+    int exponent = (bucketIndex - LINEAR_LIMIT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+    int subBucket = (bucketIndex - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((long) (subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param micros The latency in microseconds, negative values being counted as 0.
+   * @since 2.1.0
+   */
+  public void record(long micros) {
+    long value = Math.max(micros, 0);
+    counts.incrementAndGet(getBucketIndex(value));
+    totalCount.increment();
+    totalMicros.add(value);
+    minMicros.accumulateAndGet(value, Math::min);
+    maxMicros.accumulateAndGet(value, Math::max);
+  }
+
+  public long getCount() {
+    return totalCount.sum();
+  }
+
+  public long getTotalMicros() {
+    return totalMicros.sum();
+  }
+
+  /**
+   * @return 0 if no latency has been recorded.
+   * @since 2.1.0
+   */
+  public long getMinMicros() {
+    long min = minMicros.get();
+    return min == Long.MAX_VALUE ? 0 : min;
+  }
+
+  public long getMaxMicros() {
+    return maxMicros.get();
+  }
+
+  public long getMeanMicros() {
+    long count = getCount();
+    return count == 0 ? 0 : getTotalMicros() / count;
+  }
+
+  /**
+   * Gets the latency below which the given percentage of the recorded latencies fall.
+   *
+   * @param percentile The percentage, from 0 to 100.
+   * @return The highest value of the bucket of the percentile, bounded by the maximum recorded
+   *     latency, or 0 if no latency has been recorded.
+   * @since 2.1.0
+   */
+  public long getPercentileMicros(double percentile) {
+    long count = getCount();
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long cumulatedCount = 0;
+    for (int i = 0; i < NB_BUCKETS; i++) {
+      cumulatedCount += counts.get(i);
+      if (cumulatedCount >= rank) {
+        return Math.min(getHighestValue(i), getMaxMicros());
+      }
+    }
+    return getMaxMicros();
+  }
+}
@@ -0,0 +1,153 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.slf4j.Logger;
+
+/**
+ * Latency histograms of the APDUs and of the processing phases of the cards, identified by name.
+ *
+ * <p>A disabled instance records nothing, so that the instrumented code does not need to check
+ * whether the metrics are enabled.
+ *
+ * @since 2.1.0
+ */
+public final class LatencyMetrics {
+
+  private final boolean isEnabled;
+
+  private final long startTime = System.nanoTime();
+
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+  /**
+   * @param isEnabled False to get an instance recording nothing.
+   * @since 2.1.0
+   */
+  public LatencyMetrics(boolean isEnabled) {
+    this.isEnabled = isEnabled;
+  }
+
+  public boolean isEnabled() {
+    return isEnabled;
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param name The name of the histogram, created if needed.
+   * @param micros The latency in microseconds.
+   * @since 2.1.0
+   */
+  public void record(String name, long micros) {
+    if (isEnabled) {
+      histograms.computeIfAbsent(name, k -> new LatencyHistogram()).record(micros);
+    }
+  }
+
+  /**
+   * Starts the measure of a phase, to be recorded with {@link #recordSince(String, long)}, e.g. in
+   * a finally block.
+   *
+   * @return The start time of the phase in nanoseconds, 0 if the instance is disabled.
+   * @since 2.1.0
+   */
+  public long start() {
+    return isEnabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the time elapsed since the start of a phase.
+   *
+   * @param name The name of the histogram, created if needed.
+   * @param phaseStartTime The start time of the phase returned by {@link #start()}.
+   * @since 2.1.0
+   */
+  public void recordSince(String name, long phaseStartTime) {
+    if (isEnabled) {
+      record(name, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - phaseStartTime));
+    }
+  }
+
+  /**
+   * @return The histograms, sorted by name.
+   * @since 2.1.0
+   */
+  public Map<String, LatencyHistogram> getHistograms() {
+    return histograms;
+  }
+
+  /**
+   * Prints a summary of the histograms recorded since the creation of the instance.
+   *
+   * <p>For each histogram: the number of latencies recorded, the rate per second, the mean, the
+   * median, the 90th and 99th percentiles and the maximum, in milliseconds.
+   *
+   * @param logger The logger to use.
+   * @since 2.1.0
+   */
+  public void print(Logger logger) {
+    if (!isEnabled) {
+      return;
+    }
+    double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+    logger.info(ToolUtils.SEPARATOR_LINE);
+    logger.info("= Latencies (ms) over {} s", String.format("%.1f", elapsedSeconds));
+    logger.info(
+        String.format(
+            "= %-40s %8s %8s %8s %8s %8s %8s %8s",
+            "Name", "Count", "Count/s", "Mean", "p50", "p90", "p99", "Max"));
+    for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      logger.info(
+          String.format(
+              "= %-40s %8d %8.1f %8.1f %8.1f %8.1f %8.1f %8.1f",
+              entry.getKey(),
+              histogram.getCount(),
+              histogram.getCount() / elapsedSeconds,
+              histogram.getMeanMicros() / 1000.0,
+              histogram.getPercentileMicros(50) / 1000.0,
+              histogram.getPercentileMicros(90) / 1000.0,
+              histogram.getPercentileMicros(99) / 1000.0,
+              histogram.getMaxMicros() / 1000.0));
+    }
+    logger.info(ToolUtils.SEPARATOR_LINE);
+  }
+
+  /**
+   * Prints the summary periodically from a background thread, until the JVM stops.
+   *
+   * @param logger The logger to use.
+   * @param periodSeconds The period of the summary, in seconds.
+   * @since 2.1.0
+   */
+  public void startPeriodicPrint(Logger logger, long periodSeconds) {
+    if (!isEnabled) {
+      return;
+    }
+    ScheduledExecutorService executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "LatencyMetrics");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.scheduleAtFixedRate(
+        () -> print(logger), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,101 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.stats;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+
+/**
+ * Computes the statistics of the cards of a set of card data files, JSON or binary.
+ *
+ * <p>The list of files is split in halves until slices small enough to be read by a single task,
+ * the tasks being run by a fork-join pool; each task reads its files one by one, keeping only the
+ * counts of their values, and the statistics of the slices are merged as the tasks complete. Only
+ * the card data of the files being read are in memory at a time, whatever the number of files.
+ *
+ * @since 2.1.0
+ */
+public final class FleetAggregator {
+
+  /** Number of files below which a slice is read by a single task. */
+  private static final int SLICE_SIZE = 256;
+
+  /** Statistics of a slice of the files. */
+  private static final class SliceTask extends RecursiveTask<FleetStatistics> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<Path> files;
+
+    private SliceTask(List<Path> files) {
+      this.files = files;
+    }
+
+    @Override
+    protected FleetStatistics compute() {
+
+      if (files.size() <= SLICE_SIZE) {
+        FleetStatistics statistics = new FleetStatistics();
+        for (Path file : files) {
+          add(statistics, file);
+        }
+        return statistics;
+      }
+
+      int middle = files.size() / 2;
+      SliceTask firstHalf = new SliceTask(files.subList(0, middle));
+      firstHalf.fork();
+      FleetStatistics statistics = new SliceTask(files.subList(middle, files.size())).compute();
+      return statistics.merge(firstHalf.join());
+    }
+  }
+
+  private FleetAggregator() {}
+
+  /**
+   * Computes the statistics of the cards of files, in the common fork-join pool.
+   *
+   * @param files The card data files, read in the binary format if they have the binary file
+   *     extension, in JSON otherwise.
+   * @return The statistics, counting the files that cannot be read.
+   * @since 2.1.0
+   */
+  public static FleetStatistics aggregate(List<Path> files) {
+    return aggregate(files, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Computes the statistics of the cards of files.
+   *
+   * @param files The card data files, read in the binary format if they have the binary file
+   *     extension, in JSON otherwise.
+   * @param pool The pool running the tasks.
+   * @return The statistics, counting the files that cannot be read.
+   * @since 2.1.0
+   */
+  public static FleetStatistics aggregate(List<Path> files, ForkJoinPool pool) {
+    return pool.invoke(new SliceTask(files));
+  }
+
+  private static void add(FleetStatistics statistics, Path file) {
+    CardStructureData cardStructureData = ToolUtils.loadCardData(file);
+    if (cardStructureData == null) {
+      statistics.addUnreadable();
+    } else {
+      statistics.add(cardStructureData);
+    }
+  }
+}
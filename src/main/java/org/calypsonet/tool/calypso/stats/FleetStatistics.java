@@ -0,0 +1,296 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.stats;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.common.ToolUtils;
+import org.slf4j.Logger;
+
+/**
+ * Counts of the values of the main fields of the applications of a fleet of cards.
+ *
+ * <p>Only the counts are kept, not the card data, so that any number of cards can be aggregated.
+ * The statistics of distinct sets of cards can be computed separately then merged.
+ *
+ * <p>An instance is not thread safe.
+ *
+ * @since 2.1.0
+ */
+public final class FleetStatistics {
+
+  /**
+   * Value counted when a field is not set.
+   *
+   * @since 2.1.0
+   */
+  public static final String UNKNOWN_VALUE = "unknown";
+
+  /** Number of values of each field printed, the other ones being only written to the summary. */
+  private static final int NB_PRINTED_VALUES = 10;
+
+  private static final Comparator<Map.Entry<String, long[]>> DECREASING_COUNT =
+      Comparator.<Map.Entry<String, long[]>>comparingLong(entry -> -entry.getValue()[0])
+          .thenComparing(Map.Entry::getKey);
+
+  /**
+   * Field of the applications whose values are counted.
+   *
+   * @since 2.1.0
+   */
+  public enum Field {
+    ISSUER(
+        "issuer",
+        application ->
+            application.getIssuerInfo() != null
+                ? application.getIssuerInfo().getName()
+                    + " ("
+                    + application.getIssuerInfo().getValue()
+                    + ")"
+                : null),
+    PLATFORM("platform", CardApplicationData::getPlatform),
+    CALYPSO_REVISION("calypsoRevision", CardApplicationData::getCalypsoRevision),
+    SESSION_MODIFICATION("sessionModification", CardApplicationData::getSessionModif),
+    BUFFER_SIZE("bufferSize", application -> String.valueOf(application.getBufferSize())),
+    SOFTWARE_VERSION("softwareVersion", Field::getSoftwareVersion),
+    APPLICATION_TYPE("applicationType", CardApplicationData::getApplicationType),
+    APPLICATION_SUBTYPE("applicationSubtype", CardApplicationData::getApplicationSubtype);
+
+    private final String name;
+
+    private final Function<CardApplicationData, String> valueGetter;
+
+    Field(String name, Function<CardApplicationData, String> valueGetter) {
+      this.name = name;
+      this.valueGetter = valueGetter;
+    }
+
+    /**
+     * @return The name of the field in the summary.
+     * @since 2.1.0
+     */
+    public String getName() {
+      return name;
+    }
+
+    private String getValue(CardApplicationData application) {
+      String value = valueGetter.apply(application);
+      return value != null ? value : UNKNOWN_VALUE;
+    }
+
+    /**
+     * @return The version alone if the revision is not set, null if the version is not set.
+     */
+    private static String getSoftwareVersion(CardApplicationData application) {
+      if (application.getVersion() == null) {
+        return null;
+      }
+      return application.getRevision() != null
+          ? application.getVersion() + "." + application.getRevision()
+          : application.getVersion();
+    }
+  }
+
+  private long nbCards;
+
+  private long nbApplications;
+
+  private long nbUnreadableFiles;
+
+  /** Count of each value of each field, as single element arrays incremented in place. */
+  private final Map<Field, Map<String, long[]>> counts = new EnumMap<>(Field.class);
+
+  /**
+   * Constructor.
+   *
+   * @since 2.1.0
+   */
+  public FleetStatistics() {
+    for (Field field : Field.values()) {
+      counts.put(field, new HashMap<>());
+    }
+  }
+
+  /**
+   * Counts the values of the applications of a card.
+   *
+   * @param cardStructureData The card data.
+   * @since 2.1.0
+   */
+  public void add(CardStructureData cardStructureData) {
+    nbCards++;
+    for (CardApplicationData application : cardStructureData.getApplicationList()) {
+      nbApplications++;
+      for (Map.Entry<Field, Map<String, long[]>> entry : counts.entrySet()) {
+        entry.getValue()
+            .computeIfAbsent(entry.getKey().getValue(application), v -> new long[1])[0]++;
+      }
+    }
+  }
+
+  /**
+   * Counts a card data file that cannot be read.
+   *
+   * @since 2.1.0
+   */
+  public void addUnreadable() {
+    nbUnreadableFiles++;
+  }
+
+  /**
+   * Adds the counts of other statistics to these ones.
+   *
+   * @param other The statistics of other cards, left unchanged.
+   * @return This instance.
+   * @since 2.1.0
+   */
+  public FleetStatistics merge(FleetStatistics other) {
+    nbCards += other.nbCards;
+    nbApplications += other.nbApplications;
+    nbUnreadableFiles += other.nbUnreadableFiles;
+    for (Map.Entry<Field, Map<String, long[]>> entry : other.counts.entrySet()) {
+      Map<String, long[]> fieldCounts = counts.get(entry.getKey());
+      for (Map.Entry<String, long[]> valueCount : entry.getValue().entrySet()) {
+        fieldCounts.computeIfAbsent(valueCount.getKey(), v -> new long[1])[0] +=
+            valueCount.getValue()[0];
+      }
+    }
+    return this;
+  }
+
+  /**
+   * @return The number of cards counted.
+   * @since 2.1.0
+   */
+  public long getNbCards() {
+    return nbCards;
+  }
+
+  /**
+   * @return The number of applications of the cards counted.
+   * @since 2.1.0
+   */
+  public long getNbApplications() {
+    return nbApplications;
+  }
+
+  /**
+   * @return The number of card data files that could not be read.
+   * @since 2.1.0
+   */
+  public long getNbUnreadableFiles() {
+    return nbUnreadableFiles;
+  }
+
+  /**
+   * @param field The field.
+   * @param value The value of the field, {@link #UNKNOWN_VALUE} for the applications where it is
+   *     not set.
+   * @return The number of applications having this value.
+   * @since 2.1.0
+   */
+  public long getCount(Field field, String value) {
+    long[] count = counts.get(field).get(value);
+    return count != null ? count[0] : 0;
+  }
+
+  /** Values of a field, sorted by decreasing count then by value. */
+  private List<Map.Entry<String, long[]>> getSortedCounts(Field field) {
+    List<Map.Entry<String, long[]>> sortedCounts = new ArrayList<>(counts.get(field).entrySet());
+    sortedCounts.sort(DECREASING_COUNT);
+    return sortedCounts;
+  }
+
+  /**
+   * Writes the statistics as a compact JSON document, the values of each field being sorted by
+   * decreasing count.
+   *
+   * @param writer The destination, not closed by this method.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public void writeJson(Writer writer) throws IOException {
+
+    JsonWriter jsonWriter = new JsonWriter(writer);
+
+    jsonWriter.beginObject();
+    jsonWriter.name("nbCards").value(nbCards);
+    jsonWriter.name("nbApplications").value(nbApplications);
+    jsonWriter.name("nbUnreadableFiles").value(nbUnreadableFiles);
+    jsonWriter.name("fields").beginObject();
+    for (Field field : Field.values()) {
+      jsonWriter.name(field.getName()).beginObject();
+      for (Map.Entry<String, long[]> valueCount : getSortedCounts(field)) {
+        jsonWriter.name(valueCount.getKey()).value(valueCount.getValue()[0]);
+      }
+      jsonWriter.endObject();
+    }
+    jsonWriter.endObject();
+    jsonWriter.endObject();
+    jsonWriter.flush();
+  }
+
+  /**
+   * Writes the statistics as a compact JSON document to a UTF-8 file, replacing any existing one.
+   *
+   * @param file The path of the file.
+   * @throws IOException If an I/O error occurs.
+   * @since 2.1.0
+   */
+  public void writeJson(Path file) throws IOException {
+    try (Writer writer =
+        new BufferedWriter(
+            new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8))) {
+      writeJson(writer);
+    }
+  }
+
+  /**
+   * Prints the statistics, with the most frequent values of each field.
+   *
+   * @param logger The logger to use.
+   * @since 2.1.0
+   */
+  public void print(Logger logger) {
+
+    logger.info(ToolUtils.SEPARATOR_LINE);
+    logger.info("= Cards:: {}", nbCards);
+    logger.info("= Applications:: {}", nbApplications);
+    logger.info("= Unreadable files:: {}", nbUnreadableFiles);
+
+    for (Field field : Field.values()) {
+      List<Map.Entry<String, long[]>> sortedCounts = getSortedCounts(field);
+      logger.info("= {}:: {} distinct value(s)", field.getName(), sortedCounts.size());
+      for (Map.Entry<String, long[]> valueCount :
+          sortedCounts.subList(0, Math.min(NB_PRINTED_VALUES, sortedCounts.size()))) {
+        logger.info("=   {}:: {}", valueCount.getKey(), valueCount.getValue()[0]);
+      }
+    }
+
+    logger.info(ToolUtils.SEPARATOR_LINE);
+  }
+}
@@ -0,0 +1,109 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.trace;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.calypsonet.tool.calypso.metrics.LatencyMetrics;
+import org.eclipse.keyple.core.common.KeyplePluginExtensionFactory;
+import org.eclipse.keyple.core.plugin.spi.reader.ReaderSpi;
+
+/**
+ * Records the latency of the APDUs exchanged with the readers of a plugin, by class of command
+ * (e.g. "APDU Read Record") and by reader (e.g. "Reader ASK LoGO 0").
+ *
+ * @since 2.1.0
+ */
+public final class ApduLatencyRecorder {
+
+  private static final String APDU_PREFIX = "APDU ";
+
+  private static final String READER_PREFIX = "Reader ";
+
+  private ApduLatencyRecorder() {}
+
+  /**
+   * Wraps a plugin factory so that the latency of the APDUs exchanged with the readers of the
+   * plugin is recorded.
+   *
+   * @param pluginFactory The factory of the plugin, which must be a Keyple plugin factory.
+   * @param metrics The metrics to update.
+   * @return The factory to register instead of the provided one.
+   * @since 2.1.0
+   */
+  public static KeyplePluginExtensionFactory record(
+      KeyplePluginExtensionFactory pluginFactory, LatencyMetrics metrics) {
+    return ReaderProxies.wrap(pluginFactory, reader -> new ReaderHandler(reader, metrics));
+  }
+
+  /**
+   * Gets the class of a command APDU, from its instruction byte.
+   *
+   * @param apdu The command APDU.
+   * @return The name of the command.
+   * @since 2.1.0
+   */
+  static String getCommandName(byte[] apdu) {
+    if (apdu.length < 4) {
+      return "Malformed";
+    }
+    switch (apdu[1]) {
+      case (byte) 0xA4:
+        return apdu[2] == 0x04 ? "Select Application" : "Select File";
+      case (byte) 0xB2:
+        return "Read Record";
+      case (byte) 0xB3:
+        return "Read Record Multiple";
+      case (byte) 0xB0:
+      case (byte) 0xB1:
+        return "Read Binary";
+      case (byte) 0xBE:
+        return "Search Record Multiple";
+      case (byte) 0xCA:
+        return "Get Data";
+      case (byte) 0xC0:
+        return "Get Response";
+      case (byte) 0x8A:
+        return "Open Secure Session";
+      case (byte) 0x8E:
+        return "Close Secure Session";
+      default:
+        return String.format("INS %02X", apdu[1]);
+    }
+  }
+
+  /** Intercepts the reader to measure the APDU exchanges. */
+  private static final class ReaderHandler extends ReaderProxies.DelegatingHandler {
+
+    private final String readerHistogramName;
+
+    private final LatencyMetrics metrics;
+
+    private ReaderHandler(ReaderSpi reader, LatencyMetrics metrics) {
+      this.readerHistogramName = READER_PREFIX + reader.getName();
+      this.metrics = metrics;
+    }
+
+    @Override
+    Object intercept(Object proxy, Method method, Object[] args) throws Throwable {
+      if (!"transmitApdu".equals(method.getName())) {
+        return forward(method, args);
+      }
+      long startTime = System.nanoTime();
+      Object response = forward(method, args);
+      long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+      metrics.record(APDU_PREFIX + getCommandName((byte[]) args[0]), durationMicros);
+      metrics.record(readerHistogramName, durationMicros);
+      return response;
+    }
+  }
+}
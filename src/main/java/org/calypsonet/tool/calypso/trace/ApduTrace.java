@@ -0,0 +1,222 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.trace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.keyple.core.util.HexUtil;
+
+/**
+ * APDU exchanges recorded with a reader, card by card.
+ *
+ * <p>A trace file is a text file with one item per line:
+ *
+ * <pre>
+ * # Comment
+ * reader &lt;reader name&gt;
+ * contactless &lt;true|false&gt;
+ * card &lt;power-on data, or - if none&gt;
+ * &gt; &lt;command APDU&gt;
+ * &lt; &lt;response APDU&gt; &lt;exchange duration in microseconds&gt;
+ * </pre>
+ *
+ * The APDUs are hexadecimal strings. The exchanges following a "card" line belong to this card.
+ *
+ * @since 2.1.0
+ */
+public final class ApduTrace {
+
+  /**
+   * Extension of the trace files.
+   *
+   * @since 2.1.0
+   */
+  public static final String FILE_EXTENSION = ".apdu";
+
+  static final String COMMENT_PREFIX = "#";
+
+  static final String READER_PREFIX = "reader ";
+
+  static final String CONTACTLESS_PREFIX = "contactless ";
+
+  static final String CARD_PREFIX = "card ";
+
+  static final String COMMAND_PREFIX = "> ";
+
+  static final String RESPONSE_PREFIX = "< ";
+
+  static final String NO_POWER_ON_DATA = "-";
+
+  /**
+   * APDU exchange recorded with a card.
+   *
+   * @since 2.1.0
+   */
+  public static final class Exchange {
+
+    private final byte[] command;
+
+    private final byte[] response;
+
+    private final long durationMicros;
+
+    Exchange(byte[] command, byte[] response, long durationMicros) {
+      this.command = command;
+      this.response = response;
+      this.durationMicros = durationMicros;
+    }
+
+    public byte[] getCommand() {
+      return command.clone();
+    }
+
+    public byte[] getResponse() {
+      return response.clone();
+    }
+
+    /**
+     * @return The time the reader took to transmit the command and get the response.
+     * @since 2.1.0
+     */
+    public long getDurationMicros() {
+      return durationMicros;
+    }
+
+    boolean isCommand(byte[] apdu) {
+      return Arrays.equals(command, apdu);
+    }
+
+    byte[] getResponseInternal() {
+      return response;
+    }
+  }
+
+  /**
+   * Exchanges recorded with a card, from its insertion to its removal.
+   *
+   * @since 2.1.0
+   */
+  public static final class Card {
+
+    private final String powerOnData;
+
+    private final List<Exchange> exchanges = new ArrayList<>();
+
+    Card(String powerOnData) {
+      this.powerOnData = powerOnData;
+    }
+
+    /**
+     * @return Null if the reader provided no power-on data.
+     * @since 2.1.0
+     */
+    public String getPowerOnData() {
+      return powerOnData;
+    }
+
+    public List<Exchange> getExchanges() {
+      return Collections.unmodifiableList(exchanges);
+    }
+  }
+
+  private final String readerName;
+
+  private final boolean isContactless;
+
+  private final List<Card> cards;
+
+  private ApduTrace(String readerName, boolean isContactless, List<Card> cards) {
+    this.readerName = readerName;
+    this.isContactless = isContactless;
+    this.cards = cards;
+  }
+
+  public String getReaderName() {
+    return readerName;
+  }
+
+  public boolean isContactless() {
+    return isContactless;
+  }
+
+  public List<Card> getCards() {
+    return Collections.unmodifiableList(cards);
+  }
+
+  /**
+   * Reads a trace file.
+   *
+   * @param file The path of the file.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs or if the file is malformed.
+   * @since 2.1.0
+   */
+  public static ApduTrace read(Path file) throws IOException {
+
+    String readerName = null;
+    boolean isContactless = true;
+    List<Card> cards = new ArrayList<>();
+    byte[] command = null;
+    int lineNumber = 0;
+
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        try {
+          if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+            continue;
+          }
+          if (line.startsWith(READER_PREFIX)) {
+            readerName = line.substring(READER_PREFIX.length()).trim();
+          } else if (line.startsWith(CONTACTLESS_PREFIX)) {
+            isContactless =
+                Boolean.parseBoolean(line.substring(CONTACTLESS_PREFIX.length()).trim());
+          } else if (line.startsWith(CARD_PREFIX)) {
+            String powerOnData = line.substring(CARD_PREFIX.length()).trim();
+            cards.add(new Card(NO_POWER_ON_DATA.equals(powerOnData) ? null : powerOnData));
+          } else if (line.startsWith(COMMAND_PREFIX) && !cards.isEmpty() && command == null) {
+            command = HexUtil.toByteArray(line.substring(COMMAND_PREFIX.length()).trim());
+          } else if (line.startsWith(RESPONSE_PREFIX) && command != null) {
+            String[] fields = line.substring(RESPONSE_PREFIX.length()).trim().split("\\s+");
+            long durationMicros = fields.length > 1 ? Long.parseLong(fields[1]) : 0;
+            cards
+                .get(cards.size() - 1)
+                .exchanges
+                .add(new Exchange(command, HexUtil.toByteArray(fields[0]), durationMicros));
+            command = null;
+          } else {
+            throw new IOException("unexpected line");
+          }
+        } catch (IllegalArgumentException e) {
+          throw new IOException("Malformed trace " + file + " at line " + lineNumber, e);
+        } catch (IOException e) {
+          throw new IOException(
+              "Malformed trace " + file + " at line " + lineNumber + ": " + e.getMessage(), e);
+        }
+      }
+    }
+
+    if (readerName == null) {
+      throw new IOException("Malformed trace " + file + ": no reader name");
+    }
+    return new ApduTrace(readerName, isContactless, cards);
+  }
+}
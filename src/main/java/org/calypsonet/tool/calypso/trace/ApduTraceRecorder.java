@@ -0,0 +1,175 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.trace;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.common.KeyplePluginExtensionFactory;
+import org.eclipse.keyple.core.plugin.spi.reader.ReaderSpi;
+import org.eclipse.keyple.core.util.HexUtil;
+
+/**
+ * Records to trace files the APDUs exchanged with the readers of a plugin.
+ *
+ * <p>The readers are wrapped in proxies keeping the reader extensions (e.g. the PC/SC specific
+ * settings) and the observation available. Each reader gets its own trace file, named after the
+ * reader, in which each card starts when the physical channel is opened for the first time after
+ * the card insertion.
+ *
+ * @since 2.1.0
+ */
+public final class ApduTraceRecorder {
+
+  private ApduTraceRecorder() {}
+
+  /**
+   * Wraps a plugin factory so that the APDUs exchanged with the readers of the plugin are recorded.
+   *
+   * @param pluginFactory The factory of the plugin to record, which must be a Keyple plugin
+   *     factory.
+   * @param directory The directory of the trace files, created if needed.
+   * @return The factory to register instead of the provided one.
+   * @throws IOException If the directory cannot be created.
+   * @since 2.1.0
+   */
+  public static KeyplePluginExtensionFactory record(
+      KeyplePluginExtensionFactory pluginFactory, Path directory) throws IOException {
+
+    Files.createDirectories(directory);
+    return ReaderProxies.wrap(pluginFactory, reader -> new ReaderHandler(directory, reader));
+  }
+
+  /** Intercepts the reader to record the card insertions and the APDU exchanges. */
+  private static final class ReaderHandler extends ReaderProxies.DelegatingHandler {
+
+    private final Path traceFile;
+
+    private final String readerName;
+
+    private Writer writer;
+
+    private boolean isCardStarted;
+
+    private ReaderHandler(Path directory, ReaderSpi reader) {
+      readerName = reader.getName();
+      traceFile =
+          directory.resolve(
+              readerName.replaceAll("[^A-Za-z0-9._-]", "_") + ApduTrace.FILE_EXTENSION);
+    }
+
+    private synchronized void startCard() throws IOException {
+      if (!isCardStarted) {
+        String powerOnData = ((ReaderSpi) delegate).getPowerOnData();
+        writeLine(
+            ApduTrace.CARD_PREFIX
+                + (powerOnData == null || powerOnData.isEmpty()
+                    ? ApduTrace.NO_POWER_ON_DATA
+                    : powerOnData));
+        isCardStarted = true;
+      }
+    }
+
+    private synchronized void endCard() {
+      isCardStarted = false;
+    }
+
+    private synchronized void writeExchange(byte[] command, byte[] response, long durationMicros)
+        throws IOException {
+      writeLine(ApduTrace.COMMAND_PREFIX + HexUtil.toHex(command));
+      writeLine(ApduTrace.RESPONSE_PREFIX + HexUtil.toHex(response) + " " + durationMicros);
+      // Flushed at each exchange, so that the trace is complete whenever the tool is stopped
+      writer.flush();
+    }
+
+    private synchronized void close() throws IOException {
+      if (writer != null) {
+        writer.close();
+        writer = null;
+      }
+    }
+
+    private void writeLine(String line) throws IOException {
+      if (writer == null) {
+        writer =
+            new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(traceFile), StandardCharsets.UTF_8));
+        writer.write(
+            ApduTrace.COMMENT_PREFIX
+                + " Recorded on "
+                + new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date())
+                + "\n");
+        writer.write(ApduTrace.READER_PREFIX + readerName + "\n");
+        // Read once the card is present, the reader being configured after its discovery
+        writer.write(ApduTrace.CONTACTLESS_PREFIX + ((ReaderSpi) delegate).isContactless() + "\n");
+      }
+      writer.write(line);
+      writer.write('\n');
+    }
+
+    /** Not synchronized, as the waits for card removal block until a call from another thread. */
+    @Override
+    Object intercept(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "openPhysicalChannel":
+          {
+            Object result = forward(method, args);
+            startCard();
+            return result;
+          }
+        case "transmitApdu":
+          {
+            long startTime = System.nanoTime();
+            byte[] response = (byte[]) forward(method, args);
+            long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+            writeExchange((byte[]) args[0], response, durationMicros);
+            return response;
+          }
+        case "checkCardPresence":
+          {
+            Object result = forward(method, args);
+            if (Boolean.FALSE.equals(result)) {
+              endCard();
+            }
+            return result;
+          }
+        case "waitForCardRemoval":
+          {
+            Object result = forward(method, args);
+            endCard();
+            return result;
+          }
+        case "onUnregister":
+          {
+            Object result = forward(method, args);
+            try {
+              close();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            return result;
+          }
+        default:
+          return forward(method, args);
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.trace;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.eclipse.keyple.core.common.KeyplePluginExtensionFactory;
+import org.eclipse.keyple.core.plugin.spi.PluginFactorySpi;
+import org.eclipse.keyple.core.plugin.spi.reader.ReaderSpi;
+
+/**
+ * Wraps the plugin factory, the plugin and the readers of a plugin in proxies implementing the same
+ * interfaces, so that the calls to the readers can be intercepted while the reader extensions (e.g.
+ * the PC/SC specific settings) and the observation remain available.
+ *
+ * @since 2.1.0
+ */
+final class ReaderProxies {
+
+  private ReaderProxies() {}
+
+  /**
+   * Wraps a plugin factory so that the calls to the readers of the plugin go through the handlers
+   * provided.
+   *
+   * @param pluginFactory The factory of the plugin, which must be a Keyple plugin factory.
+   * @param readerHandlerFactory Provides the handler of each reader, called once per reader.
+   * @return The factory to register instead of the provided one.
+   * @since 2.1.0
+   */
+  static KeyplePluginExtensionFactory wrap(
+      KeyplePluginExtensionFactory pluginFactory,
+      Function<ReaderSpi, DelegatingHandler> readerHandlerFactory) {
+
+    if (!(pluginFactory instanceof PluginFactorySpi)) {
+      throw new IllegalArgumentException("Not a Keyple plugin factory: " + pluginFactory);
+    }
+    return (KeyplePluginExtensionFactory)
+        wrap(pluginFactory, new PluginHandler(readerHandlerFactory));
+  }
+
+  private static Object wrap(Object delegate, DelegatingHandler handler) {
+    handler.delegate = delegate;
+    Set<Class<?>> interfaces = new LinkedHashSet<>();
+    for (Class<?> c = delegate.getClass(); c != null; c = c.getSuperclass()) {
+      for (Class<?> i : c.getInterfaces()) {
+        // A proxy class cannot implement non-public interfaces of several packages
+        if (Modifier.isPublic(i.getModifiers())) {
+          interfaces.add(i);
+        }
+      }
+    }
+    return Proxy.newProxyInstance(
+        delegate.getClass().getClassLoader(), interfaces.toArray(new Class<?>[0]), handler);
+  }
+
+  /**
+   * Forwards the calls to the wrapped object, the intercepted ones excepted.
+   *
+   * @since 2.1.0
+   */
+  abstract static class DelegatingHandler implements InvocationHandler {
+
+    Object delegate;
+
+    abstract Object intercept(Object proxy, Method method, Object[] args) throws Throwable;
+
+    final Object forward(Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(delegate, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    @Override
+    public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getDeclaringClass() == Object.class) {
+        switch (method.getName()) {
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          default:
+            return "Proxy(" + delegate + ")";
+        }
+      }
+      return intercept(proxy, method, args);
+    }
+  }
+
+  /**
+   * Intercepts the plugin factory and the plugin to wrap the readers, each one being wrapped once.
+   */
+  private static final class PluginHandler extends DelegatingHandler {
+
+    private final Function<ReaderSpi, DelegatingHandler> readerHandlerFactory;
+
+    private final Map<Object, Object> readerProxies = new IdentityHashMap<>();
+
+    private Object pluginProxy;
+
+    private PluginHandler(Function<ReaderSpi, DelegatingHandler> readerHandlerFactory) {
+      this.readerHandlerFactory = readerHandlerFactory;
+    }
+
+    private synchronized Object getReaderProxy(Object reader) {
+      if (reader == null) {
+        return null;
+      }
+      Object readerProxy = readerProxies.get(reader);
+      if (readerProxy == null) {
+        readerProxy = wrap(reader, readerHandlerFactory.apply((ReaderSpi) reader));
+        readerProxies.put(reader, readerProxy);
+      }
+      return readerProxy;
+    }
+
+    @Override
+    Object intercept(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = forward(method, args);
+      switch (method.getName()) {
+        case "getPlugin":
+          // Called on the plugin factory: the plugin is wrapped by a handler of its own
+          if (pluginProxy == null) {
+            pluginProxy = wrap(result, new PluginHandler(readerHandlerFactory));
+          }
+          return pluginProxy;
+        case "searchAvailableReaders":
+          Set<Object> readers = new LinkedHashSet<>();
+          for (Object reader : (Set<?>) result) {
+            readers.add(getReaderProxy(reader));
+          }
+          return readers;
+        case "searchReader":
+          return getReaderProxy(result);
+        default:
+          return result;
+      }
+    }
+  }
+}
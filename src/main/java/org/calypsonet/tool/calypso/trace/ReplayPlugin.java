@@ -0,0 +1,48 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.trace;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.keyple.core.plugin.spi.PluginSpi;
+import org.eclipse.keyple.core.plugin.spi.reader.ReaderSpi;
+
+/**
+ * Plugin having one replay reader per trace.
+ *
+ * @since 2.1.0
+ */
+final class ReplayPlugin implements PluginSpi {
+
+  private final Set<ReaderSpi> readers;
+
+  ReplayPlugin(List<ReplayReader> readers) {
+    this.readers = Collections.unmodifiableSet(new LinkedHashSet<>(readers));
+  }
+
+  @Override
+  public String getName() {
+    return ReplayPluginFactory.PLUGIN_NAME;
+  }
+
+  @Override
+  public Set<ReaderSpi> searchAvailableReaders() {
+    return readers;
+  }
+
+  @Override
+  public void onUnregister() {
+    // Nothing to do, the readers are unregistered individually
+  }
+}
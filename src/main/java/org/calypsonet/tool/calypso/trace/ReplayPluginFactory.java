@@ -0,0 +1,136 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.trace;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.eclipse.keyple.core.common.CommonApiProperties;
+import org.eclipse.keyple.core.common.KeyplePluginExtensionFactory;
+import org.eclipse.keyple.core.plugin.PluginApiProperties;
+import org.eclipse.keyple.core.plugin.spi.PluginFactorySpi;
+import org.eclipse.keyple.core.plugin.spi.PluginSpi;
+
+/**
+ * Factory of a plugin replaying recorded traces instead of communicating with actual readers.
+ *
+ * <p>Each trace is served by an observable reader having the name of the recorded reader, so that
+ * the tools select it with the same reader name expression and run unchanged, in daemon mode as
+ * well.
+ *
+ * @since 2.1.0
+ */
+public final class ReplayPluginFactory implements KeyplePluginExtensionFactory, PluginFactorySpi {
+
+  /**
+   * Name of the replay plugin.
+   *
+   * @since 2.1.0
+   */
+  public static final String PLUGIN_NAME = "ReplayPlugin";
+
+  /**
+   * APDU latency value requesting each exchange to take its recorded duration.
+   *
+   * @since 2.1.0
+   */
+  public static final long RECORDED_LATENCY = -1;
+
+  private final List<ReplayReader> readers = new ArrayList<>();
+
+  private final CountDownLatch endOfReplayLatch;
+
+  private ReplayPluginFactory(List<ApduTrace> traces, long apduLatencyMicros, int nbRepeats) {
+
+    endOfReplayLatch = new CountDownLatch(traces.size());
+
+    // The reader names must be unique within a plugin
+    Set<String> readerNames = new HashSet<>();
+    for (ApduTrace trace : traces) {
+      String readerName = trace.getReaderName();
+      for (int i = 2; !readerNames.add(readerName); i++) {
+        readerName = trace.getReaderName() + " #" + i;
+      }
+      readers.add(
+          new ReplayReader(
+              readerName, trace, nbRepeats, apduLatencyMicros, endOfReplayLatch::countDown));
+    }
+  }
+
+  /**
+   * Loads the traces to replay.
+   *
+   * @param path A trace file, or a directory whose trace files are all replayed, each one in its
+   *     own reader.
+   * @param apduLatencyMicros The time taken by each APDU exchange, or {@link #RECORDED_LATENCY} for
+   *     the recorded durations.
+   * @param nbRepeats The number of times the cards of each trace are replayed.
+   * @return A new instance.
+   * @throws IOException If an I/O error occurs or if a trace file is malformed.
+   * @since 2.1.0
+   */
+  public static ReplayPluginFactory load(Path path, long apduLatencyMicros, int nbRepeats)
+      throws IOException {
+
+    List<ApduTrace> traces = new ArrayList<>();
+    if (Files.isDirectory(path)) {
+      try (DirectoryStream<Path> files =
+          Files.newDirectoryStream(path, "*" + ApduTrace.FILE_EXTENSION)) {
+        for (Path file : files) {
+          traces.add(ApduTrace.read(file));
+        }
+      }
+    } else {
+      traces.add(ApduTrace.read(path));
+    }
+    if (traces.isEmpty()) {
+      throw new IOException("No trace file found in " + path);
+    }
+    return new ReplayPluginFactory(traces, apduLatencyMicros, nbRepeats);
+  }
+
+  /**
+   * Waits until all the cards of all the traces have been replayed and removed.
+   *
+   * @throws InterruptedException If the current thread is interrupted while waiting.
+   * @since 2.1.0
+   */
+  public void awaitEndOfReplay() throws InterruptedException {
+    endOfReplayLatch.await();
+  }
+
+  @Override
+  public String getPluginApiVersion() {
+    return PluginApiProperties.VERSION;
+  }
+
+  @Override
+  public String getCommonApiVersion() {
+    return CommonApiProperties.VERSION;
+  }
+
+  @Override
+  public String getPluginName() {
+    return PLUGIN_NAME;
+  }
+
+  @Override
+  public PluginSpi getPlugin() {
+    return new ReplayPlugin(readers);
+  }
+}
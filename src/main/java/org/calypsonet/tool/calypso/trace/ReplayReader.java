@@ -0,0 +1,236 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.trace;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.eclipse.keyple.core.plugin.CardIOException;
+import org.eclipse.keyple.core.plugin.TaskCanceledException;
+import org.eclipse.keyple.core.plugin.spi.reader.observable.ObservableReaderSpi;
+import org.eclipse.keyple.core.plugin.spi.reader.observable.state.insertion.CardInsertionWaiterBlockingSpi;
+import org.eclipse.keyple.core.plugin.spi.reader.observable.state.removal.CardRemovalWaiterBlockingSpi;
+import org.eclipse.keyple.core.util.HexUtil;
+
+/**
+ * Reader serving the cards of a trace, one after the other.
+ *
+ * <p>The card of the trace is present until it is removed, which happens as soon as the observation
+ * of the reader waits for its removal: the next card of the trace is then inserted. The commands
+ * must be the recorded ones, in the recorded order.
+ *
+ * @since 2.1.0
+ */
+final class ReplayReader
+    implements ObservableReaderSpi, CardInsertionWaiterBlockingSpi, CardRemovalWaiterBlockingSpi {
+
+  private final String name;
+
+  private final boolean isContactless;
+
+  private final List<ApduTrace.Card> cards;
+
+  private final int nbCardsToReplay;
+
+  private final long apduLatencyMicros;
+
+  private final Runnable endOfReplayCallback;
+
+  private final Object lock = new Object();
+
+  private int cardIndex;
+
+  private int exchangeIndex;
+
+  private boolean isPhysicalChannelOpen;
+
+  private boolean isWaitForCardInsertionCanceled;
+
+  /**
+   * @param apduLatencyMicros The time taken by each exchange, or {@link
+   *     ReplayPluginFactory#RECORDED_LATENCY} for the recorded one.
+   * @param endOfReplayCallback Called once the last card has been removed.
+   */
+  ReplayReader(
+      String name,
+      ApduTrace trace,
+      int nbRepeats,
+      long apduLatencyMicros,
+      Runnable endOfReplayCallback) {
+    this.name = name;
+    this.isContactless = trace.isContactless();
+    this.cards = trace.getCards();
+    this.nbCardsToReplay = cards.size() * nbRepeats;
+    this.apduLatencyMicros = apduLatencyMicros;
+    this.endOfReplayCallback = endOfReplayCallback;
+    if (nbCardsToReplay == 0) {
+      endOfReplayCallback.run();
+    }
+  }
+
+  private ApduTrace.Card getCurrentCard() {
+    return cardIndex < nbCardsToReplay ? cards.get(cardIndex % cards.size()) : null;
+  }
+
+  private static void simulateLatency(long latencyMicros) {
+    long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    long remainingNanos;
+    while ((remainingNanos = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remainingNanos);
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void openPhysicalChannel() throws CardIOException {
+    synchronized (lock) {
+      if (getCurrentCard() == null) {
+        throw new CardIOException("No card to replay in reader " + name);
+      }
+      isPhysicalChannelOpen = true;
+    }
+  }
+
+  @Override
+  public void closePhysicalChannel() {
+    synchronized (lock) {
+      isPhysicalChannelOpen = false;
+    }
+  }
+
+  @Override
+  public boolean isPhysicalChannelOpen() {
+    synchronized (lock) {
+      return isPhysicalChannelOpen;
+    }
+  }
+
+  @Override
+  public boolean checkCardPresence() {
+    synchronized (lock) {
+      return getCurrentCard() != null;
+    }
+  }
+
+  @Override
+  public String getPowerOnData() {
+    synchronized (lock) {
+      ApduTrace.Card card = getCurrentCard();
+      return card == null || card.getPowerOnData() == null ? "" : card.getPowerOnData();
+    }
+  }
+
+  @Override
+  public byte[] transmitApdu(byte[] apdu) throws CardIOException {
+
+    ApduTrace.Exchange exchange;
+    synchronized (lock) {
+      ApduTrace.Card card = getCurrentCard();
+      if (card == null) {
+        throw new CardIOException("No card to replay in reader " + name);
+      }
+      if (exchangeIndex >= card.getExchanges().size()) {
+        throw new CardIOException(
+            "Unexpected APDU " + HexUtil.toHex(apdu) + ": end of the recorded exchanges");
+      }
+      exchange = card.getExchanges().get(exchangeIndex);
+      if (!exchange.isCommand(apdu)) {
+        throw new CardIOException(
+            "Unexpected APDU "
+                + HexUtil.toHex(apdu)
+                + ", the recorded one is "
+                + HexUtil.toHex(exchange.getCommand()));
+      }
+      exchangeIndex++;
+    }
+
+    simulateLatency(
+        apduLatencyMicros == ReplayPluginFactory.RECORDED_LATENCY
+            ? exchange.getDurationMicros()
+            : apduLatencyMicros);
+
+    return exchange.getResponse();
+  }
+
+  @Override
+  public boolean isContactless() {
+    return isContactless;
+  }
+
+  @Override
+  public void onUnregister() {
+    stopWaitForCardInsertion();
+  }
+
+  @Override
+  public void onStartDetection() {
+    // Nothing to do, the cards of the trace are always ready
+  }
+
+  @Override
+  public void onStopDetection() {
+    // Nothing to do
+  }
+
+  @Override
+  public void waitForCardInsertion() throws TaskCanceledException {
+    synchronized (lock) {
+      while (getCurrentCard() == null && !isWaitForCardInsertionCanceled) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new TaskCanceledException("Wait for card insertion interrupted");
+        }
+      }
+      if (isWaitForCardInsertionCanceled) {
+        isWaitForCardInsertionCanceled = false;
+        throw new TaskCanceledException("Wait for card insertion canceled");
+      }
+    }
+  }
+
+  @Override
+  public void stopWaitForCardInsertion() {
+    synchronized (lock) {
+      isWaitForCardInsertionCanceled = true;
+      lock.notifyAll();
+    }
+  }
+
+  /** Removes the current card, the next one of the trace, if any, being inserted. */
+  @Override
+  public void waitForCardRemoval() {
+    boolean isEndOfReplay;
+    synchronized (lock) {
+      if (getCurrentCard() == null) {
+        return;
+      }
+      cardIndex++;
+      exchangeIndex = 0;
+      isPhysicalChannelOpen = false;
+      isEndOfReplay = cardIndex == nbCardsToReplay;
+    }
+    if (isEndOfReplay) {
+      endOfReplayCallback.run();
+    }
+  }
+
+  @Override
+  public void stopWaitForCardRemoval() {
+    // Nothing to do, the wait never blocks
+  }
+}
@@ -0,0 +1,230 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.card;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.calypsonet.tool.calypso.common.SessionExecutor;
+import org.eclipse.keypop.reader.CardReaderEvent;
+import org.eclipse.keypop.reader.ObservableCardReader;
+import org.eclipse.keypop.reader.selection.ScheduledCardSelectionsResponse;
+import org.eclipse.keypop.reader.spi.CardReaderObservationExceptionHandlerSpi;
+import org.eclipse.keypop.reader.spi.CardReaderObserverSpi;
+import org.junit.Test;
+
+public class CardInsertionDaemonTest {
+
+  private static final String READER_NAME = "StubReader";
+
+  private static final long SESSION_TIMEOUT_MILLIS = 100;
+
+  /** Observable reader notifying the card insertions on demand, in the calling thread. */
+  private static class StubReader implements ObservableCardReader {
+
+    private final List<CardReaderObserverSpi> observers = new ArrayList<>();
+
+    private final AtomicInteger nbDetectionStops = new AtomicInteger();
+
+    private final AtomicInteger nbFinalizations = new AtomicInteger();
+
+    @Override
+    public String getName() {
+      return READER_NAME;
+    }
+
+    @Override
+    public boolean isContactless() {
+      return false;
+    }
+
+    @Override
+    public boolean isCardPresent() {
+      return false;
+    }
+
+    @Override
+    public void setReaderObservationExceptionHandler(
+        CardReaderObservationExceptionHandlerSpi exceptionHandler) {}
+
+    @Override
+    public synchronized void addObserver(CardReaderObserverSpi observer) {
+      observers.add(observer);
+    }
+
+    @Override
+    public synchronized void removeObserver(CardReaderObserverSpi observer) {
+      observers.remove(observer);
+    }
+
+    @Override
+    public synchronized void clearObservers() {
+      observers.clear();
+    }
+
+    @Override
+    public synchronized int countObservers() {
+      return observers.size();
+    }
+
+    @Override
+    public void startCardDetection(DetectionMode detectionMode) {}
+
+    @Override
+    public void stopCardDetection() {
+      nbDetectionStops.incrementAndGet();
+    }
+
+    @Override
+    public void finalizeCardProcessing() {
+      nbFinalizations.incrementAndGet();
+    }
+
+    void insertCard(CardInsertionDaemon daemon) {
+      daemon.onReaderEvent(
+          new CardReaderEvent() {
+            @Override
+            public String getReaderName() {
+              return READER_NAME;
+            }
+
+            @Override
+            public Type getType() {
+              return Type.CARD_INSERTED;
+            }
+
+            @Override
+            public ScheduledCardSelectionsResponse getScheduledCardSelectionsResponse() {
+              return null;
+            }
+          });
+    }
+  }
+
+  private static CardInsertionDaemon newDaemon(
+      StubReader reader, Consumer<CardSession> cardProcessor, SessionExecutor sessionExecutor) {
+    return new CardInsertionDaemon(
+        Collections.singletonList(new CardSession(reader)), cardProcessor, sessionExecutor);
+  }
+
+  @Test
+  public void onReaderEvent_whenCardIsProcessed_shouldCountProcessedCard() {
+    StubReader reader = new StubReader();
+    CardInsertionDaemon daemon = newDaemon(reader, cardSession -> {}, null);
+
+    reader.insertCard(daemon);
+    reader.insertCard(daemon);
+
+    assertEquals(2, daemon.getNbProcessedCards());
+    assertEquals(0, daemon.getNbFailedCards());
+    assertEquals(2, reader.nbFinalizations.get());
+  }
+
+  @Test
+  public void onReaderEvent_whenProcessingFails_shouldCountFailedCard() {
+    StubReader reader = new StubReader();
+    CardInsertionDaemon daemon =
+        newDaemon(
+            reader,
+            cardSession -> {
+              throw new IllegalStateException("card removed");
+            },
+            null);
+
+    reader.insertCard(daemon);
+
+    assertEquals(0, daemon.getNbProcessedCards());
+    assertEquals(1, daemon.getNbFailedCards());
+    assertEquals(1, reader.nbFinalizations.get());
+  }
+
+  @Test
+  public void onReaderEvent_whenSessionTimesOut_shouldFinalizeAfterEndOfProcessing() {
+    AtomicBoolean isProcessingEnded = new AtomicBoolean();
+    AtomicBoolean isFinalizedBeforeEnd = new AtomicBoolean();
+    StubReader reader =
+        new StubReader() {
+          @Override
+          public void finalizeCardProcessing() {
+            isFinalizedBeforeEnd.set(!isProcessingEnded.get());
+            super.finalizeCardProcessing();
+          }
+        };
+    CardInsertionDaemon daemon;
+    try (SessionExecutor sessionExecutor = SessionExecutor.create(SESSION_TIMEOUT_MILLIS)) {
+      daemon =
+          newDaemon(
+              reader,
+              cardSession -> {
+                // Ignores the interruption, like a reader blocked in a native call
+                long end = System.nanoTime() + 5 * SESSION_TIMEOUT_MILLIS * 1000000;
+                while (System.nanoTime() < end) {
+                  Thread.yield();
+                }
+                isProcessingEnded.set(true);
+              },
+              sessionExecutor);
+      reader.insertCard(daemon);
+    }
+
+    assertTrue(isProcessingEnded.get());
+    assertFalse(isFinalizedBeforeEnd.get());
+    assertEquals(1, reader.nbFinalizations.get());
+    assertEquals(0, daemon.getNbProcessedCards());
+    assertEquals(1, daemon.getNbFailedCards());
+  }
+
+  @Test(timeout = 10000)
+  public void stop_whenCalledConcurrently_shouldStopTheReadersOnce() throws InterruptedException {
+    StubReader reader = new StubReader();
+    CardInsertionDaemon daemon = newDaemon(reader, cardSession -> {}, null);
+    Thread runner = new Thread(daemon::run);
+    runner.start();
+    while (reader.countObservers() == 0) {
+      Thread.sleep(1);
+    }
+
+    int nbThreads = 8;
+    CountDownLatch startSignal = new CountDownLatch(1);
+    List<Thread> stoppers = new ArrayList<>();
+    for (int i = 0; i < nbThreads; i++) {
+      Thread stopper =
+          new Thread(
+              () -> {
+                try {
+                  startSignal.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                daemon.stop();
+              });
+      stopper.start();
+      stoppers.add(stopper);
+    }
+    startSignal.countDown();
+    for (Thread stopper : stoppers) {
+      stopper.join();
+    }
+    runner.join();
+
+    assertEquals(1, reader.nbDetectionStops.get());
+    assertEquals(0, reader.countObservers());
+  }
+}
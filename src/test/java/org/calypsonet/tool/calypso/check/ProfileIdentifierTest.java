@@ -0,0 +1,115 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardFileData;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.carddata.CardStructureJson;
+import org.junit.Test;
+
+public class ProfileIdentifierTest {
+
+  private static final String PRIME_REGULAR = "TestKit_CalypsoPrimeRegularProfile_v3";
+
+  private static final int NB_MISSING_FILES = 3;
+
+  /** Single application, whose AID is on none of the Prime cards. */
+  private static final String LIGHT_CLASSIC = "TestKit_CalypsoLightClassicProfile_v1";
+
+  /** Single application, whose AID is also one of the applications of the Prime cards. */
+  private static final String LIGHT_CLASSIC_SHARED_AID = "TestKit_CalypsoLightClassicProfile_v3";
+
+  private static CardStructureData load(String profileName) throws IOException {
+    return CardStructureJson.read(Paths.get("card_profiles", profileName + ".json"));
+  }
+
+  private static ProfileMatcher compile(String profileName) throws IOException {
+    return ProfileMatcher.compile(profileName, load(profileName));
+  }
+
+  /** A Prime Regular card whose largest application lacks its last files. */
+  private static CardStructureData loadIncompletePrimeRegularCard() throws IOException {
+    CardStructureData card = load(PRIME_REGULAR);
+    CardApplicationData largestApplication = card.getApplicationList().get(0);
+    for (CardApplicationData application : card.getApplicationList()) {
+      if (application.getFileList().size() > largestApplication.getFileList().size()) {
+        largestApplication = application;
+      }
+    }
+    List<CardFileData> files = largestApplication.getFileList();
+    files.subList(files.size() - NB_MISSING_FILES, files.size()).clear();
+    return card;
+  }
+
+  @Test
+  public void identify_whenUnrelatedSingleApplicationProfileCompetes_shouldRetainMatchingProfile()
+      throws IOException {
+    CardStructureData card = loadIncompletePrimeRegularCard();
+    ProfileIdentifier identifier =
+        new ProfileIdentifier(Arrays.asList(compile(LIGHT_CLASSIC), compile(PRIME_REGULAR)));
+
+    ProfileIdentifier.Identification identification = identifier.identify(card);
+
+    assertNotNull(identification);
+    assertEquals(PRIME_REGULAR, identification.getProfileMatcher().getName());
+    assertEquals(0, identification.getNbUnexpectedApplications());
+    // The unrelated profile expects none of the applications of the card
+    assertEquals(1, identification.getNbCheckedProfiles());
+  }
+
+  @Test
+  public void identify_whenSingleApplicationProfileSharesAnAid_shouldRetainMatchingProfile()
+      throws IOException {
+    CardStructureData card = loadIncompletePrimeRegularCard();
+    ProfileIdentifier identifier =
+        new ProfileIdentifier(
+            Arrays.asList(compile(LIGHT_CLASSIC_SHARED_AID), compile(PRIME_REGULAR)));
+
+    ProfileIdentifier.Identification identification = identifier.identify(card);
+
+    assertNotNull(identification);
+    assertEquals(PRIME_REGULAR, identification.getProfileMatcher().getName());
+  }
+
+  @Test
+  public void identify_whenNoProfileExpectsTheApplicationsOfTheCard_shouldReturnNull()
+      throws IOException {
+    ProfileIdentifier identifier =
+        new ProfileIdentifier(Collections.singletonList(compile(LIGHT_CLASSIC)));
+
+    assertNull(identifier.identify(load(PRIME_REGULAR)));
+  }
+
+  @Test
+  public void identify_whenCardHasAllTheFilesOfProfile_shouldRetainProfile() throws IOException {
+    ProfileIdentifier identifier =
+        new ProfileIdentifier(
+            Arrays.asList(
+                compile(LIGHT_CLASSIC), compile(LIGHT_CLASSIC_SHARED_AID), compile(PRIME_REGULAR)));
+
+    ProfileIdentifier.Identification identification = identifier.identify(load(PRIME_REGULAR));
+
+    assertNotNull(identification);
+    assertEquals(PRIME_REGULAR, identification.getProfileMatcher().getName());
+    assertEquals(0, identification.getNbUnexpectedApplications());
+  }
+}
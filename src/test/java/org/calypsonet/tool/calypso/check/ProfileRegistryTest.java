@@ -0,0 +1,68 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.check;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.calypsonet.tool.calypso.carddata.CardApplicationData;
+import org.calypsonet.tool.calypso.carddata.CardFileData;
+import org.calypsonet.tool.calypso.carddata.CardStructureData;
+import org.calypsonet.tool.calypso.carddata.CardStructureJson;
+import org.junit.Test;
+
+public class ProfileRegistryTest {
+
+  private static final Path PROFILE_DIRECTORY = Paths.get("card_profiles");
+
+  private static final int NB_PROFILES = 16;
+
+  /** Profile whose JSON has a trailing comma in a list of files. */
+  private static final String PROFILE_WITH_TRAILING_COMMA = "TestKit_CalypsoPrimeRegularProfile_v2";
+
+  @Test
+  public void load_whenDirectoryHasProfiles_shouldLoadThemAll() throws IOException {
+    ProfileRegistry registry =
+        ProfileRegistry.load(PROFILE_DIRECTORY, ProfileRegistry.DEFAULT_FILE_NAME_PATTERN);
+
+    assertEquals(NB_PROFILES, registry.size());
+    assertNotNull(registry.get(PROFILE_WITH_TRAILING_COMMA));
+    assertNull(registry.get("Unknown"));
+  }
+
+  @Test
+  public void loadFile_whenFileListHasTrailingComma_shouldSkipTheNullFile() throws IOException {
+    Path file = PROFILE_DIRECTORY.resolve(PROFILE_WITH_TRAILING_COMMA + ".json");
+    CardStructureData profile = CardStructureJson.read(file);
+    int nbFiles = 0;
+    int nbNullFiles = 0;
+    for (CardApplicationData application : profile.getApplicationList()) {
+      for (CardFileData cardFileData : application.getFileList()) {
+        if (cardFileData != null) {
+          nbFiles++;
+        } else {
+          nbNullFiles++;
+        }
+      }
+    }
+
+    ProfileMatcher profileMatcher = ProfileRegistry.loadFile(file).get(PROFILE_WITH_TRAILING_COMMA);
+
+    assertEquals(1, nbNullFiles);
+    assertNotNull(profileMatcher);
+    assertEquals(nbFiles, profileMatcher.getNbFiles());
+  }
+}
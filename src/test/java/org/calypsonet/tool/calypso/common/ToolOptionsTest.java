@@ -0,0 +1,40 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.calypsonet.tool.calypso.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class ToolOptionsTest {
+
+  private static final List<String> OPTION_NAMES = Arrays.asList("daemon", "metrics");
+
+  @Test
+  public void getUnknownOptions_whenAllOptionsAreKnown_shouldReturnEmptyList() {
+    ToolOptions options = new ToolOptions(new String[] {"--daemon", "reader", "--metrics=10"});
+
+    assertTrue(options.getUnknownOptions(OPTION_NAMES).isEmpty());
+    assertEquals(Arrays.asList("reader"), options.getArguments());
+  }
+
+  @Test
+  public void getUnknownOptions_whenOptionsAreMisspelled_shouldReturnThemInOrder() {
+    ToolOptions options =
+        new ToolOptions(new String[] {"--deamon", "--daemon", "--metric=10", "reader"});
+
+    assertEquals(Arrays.asList("--deamon", "--metric"), options.getUnknownOptions(OPTION_NAMES));
+  }
+}